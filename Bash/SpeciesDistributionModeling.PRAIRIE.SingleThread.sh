@@ -42,6 +42,9 @@ rgsTaxon=(all all all all p__Verrucomicrobia)
 rgsResponseVar=(ShannonDiversity PcoA1 PcoA1Metagen ShannonMetagen LogitRelAbundance)
 #note: full set of response vars is rgsResponseVar=(ShannonDiversity PcoA1 PcoA1Metagen ShannonMetagen LogitRelAbundance LFructoseMannoseRelAbund LCellDivisionRelAbund LNitrogenRelAbund LPeroxisomeRelAbund LPentosePhosphateRelAbund LogRichness LogitRelAbundance LogitRelAbundance LogitRelAbundance LogitRelAbundance LogitRelAbundance LogitRelAbundance LogitRelAbundance LogitRelAbundance LogitRelAbundance LogitRelAbundance LogitRelAbundance LogitRelAbundance)
 
+#writing memory-mapped copies of rasters (shared by all tasks)
+java -cp $sJavaPath/nicheMapper-1.0.jar edu.ucsf.sdm.ConvertRastersMain --sRasterDir=$sRasterDir
+
 for i in {0..4}
 #note for full set of taxa use for i in {0..22}
 do
@@ -71,7 +74,7 @@ do
 	#selecting model
 	for j in {0..10}
 	do
-		java -Xmx4g -cp $sJavaPath/nicheMapper-1.0.jar edu.ucsf.sdm.SelectModelMain --sAnalysisMode=alpha-diversity --iTotalTasks=$iTotalTasks --iTaskID=$j --sDataPath=$sDataPath --sResponseVariable=$sResponseVar --iMaximumCovariates=$iMaxCovariates --dMESSCutoff=0.05
+		java -Xmx4g -cp $sJavaPath/nicheMapper-1.0.jar edu.ucsf.sdm.SelectModelMain --sAnalysisMode=alpha-diversity --iTotalTasks=$iTotalTasks --iTaskID=$j --sDataPath=$sDataPath --sResponseVariable=$sResponseVar --iMaximumCovariates=$iMaxCovariates --dMESSCutoff=0.05 --sCrossValidationMode=closed-form
 	done
 
 	#merging select model output
@@ -13,11 +13,17 @@ public class ClusterIterator implements Iterator {
 	//bInclude = true if iteration should be included; false otherwise
 	//iTaskID = task ID
 	//iTotalTasks = total tasks
+	//sPartitionMode = partition of iterations among tasks: "modulo" (task includes every iTotalTasks-th iteration) or "contiguous" (task includes one contiguous range of iterations; requires total number of iterations)
+	//lRangeStart = first iteration (zero-based) included by task in contiguous mode
+	//lRangeEnd = iteration (zero-based) after last iteration included by task in contiguous mode
 	
 	public boolean bInclude;
-	public int iIteration;
+	public long iIteration;
 	private int iTotalTasks;
 	private int iTaskID;
+	private String sPartitionMode = "modulo";
+	private long lRangeStart = 0;
+	private long lRangeEnd = Long.MAX_VALUE;
 	
 	public ClusterIterator(Arguments arg1){
 		iIteration=0;
@@ -31,6 +37,61 @@ public class ClusterIterator implements Iterator {
 		this.iTotalTasks = iTotalTasks;
 	}
 	
+	/**
+	 * Constructor
+	 * @param iTaskID Task ID (tasks are numbered 1,...,iTotalTasks)
+	 * @param iTotalTasks Total tasks
+	 * @param sPartitionMode "modulo" or "contiguous"
+	 */
+	public ClusterIterator(int iTaskID, int iTotalTasks, String sPartitionMode){
+		this(iTaskID, iTotalTasks);
+		this.sPartitionMode = sPartitionMode;
+	}
+	
+	/**
+	 * Loads total number of iterations (needed for contiguous partition mode): task i includes iterations 
+	 * floor((i-1)*lTotal/iTotalTasks),...,floor(i*lTotal/iTotalTasks)-1.
+	 * @param lTotal Total number of iterations
+	 */
+	public void loadTotalIterations(long lTotal){
+		if(iTaskID==-9999 || iTotalTasks==-9999 || !sPartitionMode.equals("contiguous")){
+			lRangeStart = 0;
+			lRangeEnd = lTotal;
+		}else if(iTaskID<1 || iTaskID>iTotalTasks){
+			lRangeStart = 0;
+			lRangeEnd = 0;
+		}else{
+			lRangeStart = findBoundary(lTotal, iTaskID-1);
+			lRangeEnd = findBoundary(lTotal, iTaskID);
+		}
+	}
+	
+	/**
+	 * Returns first iteration (zero-based) that could be included by task; all iterations before it can be skipped.
+	 */
+	public long getRangeStart(){
+		return lRangeStart;
+	}
+	
+	/**
+	 * Returns iteration (zero-based) after last iteration that could be included by task; all iterations from it on can be skipped.
+	 */
+	public long getRangeEnd(){
+		return lRangeEnd;
+	}
+	
+	/**
+	 * Finds boundary between contiguous ranges of tasks
+	 * @param lTotal Total number of iterations
+	 * @param iTasks Number of tasks before boundary
+	 * @return First iteration after boundary
+	 */
+	private long findBoundary(long lTotal, int iTasks){
+		
+		//computing floor(lTotal*iTasks/iTotalTasks) without overflow
+		return (lTotal/iTotalTasks)*iTasks + ((lTotal % iTotalTasks)*iTasks)/iTotalTasks;
+	}
+	
 	public boolean hasNext(){
 		return true;
 	}
@@ -40,6 +101,12 @@ public class ClusterIterator implements Iterator {
 		
 		if(iTaskID==-9999 || iTotalTasks==-9999){
 			bInclude=true;
+		}else if(sPartitionMode.equals("contiguous")){
+			if(iIteration-1>=lRangeStart && iIteration-1<lRangeEnd){
+				bInclude=true;
+			}else{
+				bInclude=false;
+			}
 		}else{
 			if((iIteration % iTotalTasks) == (iTaskID-1)){
 				bInclude=true;
@@ -1,9 +1,7 @@
 package edu.ucsf.base;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 
 /**
  * Contains implementations of various combinatoric algorithms from Nijenhuis and Wilf (1978) unless otherwise noted.
@@ -21,7 +19,8 @@ public class CombinatoricAlgorithms {
 	private boolean bFinal = false;
 	private int m = -9999;
 	private int h;
-	private Map<Integer,Integer> a;
+	private int[] a;
+	private int[] rgiRevDoor;
 	
 	/**
 	 * Constructor
@@ -201,7 +200,7 @@ public class CombinatoricAlgorithms {
 			//A
 			m = 0;
 			h = k;
-			a = new HashMap<Integer,Integer>();
+			a = new int[k+1];
 		}else{
 			
 			//B
@@ -211,7 +210,7 @@ public class CombinatoricAlgorithms {
 			
 			//C
 			h++;
-			m=a.get(k+1-h);
+			m=a[k+1-h];
 		
 			
 			/*
@@ -220,7 +219,7 @@ public class CombinatoricAlgorithms {
 			
 				//C
 				h++;
-				m=a.get(k+1-h);
+				m=a[k+1-h];
 			}else{
 				h=0;
 			}
@@ -229,17 +228,199 @@ public class CombinatoricAlgorithms {
 		
 		//D
 		for(int j=1;j<=h;j++){
-			a.put(k+j-h, m+j);
+			a[k+j-h]=m+j;
 		}
-		if(a.get(1)==n-k+1){
+		if(a[1]==n-k+1){
 			bFinal = true;
 		}
 		
 		//outputting result	
 		rgi1 = new int[k];
 		for(int j=0;j<k;j++){
-			rgi1[j]=a.get(j+1);
+			rgi1[j]=a[j+1];
+		}
+		return rgi1;
+	}
+	
+	/**
+	 * Finds next k-subset from integers 1,...,n in revolving door (minimal change) order: consecutive subsets differ by exchanging one element.
+	 * Algorithm 2.13 (RevDoorSuccessor) from Kreher and Stinson (1999), Combinatorial Algorithms: Generation, Enumeration, and Search.
+	 * @param n Total number of objects.
+	 * @param k Number of objects being chosen.
+	 * @return Current subset (in increasing order); first element is -9999 once all subsets have been returned.
+	 */
+	public int[] REVDOOR(int n, int k){
+		
+		//rgi1 = output
+		//j = index of first element not in its initial position
+		
+		int rgi1[];
+		int j;
+		
+		//checking if done
+		if(bFinal==true){
+			rgi1 = new int[1];
+			rgi1[0] = -9999;
+			return rgi1;
+		}
+		
+		if(rgiRevDoor==null){
+			
+			//initializing to first subset: rgiRevDoor[0] is a placeholder and rgiRevDoor[k+1] is a sentinel
+			rgiRevDoor = new int[k+2];
+			for(j=1;j<=k;j++){
+				rgiRevDoor[j]=j;
+			}
+		}else{
+			
+			//finding first element not in its initial position
+			rgiRevDoor[k+1]=n+1;
+			j=1;
+			while(j<=k && rgiRevDoor[j]==j){
+				j++;
+			}
+			
+			//updating subset
+			if((k-j)%2!=0){
+				if(j==1){
+					rgiRevDoor[1]--;
+				}else{
+					rgiRevDoor[j-1]=j;
+					if(j>2){
+						rgiRevDoor[j-2]=j-1;
+					}
+				}
+			}else{
+				if(rgiRevDoor[j+1]!=rgiRevDoor[j]+1){
+					rgiRevDoor[j-1]=rgiRevDoor[j];
+					rgiRevDoor[j]++;
+				}else{
+					rgiRevDoor[j+1]=rgiRevDoor[j];
+					rgiRevDoor[j]=j;
+				}
+			}
+		}
+		
+		//checking if final subset (1,2,...,k-1,n)
+		if(rgiRevDoor[k]==n && (k==1 || rgiRevDoor[k-1]==k-1)){
+			bFinal = true;
+		}
+		
+		//outputting result
+		rgi1 = new int[k];
+		for(j=0;j<k;j++){
+			rgi1[j]=rgiRevDoor[j+1];
 		}
 		return rgi1;
 	}	
+
+	/**
+	 * Finds the k-subset of integers 1,...,n with given rank in lexicographic order (the order of NEXKSB) and loads it as the current 
+	 * subset, so that the following call to NEXKSB returns its successor. Algorithm 2.8 from Kreher and Stinson (1999).
+	 * @param n Total number of objects.
+	 * @param k Number of objects being chosen.
+	 * @param lRank Rank of subset (first subset has rank 0).
+	 * @return Subset with given rank.
+	 */
+	public int[] unrankNEXKSB(int n, int k, long lRank){
+		
+		//rgi1 = output
+		//x = current candidate element
+		//t = length of terminal run of elements n-t+1,...,n
+		
+		int rgi1[];
+		int x; int t;
+		
+		//finding subset
+		rgi1 = new int[k];
+		x = 1;
+		for(int i=1;i<=k;i++){
+			while(findBinomial(n-x, k-i)<=lRank){
+				lRank-=findBinomial(n-x, k-i);
+				x++;
+			}
+			rgi1[i-1]=x;
+			x++;
+		}
+		
+		//loading state: NEXKSB increments the last element unless it is n, in which case it restarts the terminal run
+		a = new int[k+1];
+		for(int j=0;j<k;j++){
+			a[j+1]=rgi1[j];
+		}
+		if(a[k]<n){
+			h = 0;
+			m = a[k];
+		}else{
+			t = 1;
+			while(t<k && a[k-t]==n-t){
+				t++;
+			}
+			h = t;
+			m = n-t;
+		}
+		bFinal = (a[1]==n-k+1);
+		return rgi1;
+	}
+	
+	/**
+	 * Finds the k-subset of integers 1,...,n with given rank in revolving door order (the order of REVDOOR) and loads it as the current 
+	 * subset, so that the following call to REVDOOR returns its successor. Algorithm 2.12 from Kreher and Stinson (1999).
+	 * @param n Total number of objects.
+	 * @param k Number of objects being chosen.
+	 * @param lRank Rank of subset (first subset has rank 0).
+	 * @return Subset with given rank.
+	 */
+	public int[] unrankREVDOOR(int n, int k, long lRank){
+		
+		//rgi1 = output
+		//x = current candidate element
+		
+		int rgi1[];
+		int x;
+		
+		//finding subset
+		rgiRevDoor = new int[k+2];
+		x = n;
+		for(int i=k;i>=1;i--){
+			while(findBinomial(x, i)>lRank){
+				x--;
+			}
+			rgiRevDoor[i]=x+1;
+			lRank=findBinomial(x+1, i)-lRank-1;
+		}
+		bFinal = (rgiRevDoor[k]==n && (k==1 || rgiRevDoor[k-1]==k-1));
+		
+		//outputting result
+		rgi1 = new int[k];
+		for(int j=0;j<k;j++){
+			rgi1[j]=rgiRevDoor[j+1];
+		}
+		return rgi1;
+	}
+	
+	/**
+	 * Finds binomial coefficient n choose k (exact for values that fit in a long).
+	 * @param n Total number of objects.
+	 * @param k Number of objects being chosen.
+	 * @return Binomial coefficient (0 if k<0 or k>n).
+	 */
+	public static long findBinomial(int n, int k){
+		
+		//l1 = output
+		
+		long l1;
+		
+		if(k<0 || k>n){
+			return 0;
+		}
+		if(k>n-k){
+			k=n-k;
+		}
+		l1 = 1;
+		for(int i=1;i<=k;i++){
+			l1 = l1*(n-k+i)/i;
+		}
+		return l1;
+	}
 }
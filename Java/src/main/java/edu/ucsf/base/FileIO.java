@@ -3,6 +3,8 @@ package edu.ucsf.base;
 import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 
 import javax.swing.*;
@@ -112,6 +114,32 @@ public class FileIO {
 		fil1.delete();
 	}
 	
+	/**
+	 * Creates empty temporary file with a unique name in the directory of the given destination (so processes writing the same
+	 * destination at once do not write to the same temporary file).
+	 * @param sPathDestination Path to which file will be moved once it is written.
+	 * @return Temporary file.
+	 */
+	public static File createTempFile(String sPathDestination) throws IOException{
+		
+		//fil1 = destination file
+		
+		File fil1;
+		
+		fil1 = new File(sPathDestination).getAbsoluteFile();
+		return File.createTempFile(fil1.getName() + ".", ".temp", fil1.getParentFile());
+	}
+	
+	/**
+	 * Moves file to destination with an atomic rename that replaces any existing file, so readers see either the previous file or
+	 * the complete new file.
+	 * @param filStart File to move (in same directory as destination).
+	 * @param sPathDestination New path to file.
+	 */
+	public static void moveFileAtomic(File filStart, String sPathDestination) throws IOException{
+		Files.move(filStart.toPath(), new File(sPathDestination).toPath(), StandardCopyOption.ATOMIC_MOVE);
+	}
+	
 	/**
 	 * Moves specified file
 	 * @param sPathStart Original path to file.
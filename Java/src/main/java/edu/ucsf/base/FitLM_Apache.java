@@ -1,6 +1,7 @@
 package edu.ucsf.base;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -25,6 +26,13 @@ public class FitLM_Apache{
 	//sResponse = current response
 	//rgdCoefficients = current coefficients
 	//rgdStErrors = standard errors of current coefficients
+	//rgdCorrelation = correlations between data columns (loaded when first needed; NaN until computed)
+	//rgdMean = means of data columns (for correlations)
+	//rgdNorm = square roots of centered sums of squares of data columns (for correlations)
+	//rgbCompatible = flags for pairs of data columns that are allowed in the same model regardless of VIF (e.g., different powers of a variable)
+	//rgsVIFPredictors = predictors at last VIF check
+	//dVIFThreshold = threshold at last VIF check
+	//bVIF = result of last VIF check
 	
 	private OLSMultipleLinearRegression ols1;
 	private Map<String,Integer> mapColumn;
@@ -37,6 +45,13 @@ public class FitLM_Apache{
 	private double rgdY[];
 	private String rgsPredictors[];
 	private String sResponse;
+	private double rgdCorrelation[][] = null;
+	private double rgdMean[];
+	private double rgdNorm[];
+	private boolean rgbCompatible[][];
+	private String rgsVIFPredictors[] = null;
+	private double dVIFThreshold;
+	private boolean bVIF;
 	
 	/**
 	 * Constructor
@@ -168,22 +183,16 @@ public class FitLM_Apache{
 	public boolean checkVIF(double dThreshold){
 		
 		//d1 = threshold in R^2
-		//sResponse = current response variable
-		//rgdX = matrix of predictor variables
-		//rgdY = response variable
-		//iCol = current column
-		//i1 = current predictors column
-		//ols2 = regression object
-		//iPredictorsCols = number of predictor columns
-		
-		double d1;
-		String sResponse;
-		int iPredictorCols; int iCol; int i1;
-		double rgdX[][]; double rgdY[];
-		OLSMultipleLinearRegression ols2;
+		//rgiCols = data columns of predictors
+		//rgiSet = data columns in auxiliary regression for current predictor (other predictors first, current predictor last)
+		//iSet = number of columns in auxiliary regression
+		//rgdL = cholesky factor of correlation matrix of columns in auxiliary regression
+		//dR2 = R^2 of current predictor on other predictors
 		
-		//loading R^2 threshold
-		d1 = 1.-1./dThreshold;
+		double d1; double dR2;
+		int rgiCols[]; int rgiSet[];
+		int iSet;
+		double rgdL[][];
 		
 		//checking if predictors are valid
 		for(int i=0;i<rgsPredictors.length;i++){
@@ -193,77 +202,161 @@ public class FitLM_Apache{
 			}
 		}
 		
-		//initializing regression object
-		ols2 = new OLSMultipleLinearRegression();
+		//checking if result is cached
+		if(rgsVIFPredictors!=null && dThreshold==dVIFThreshold && Arrays.equals(rgsPredictors, rgsVIFPredictors)){
+			return bVIF;
+		}
 		
-		//looping through predictors
-		for(int k=0;k<rgsPredictors.length;k++){
+		//loading R^2 threshold
+		d1 = 1.-1./dThreshold;
+		
+		//loading correlations and compatible columns
+		if(rgdCorrelation==null){
+			loadCorrelations();
+		}
+		rgiCols = new int[rgsPredictors.length];
+		for(int j=0;j<rgsPredictors.length;j++){
+			rgiCols[j] = mapColumn.get(rgsPredictors[j]);
+		}
+		rgiSet = new int[rgsPredictors.length];
+		rgdL = new double[rgsPredictors.length][rgsPredictors.length];
 		
-			//loading current response
-			sResponse = rgsPredictors[k];	
+		//looping through predictors: R^2 of predictor on other predictors is one minus the squared last diagonal element of the 
+		//cholesky factor of their correlation matrix (equivalently, VIF is the diagonal element of the inverse correlation matrix)
+		bVIF = true;
+		for(int k=0;k<rgsPredictors.length;k++){
 			
-			//loading number of predictors
-			iPredictorCols=0;
+			//loading other predictors (skipping predictors that are allowed with current predictor, e.g. different powers)
+			iSet=0;
 			for(int j=0;j<rgsPredictors.length;j++){
-							
-				//checking if response variable
-				if(rgsPredictors[j].equals(sResponse)){
-					continue;
+				if(!rgbCompatible[rgiCols[k]][rgiCols[j]]){
+					rgiSet[iSet]=rgiCols[j];
+					iSet++;
 				}
-				
-				//checking if both variables allowed (e.g. different powers)
-				if(rgsPredictors[j].contains(sResponse) || sResponse.contains(rgsPredictors[j])){
-					continue;
-				}
-				
-				//adding to predictor count
-				iPredictorCols++;
 			}
-				
+			
 			//checking if at least one predictor
-			if(iPredictorCols==0){
+			if(iSet==0){
 				continue;
 			}
+			rgiSet[iSet]=rgiCols[k];
+			iSet++;
 			
-			//loading predictors
-			rgdX = new double[iRows][iPredictorCols];
-			i1=0;
-			for(int j=0;j<rgsPredictors.length;j++){
-				
-				//checking if response variable
-				if(rgsPredictors[j].equals(sResponse)){
-					continue;
-				}
-				
-				//checking if both variables allowed (e.g. different powers)
-				if(rgsPredictors[j].contains(sResponse) || sResponse.contains(rgsPredictors[j])){
-					continue;
+			//finding R^2
+			dR2 = findAuxiliaryRSquared(rgiSet, iSet, rgdL);
+			
+			//checking R^2
+			if(!(dR2<=d1)){
+				bVIF = false;
+				break;
+			}
+		}
+		
+		//saving result
+		rgsVIFPredictors = rgsPredictors.clone();
+		dVIFThreshold = dThreshold;
+		return bVIF;
+	}
+	
+	/**
+	 * Finds R^2 of regression of last column in set on other columns in set, from cholesky factor of their correlation matrix.
+	 * @param rgiSet Data columns.
+	 * @param iSet Number of columns in set.
+	 * @param rgdL Array for cholesky factor (at least iSet x iSet).
+	 * @return R^2 (1 if other columns are collinear).
+	 */
+	private double findAuxiliaryRSquared(int rgiSet[], int iSet, double rgdL[][]){
+		
+		//d1 = current value
+		
+		double d1;
+		
+		for(int i=0;i<iSet;i++){
+			for(int j=0;j<=i;j++){
+				d1 = findCorrelation(rgiSet[i], rgiSet[j]);
+				for(int l=0;l<j;l++){
+					d1-=rgdL[i][l]*rgdL[j][l];
 				}
-				
-				iCol = mapColumn.get(rgsPredictors[j]);
-				for(int i=0;i<iRows;i++){
-					rgdX[i][i1]=rgdData[i][iCol];
+				if(i==j){
+					if(!(d1>1e-12)){
+						return 1.;
+					}
+					rgdL[i][i]=Math.sqrt(d1);
+				}else{
+					rgdL[i][j]=d1/rgdL[j][j];
 				}
-				i1++;
 			}
-			
-			//loading response variable
-			rgdY = new double[iRows];
-			iCol = mapColumn.get(sResponse);
+		}
+		return 1.-rgdL[iSet-1][iSet-1]*rgdL[iSet-1][iSet-1];
+	}
+	
+	/**
+	 * Finds correlation between two data columns (computed when first needed).
+	 * @param i First column.
+	 * @param j Second column.
+	 * @return Correlation.
+	 */
+	private double findCorrelation(int i, int j){
+		
+		//d1 = centered cross product
+		
+		double d1;
+		
+		if(Double.isNaN(rgdCorrelation[i][j])){
+			d1 = 0;
+			for(int l=0;l<iRows;l++){
+				d1+=(rgdData[l][i]-rgdMean[i])*(rgdData[l][j]-rgdMean[j]);
+			}
+			rgdCorrelation[i][j]=d1/(rgdNorm[i]*rgdNorm[j]);
+			rgdCorrelation[j][i]=rgdCorrelation[i][j];
+		}
+		return rgdCorrelation[i][j];
+	}
+	
+	/**
+	 * Loads column means and norms for correlations, and flags for compatible pairs of columns (one name contains the other).
+	 */
+	private void loadCorrelations(){
+		
+		//iCols = number of data columns
+		//rgsNames = names of data columns
+		
+		int iCols;
+		String rgsNames[];
+		
+		iCols = rgdData[0].length;
+		rgdMean = new double[iCols];
+		rgdNorm = new double[iCols];
+		for(int j=0;j<iCols;j++){
 			for(int i=0;i<iRows;i++){
-				rgdY[i]=rgdData[i][iCol];
+				rgdMean[j]+=rgdData[i][j];
 			}
-			
-			//loading data
-			ols2.newSampleData(rgdY, rgdX);
-			
-			//checking R^2
-			if(ols2.calculateRSquared()>d1){
-				return false;
+			rgdMean[j]=rgdMean[j]/((double) iRows);
+			for(int i=0;i<iRows;i++){
+				rgdNorm[j]+=(rgdData[i][j]-rgdMean[j])*(rgdData[i][j]-rgdMean[j]);
 			}
+			rgdNorm[j]=Math.sqrt(rgdNorm[j]);
+		}
+		rgdCorrelation = new double[iCols][iCols];
+		for(int j=0;j<iCols;j++){
+			Arrays.fill(rgdCorrelation[j], Double.NaN);
+		}
 		
+		//loading compatible columns
+		rgsNames = new String[iCols];
+		for(String s:mapColumn.keySet()){
+			rgsNames[mapColumn.get(s)]=s;
+		}
+		rgbCompatible = new boolean[iCols][iCols];
+		for(int i=0;i<iCols;i++){
+			for(int j=0;j<iCols;j++){
+				if(rgsNames[i]!=null && rgsNames[j]!=null){
+					if(rgsNames[i].contains(rgsNames[j]) || rgsNames[j].contains(rgsNames[i])){
+						rgbCompatible[i][j]=true;
+					}
+				}
+			}
 		}
-		return true;
 	}
 	
 	public Map<String,Integer> getColumnMap(){
@@ -565,6 +658,67 @@ public class FitLM_Apache{
 		return dOut;
 	}
 	
+	/**
+	 * Finds columns in predictor matrix of current model for given variables, so predictions can be found from arrays of values.
+	 * @param rgsVars Variable names.
+	 * @return Column of each variable in predictor matrix; -1 for variables that are not predictors in current model.
+	 */
+	public int[] findPredictorColumns(String rgsVars[]){
+		
+		//rgi1 = output
+		
+		int rgi1[];
+		
+		rgi1 = new int[rgsVars.length];
+		for(int i=0;i<rgsVars.length;i++){
+			if(mapColumnX.containsKey(rgsVars[i])){
+				rgi1[i] = mapColumnX.get(rgsVars[i]);
+			}else{
+				rgi1[i] = -1;
+			}
+		}
+		return rgi1;
+	}
+	
+	/**
+	 * Gets number of predictors in current model.
+	 * @return Number of predictors.
+	 */
+	public int getPredictorCount(){
+		return rgsPredictors.length;
+	}
+	
+	/**
+	 * Finds prediction for given predictor values (same result as findPrediction(String) without parsing).
+	 * @param rgdValues Values of variables.
+	 * @param rgiColumns Column in predictor matrix for each variable, from findPredictorColumns (variables with -1 are ignored).
+	 * @param rgdX Buffer for row of predictor matrix (length equal to number of predictors); overwritten.
+	 * @return Predicted value.
+	 */
+	public double findPrediction(double rgdValues[], int rgiColumns[], double rgdX[]){
+		
+		//dOut = output
+		
+		double dOut;
+		
+		//loading row of predictor matrix
+		Arrays.fill(rgdX, 0);
+		for(int k=0;k<rgdValues.length;k++){
+			if(rgiColumns[k]>=0){
+				rgdX[rgiColumns[k]]=rgdValues[k];
+			}
+		}
+		
+		//loading output
+		dOut=rgdCoefficients[0];
+		for(int j=0;j<rgdX.length;j++){
+			dOut+=rgdX[j]*rgdCoefficients[j+1];
+		}
+		
+		//outputting results
+		return dOut;
+	}
+	
 	/**
 	 * Prints fitted model.
 	 * @return Fitted model.
@@ -628,6 +782,56 @@ public class FitLM_Apache{
 		return d1;
 	}
 
+	/**
+	 * Finds leave-one-out predictions for current model from the residuals and leverages of the full fit: the prediction for row i with row i left out is y_i - e_i/(1-h_ii).
+	 * Leverages are found from the parameter variance matrix (X'X)^-1, so the n x n hat matrix is not formed.
+	 * @return Leave-one-out predicted values (-9999 for rows with leverage equal to 1).
+	 */
+	public double[] findLeaveOneOutPredictions(){
+
+		//rgdResiduals = residuals
+		//rgdV = (X'X)^-1, including intercept
+		//rgdOut = output
+		//d2 = current leverage
+		//d3 = current partial product
+
+		double rgdResiduals[]; double rgdOut[]; double rgdV[][];
+		double d2; double d3;
+
+		//loading residuals and variance matrix
+		rgdResiduals = ols1.estimateResiduals();
+		rgdV = ols1.estimateRegressionParametersVariance();
+
+		//loading output
+		rgdOut = new double[rgdResiduals.length];
+		for(int i=0;i<rgdResiduals.length;i++){
+			
+			//loading leverage
+			d2 = 0;
+			for(int j=0;j<rgdV.length;j++){
+				d3 = rgdV[j][0];
+				for(int l=1;l<rgdV.length;l++){
+					d3+=rgdV[j][l]*rgdX[i][l-1];
+				}
+				if(j==0){
+					d2+=d3;
+				}else{
+					d2+=d3*rgdX[i][j-1];
+				}
+			}
+			
+			//loading prediction
+			if(Math.abs(1.-d2)<0.000000001){
+				rgdOut[i]=-9999;
+			}else{
+				rgdOut[i]=rgdY[i]-rgdResiduals[i]/(1.-d2);
+			}
+		}
+
+		//returning result
+		return rgdOut;
+	}
+
 	public void loadCoefficients(){
 		this.rgdCoefficients = ols1.estimateRegressionParameters();
 		this.rgdStErrors = null;
@@ -0,0 +1,546 @@
+package edu.ucsf.base;
+
+import java.util.Arrays;
+
+/**
+ * Fits linear models for subsets of a fixed set of candidate predictors. The centered cross-product matrix [X y]'[X y] is computed once for all candidates; each subset is then fit by a Cholesky factorization of its k x k submatrix, so RSS, R^2, and coefficients cost O(k^3) with no pass over the rows of data.
+ * @author jladau
+ */
+
+public class FitLM_Gram{
+
+	//rgdXc[j][i] = centered value of candidate predictor j in row i
+	//rgdYc = centered response
+	//rgdMean = means of candidate predictors
+	//dMeanY = mean of response
+	//rgdSSCP = centered cross-product matrix of candidate predictors
+	//rgdSXY = centered cross-products of candidate predictors with response
+	//dSYY = total sum of squares of response
+	//iRows = number of rows of data
+	//iCandidates = number of candidate predictors
+	//rgiSubset = candidate predictors in current model (first iSize entries)
+	//iSize = number of predictors in current model
+	//rgdL = Cholesky factor (lower triangular) of cross-product submatrix for current model (first iSize rows and columns)
+	//rgdZ = solution of L z = X'y for current model
+	//rgdBeta = slope coefficients of current model
+	//bBeta = flag for whether slope coefficients have been loaded for current model
+	//rgdW = working array for leverage calculations
+	//dRSS = residual sum of squares of current model
+	//dTolerance = relative tolerance for singularity
+	//bValid = flag for whether factor of current model is valid (for incremental updates)
+	//iUpdates = number of incremental updates since last full factorization
+	//iRefactorInterval = number of incremental updates after which the factor is recomputed from scratch (limits accumulation of rounding error)
+
+	private double rgdXc[][];
+	private double rgdYc[];
+	private double rgdMean[];
+	private double dMeanY;
+	private double rgdSSCP[][];
+	private double rgdSXY[];
+	private double dSYY;
+	private int iRows;
+	private int iCandidates;
+	private int rgiSubset[];
+	private int iSize;
+	private double rgdL[][];
+	private double rgdZ[];
+	private double rgdBeta[];
+	private boolean bBeta;
+	private double rgdW[];
+	private double dRSS;
+	private double dTolerance = 0.0000000001;
+	private boolean bValid = false;
+	private int iUpdates;
+	private int iRefactorInterval = 1000;
+
+	/**
+	 * Constructor
+	 * @param rgdData Data in double format (rows are observations).
+	 * @param rgiColumns Columns of data with candidate predictors.
+	 * @param iResponseColumn Column of data with response.
+	 */
+	public FitLM_Gram(double rgdData[][], int rgiColumns[], int iResponseColumn){
+
+		//d1 = current cross product
+
+		double d1;
+
+		//loading sizes
+		iRows = rgdData.length;
+		iCandidates = rgiColumns.length;
+
+		//loading means
+		rgdMean = new double[iCandidates];
+		dMeanY = 0;
+		for(int i=0;i<iRows;i++){
+			for(int j=0;j<iCandidates;j++){
+				rgdMean[j]+=rgdData[i][rgiColumns[j]];
+			}
+			dMeanY+=rgdData[i][iResponseColumn];
+		}
+		for(int j=0;j<iCandidates;j++){
+			rgdMean[j]=rgdMean[j]/((double) iRows);
+		}
+		dMeanY=dMeanY/((double) iRows);
+
+		//loading centered data
+		rgdXc = new double[iCandidates][iRows];
+		rgdYc = new double[iRows];
+		for(int i=0;i<iRows;i++){
+			for(int j=0;j<iCandidates;j++){
+				rgdXc[j][i]=rgdData[i][rgiColumns[j]]-rgdMean[j];
+			}
+			rgdYc[i]=rgdData[i][iResponseColumn]-dMeanY;
+		}
+
+		//loading cross products
+		rgdSSCP = new double[iCandidates][iCandidates];
+		rgdSXY = new double[iCandidates];
+		for(int j=0;j<iCandidates;j++){
+			for(int l=0;l<=j;l++){
+				d1 = 0;
+				for(int i=0;i<iRows;i++){
+					d1+=rgdXc[j][i]*rgdXc[l][i];
+				}
+				rgdSSCP[j][l]=d1;
+				rgdSSCP[l][j]=d1;
+			}
+			d1 = 0;
+			for(int i=0;i<iRows;i++){
+				d1+=rgdXc[j][i]*rgdYc[i];
+			}
+			rgdSXY[j]=d1;
+		}
+		dSYY = 0;
+		for(int i=0;i<iRows;i++){
+			dSYY+=rgdYc[i]*rgdYc[i];
+		}
+		
+		//initializing factor arrays
+		rgiSubset = new int[iCandidates];
+		rgdL = new double[iCandidates][iCandidates];
+		rgdZ = new double[iCandidates];
+		rgdBeta = new double[iCandidates];
+		rgdW = new double[iCandidates];
+		iSize = 0;
+	}
+
+	/**
+	 * Constructor: shares data and cross products with an existing object (for running several models at once).
+	 * @param flg1 Existing object.
+	 */
+	public FitLM_Gram(FitLM_Gram flg1){
+		
+		//sharing data
+		rgdXc = flg1.rgdXc;
+		rgdYc = flg1.rgdYc;
+		rgdMean = flg1.rgdMean;
+		dMeanY = flg1.dMeanY;
+		rgdSSCP = flg1.rgdSSCP;
+		rgdSXY = flg1.rgdSXY;
+		dSYY = flg1.dSYY;
+		iRows = flg1.iRows;
+		iCandidates = flg1.iCandidates;
+		
+		//initializing factor arrays
+		rgiSubset = new int[iCandidates];
+		rgdL = new double[iCandidates][iCandidates];
+		rgdZ = new double[iCandidates];
+		rgdBeta = new double[iCandidates];
+		rgdW = new double[iCandidates];
+		iSize = 0;
+	}
+	
+	/**
+	 * Fits model with given subset of candidate predictors.
+	 * @param rgiSubset Indices of candidate predictors (0 is the first candidate).
+	 * @return True if fit was successful; false if the cross-product submatrix is singular.
+	 */
+	public boolean fitModel(int rgiSubset[]){
+
+		//d1 = current sum
+
+		double d1;
+
+		//initializing factor
+		iSize = rgiSubset.length;
+		System.arraycopy(rgiSubset, 0, this.rgiSubset, 0, iSize);
+		bBeta = false;
+		bValid = false;
+		iUpdates = 0;
+
+		//loading Cholesky factor
+		for(int j=0;j<iSize;j++){
+			for(int l=0;l<=j;l++){
+				d1 = rgdSSCP[rgiSubset[j]][rgiSubset[l]];
+				for(int m=0;m<l;m++){
+					d1-=rgdL[j][m]*rgdL[l][m];
+				}
+				if(l==j){
+					if(d1<=dTolerance*rgdSSCP[rgiSubset[j]][rgiSubset[j]] || d1<=0){
+						dRSS = -9999;
+						return false;
+					}
+					rgdL[j][j]=Math.sqrt(d1);
+				}else{
+					rgdL[j][l]=d1/rgdL[l][l];
+				}
+			}
+		}
+
+		//loading forward solution and residual sum of squares
+		dRSS = dSYY;
+		for(int j=0;j<iSize;j++){
+			d1 = rgdSXY[rgiSubset[j]];
+			for(int m=0;m<j;m++){
+				d1-=rgdL[j][m]*rgdZ[m];
+			}
+			rgdZ[j]=d1/rgdL[j][j];
+			dRSS-=rgdZ[j]*rgdZ[j];
+		}
+		if(dRSS<0){
+			dRSS=0;
+		}
+		bValid = true;
+		return true;
+	}
+	
+	/**
+	 * Fits model with given subset of candidate predictors, updating the factor of the current model if the two subsets differ by adding, dropping, or exchanging one predictor (O(k^2) instead of O(k^3)). Otherwise the model is fit from scratch.
+	 * @param rgiSubset Indices of candidate predictors (0 is the first candidate).
+	 * @return True if fit was successful; false if the cross-product submatrix is singular.
+	 */
+	public boolean updateModel(int rgiSubset[]){
+		
+		//iDrop = position in current model of predictor being dropped
+		//iAdd = candidate predictor being added
+		//iDropCount = number of predictors being dropped
+		//iAddCount = number of predictors being added
+		//bFound = flag for whether current predictor is in other subset
+		
+		int iDrop = -1; int iAdd = -1; int iDropCount = 0; int iAddCount = 0;
+		boolean bFound;
+		
+		//checking if incremental update is possible
+		if(bValid==false || iUpdates>=iRefactorInterval || Math.abs(rgiSubset.length-iSize)>1){
+			return fitModel(rgiSubset);
+		}
+		
+		//finding predictors being dropped and added
+		for(int j=0;j<iSize;j++){
+			bFound = false;
+			for(int l=0;l<rgiSubset.length;l++){
+				if(this.rgiSubset[j]==rgiSubset[l]){
+					bFound = true;
+					break;
+				}
+			}
+			if(bFound==false){
+				iDrop = j;
+				iDropCount++;
+			}
+		}
+		for(int l=0;l<rgiSubset.length;l++){
+			bFound = false;
+			for(int j=0;j<iSize;j++){
+				if(this.rgiSubset[j]==rgiSubset[l]){
+					bFound = true;
+					break;
+				}
+			}
+			if(bFound==false){
+				iAdd = rgiSubset[l];
+				iAddCount++;
+			}
+		}
+		if(iDropCount>1 || iAddCount>1){
+			return fitModel(rgiSubset);
+		}
+		
+		//updating factor
+		iUpdates++;
+		bBeta = false;
+		if(iDropCount==1){
+			dropPredictor(iDrop);
+		}
+		if(iAddCount==1){
+			return addPredictor(iAdd);
+		}
+		return true;
+	}
+	
+	/**
+	 * Loads current model (factor and fit) of another object sharing the same cross products.
+	 * @param flg1 Object with model to load.
+	 */
+	public void loadModel(FitLM_Gram flg1){
+		iSize = flg1.iSize;
+		System.arraycopy(flg1.rgiSubset, 0, rgiSubset, 0, iSize);
+		for(int j=0;j<iSize;j++){
+			System.arraycopy(flg1.rgdL[j], 0, rgdL[j], 0, j+1);
+		}
+		System.arraycopy(flg1.rgdZ, 0, rgdZ, 0, iSize);
+		dRSS = flg1.dRSS;
+		bValid = flg1.bValid;
+		iUpdates = flg1.iUpdates;
+		bBeta = false;
+	}
+	
+	/**
+	 * Drops candidate predictor from current model (O(k^2); cheapest when the predictor is near the end of the factor).
+	 * @param iCandidate Candidate predictor to drop.
+	 * @return True if successful; false if the current factor is not valid or does not include the predictor.
+	 */
+	public boolean dropCandidate(int iCandidate){
+		if(bValid==false){
+			return false;
+		}
+		for(int j=iSize-1;j>=0;j--){
+			if(rgiSubset[j]==iCandidate){
+				iUpdates++;
+				bBeta = false;
+				dropPredictor(j);
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks whether the factor of the current model is valid (false if the last fit was singular).
+	 * @return True if valid.
+	 */
+	public boolean isValid(){
+		return bValid;
+	}
+	
+	/**
+	 * Finds candidate predictors in current model, in the order used by the factor (and by findCoefficients).
+	 * @return Indices of candidate predictors.
+	 */
+	public int[] getSubset(){
+		return Arrays.copyOf(rgiSubset, iSize);
+	}
+	
+	/**
+	 * Adds predictor to current model by appending a row to the Cholesky factor.
+	 * @param iCandidate Candidate predictor being added.
+	 * @return True if successful; false if the predictor is collinear with the current model.
+	 */
+	private boolean addPredictor(int iCandidate){
+		
+		//k = number of predictors in current model
+		//d1 = current sum
+		
+		int k;
+		double d1;
+		
+		//loading new row of factor
+		k = iSize;
+		for(int l=0;l<k;l++){
+			d1 = rgdSSCP[iCandidate][rgiSubset[l]];
+			for(int m=0;m<l;m++){
+				d1-=rgdL[k][m]*rgdL[l][m];
+			}
+			rgdL[k][l]=d1/rgdL[l][l];
+		}
+		d1 = rgdSSCP[iCandidate][iCandidate];
+		for(int m=0;m<k;m++){
+			d1-=rgdL[k][m]*rgdL[k][m];
+		}
+		rgiSubset[k] = iCandidate;
+		iSize = k+1;
+		if(d1<=dTolerance*rgdSSCP[iCandidate][iCandidate] || d1<=0){
+			bValid = false;
+			dRSS = -9999;
+			return false;
+		}
+		rgdL[k][k]=Math.sqrt(d1);
+		
+		//loading new forward solution entry and updating residual sum of squares
+		d1 = rgdSXY[iCandidate];
+		for(int m=0;m<k;m++){
+			d1-=rgdL[k][m]*rgdZ[m];
+		}
+		rgdZ[k]=d1/rgdL[k][k];
+		dRSS-=rgdZ[k]*rgdZ[k];
+		if(dRSS<0){
+			dRSS=0;
+		}
+		return true;
+	}
+	
+	/**
+	 * Drops predictor from current model: the corresponding row of the Cholesky factor is removed and the factor is restored to triangular form with Givens rotations.
+	 * @param iPosition Position of predictor in current model.
+	 */
+	private void dropPredictor(int iPosition){
+		
+		//k = number of predictors in current model
+		//rgd1 = row being removed (reused as last row)
+		//dC = rotation cosine
+		//dS = rotation sine
+		//dR = rotation radius
+		//d1 = current first value
+		//d2 = current second value
+		
+		int k;
+		double rgd1[];
+		double dC; double dS; double dR; double d1; double d2;
+		
+		//removing row of factor (rows are shifted up; the removed row array is reused at the end)
+		k = iSize;
+		rgd1 = rgdL[iPosition];
+		for(int j=iPosition;j<k-1;j++){
+			rgdL[j]=rgdL[j+1];
+			rgiSubset[j]=rgiSubset[j+1];
+		}
+		rgdL[k-1]=rgd1;
+		
+		//restoring triangular form: rotating columns j and j+1 to remove entry above diagonal
+		for(int j=iPosition;j<k-1;j++){
+			d1 = rgdL[j][j];
+			d2 = rgdL[j][j+1];
+			dR = Math.sqrt(d1*d1+d2*d2);
+			dC = d1/dR;
+			dS = d2/dR;
+			for(int i=j;i<k-1;i++){
+				d1 = rgdL[i][j];
+				d2 = rgdL[i][j+1];
+				rgdL[i][j] = dC*d1+dS*d2;
+				rgdL[i][j+1] = -dS*d1+dC*d2;
+			}
+			d1 = rgdZ[j];
+			d2 = rgdZ[j+1];
+			rgdZ[j] = dC*d1+dS*d2;
+			rgdZ[j+1] = -dS*d1+dC*d2;
+		}
+		
+		//updating residual sum of squares
+		dRSS+=rgdZ[k-1]*rgdZ[k-1];
+		iSize = k-1;
+	}
+
+	/**
+	 * Finds residual sum of squares of current model.
+	 * @return Residual sum of squares.
+	 */
+	public double findRSS(){
+		return dRSS;
+	}
+
+	/**
+	 * Finds R^2 of current model.
+	 * @return R^2 value
+	 */
+	public double findRSquared(){
+		return 1.-dRSS/dSYY;
+	}
+
+	/**
+	 * Finds the total sum of squares
+	 * @return Total sum of squares
+	 */
+	public double findTSS(){
+		return dSYY;
+	}
+
+	/**
+	 * Finds coefficients of current model.
+	 * @return Coefficients (intercept first, then predictors in the order given by getSubset).
+	 */
+	public double[] findCoefficients(){
+
+		//rgdOut = output
+
+		double rgdOut[];
+
+		loadBeta();
+		rgdOut = new double[iSize+1];
+		rgdOut[0]=dMeanY;
+		for(int j=0;j<iSize;j++){
+			rgdOut[j+1]=rgdBeta[j];
+			rgdOut[0]-=rgdBeta[j]*rgdMean[rgiSubset[j]];
+		}
+		return rgdOut;
+	}
+
+	/**
+	 * Finds PRESS statistic of current model from residuals and leverages. Requires one pass over the rows of data.
+	 * @param dBound Bound at which to stop: once the partial sum exceeds this value it is returned without completing the pass.
+	 * @return PRESS statistic (or a partial sum greater than dBound).
+	 */
+	public double findPRESS(double dBound){
+
+		//dResidual = current residual
+		//dLeverage = current leverage
+		//d1 = current sum
+		//dOut = output
+
+		double dResidual; double dLeverage; double d1; double dOut;
+
+		//loading coefficients
+		loadBeta();
+
+		//looping through rows
+		dOut = 0;
+		for(int i=0;i<iRows;i++){
+
+			//loading residual and leverage
+			dResidual = rgdYc[i];
+			dLeverage = 1./((double) iRows);
+			for(int j=0;j<iSize;j++){
+				d1 = rgdXc[rgiSubset[j]][i];
+				dResidual-=rgdBeta[j]*d1;
+				for(int m=0;m<j;m++){
+					d1-=rgdL[j][m]*rgdW[m];
+				}
+				rgdW[j]=d1/rgdL[j][j];
+				dLeverage+=rgdW[j]*rgdW[j];
+			}
+
+			//updating output
+			if(dLeverage>=1.-dTolerance){
+				if(Math.abs(dResidual)>0.000000001){
+					System.out.println("ERROR: hat matrix entry equal to 1.");
+				}
+			}else{
+				dOut+=(dResidual/(1.-dLeverage))*(dResidual/(1.-dLeverage));
+				if(dOut>dBound){
+					return dOut;
+				}
+			}
+		}
+		return dOut;
+	}
+
+	/**
+	 * Finds PRESS statistic of current model from residuals and leverages.
+	 * @return PRESS statistic
+	 */
+	public double findPRESS(){
+		return findPRESS(Double.MAX_VALUE);
+	}
+
+	/**
+	 * Loads slope coefficients for current model by back substitution.
+	 */
+	private void loadBeta(){
+
+		//d1 = current sum
+
+		double d1;
+
+		if(bBeta==true){
+			return;
+		}
+		for(int j=iSize-1;j>=0;j--){
+			d1 = rgdZ[j];
+			for(int m=j+1;m<iSize;m++){
+				d1-=rgdL[m][j]*rgdBeta[m];
+			}
+			rgdBeta[j]=d1/rgdL[j][j];
+		}
+		bBeta = true;
+	}
+}
@@ -0,0 +1,203 @@
+package edu.ucsf.base;
+
+import java.util.TreeMap;
+
+/**
+ * Axis of a raster (latitude, longitude, elevation, or time). Finds the index of the axis value nearest to a given value: by
+ * arithmetic for regularly spaced axes, and by tree lookup otherwise.
+ * @author jladau
+ */
+
+public class GridAxis {
+	
+	//map1 = map from axis values to indices
+	//rgdValue = axis values in index order (null if indices are not 0,...,n-1)
+	//dOrigin = value with index 0
+	//dStep = spacing between consecutive values
+	//bRegular = true if values are regularly spaced
+	
+	private TreeMap<Double,Integer> map1;
+	private double rgdValue[] = null;
+	private double dOrigin;
+	private double dStep;
+	private boolean bRegular;
+	
+	/**
+	 * Constructor
+	 * @param map1 Map from axis values to indices.
+	 */
+	public GridAxis(TreeMap<Double,Integer> map1){
+		
+		//rgb1 = flags for whether each index has been found
+		
+		boolean rgb1[];
+		
+		//saving map
+		this.map1 = map1;
+		bRegular = false;
+		
+		//loading values in index order
+		rgdValue = new double[map1.size()];
+		rgb1 = new boolean[map1.size()];
+		for(double d:map1.keySet()){
+			if(map1.get(d)<0 || map1.get(d)>=rgdValue.length || rgb1[map1.get(d)]==true){
+				rgdValue = null;
+				return;
+			}
+			rgdValue[map1.get(d)]=d;
+			rgb1[map1.get(d)]=true;
+		}
+		if(rgdValue.length==0){
+			return;
+		}
+		
+		//checking whether values are regularly spaced
+		dOrigin = rgdValue[0];
+		if(rgdValue.length==1){
+			dStep = 0;
+			bRegular = true;
+			return;
+		}
+		dStep = (rgdValue[rgdValue.length-1]-rgdValue[0])/((double) (rgdValue.length-1));
+		for(int i=0;i<rgdValue.length;i++){
+			if(!(Math.abs(rgdValue[i]-(dOrigin+i*dStep))<=0.000001*Math.abs(dStep))){
+				return;
+			}
+		}
+		bRegular = true;
+	}
+	
+	/**
+	 * Finds index of axis value closest to the given value (values outside of axis are assigned to the nearest end; ties go to the larger value).
+	 * @param dKey Value to look up.
+	 * @return Index of closest axis value.
+	 */
+	public int findIndex(double dKey){
+		
+		//d1 = position of value on axis
+		//i = output
+		
+		double d1;
+		int i;
+		
+		//checking if irregular
+		if(bRegular==false){
+			return lookupValue(dKey);
+		}
+		if(rgdValue.length==1){
+			return 0;
+		}
+		
+		//loading index by arithmetic
+		d1 = (dKey-dOrigin)/dStep;
+		if(d1<=0){
+			i = 0;
+		}else if(d1>=rgdValue.length-1){
+			i = rgdValue.length-1;
+		}else{
+			i = (int) Math.floor(d1+0.5);
+		}
+		
+		//correcting for rounding error (ties and values near midpoints are resolved as in tree lookup)
+		while(i<rgdValue.length-1 && isCloser(rgdValue[i+1], rgdValue[i], dKey)){
+			i++;
+		}
+		while(i>0 && isCloser(rgdValue[i-1], rgdValue[i], dKey)){
+			i--;
+		}
+		return i;
+	}
+	
+	/**
+	 * Checks whether axis is regularly spaced.
+	 * @return True if regularly spaced.
+	 */
+	public boolean isRegular(){
+		return bRegular;
+	}
+	
+	/**
+	 * Gets value with index 0.
+	 * @return Origin of axis.
+	 */
+	public double getOrigin(){
+		return dOrigin;
+	}
+	
+	/**
+	 * Gets spacing between consecutive values (regular axes).
+	 * @return Spacing.
+	 */
+	public double getStep(){
+		return dStep;
+	}
+	
+	/**
+	 * Gets number of values.
+	 * @return Number of values.
+	 */
+	public int size(){
+		return map1.size();
+	}
+	
+	/**
+	 * Checks whether first value is closer to key than second value (ties go to the larger value).
+	 * @param d1 First value.
+	 * @param d2 Second value.
+	 * @param dKey Key.
+	 * @return True if first value is closer.
+	 */
+	private boolean isCloser(double d1, double d2, double dKey){
+		
+		//dDist1 = distance to first value
+		//dDist2 = distance to second value
+		
+		double dDist1; double dDist2;
+		
+		dDist1 = Math.abs(dKey-d1);
+		dDist2 = Math.abs(dKey-d2);
+		return dDist1<dDist2 || (dDist1==dDist2 && d1>d2);
+	}
+	
+	/**
+	 * Looks up value for key closest to the specified key in the map.
+	 * @param dKey Map for lookup.
+	 * @return Value of closest key.
+	 */
+	private Integer lookupValue(double dKey){
+		
+		//dFloorKey = floor key
+		//dCeilingKey = ceiling key
+		
+		double dFloorKey; double dCeilingKey;
+		
+		//checking if key is in map
+		if(map1.containsKey(dKey)){
+			return map1.get(dKey);
+		}else{
+			
+			//checking if smaller than the smallest key
+			if(dKey<map1.firstKey()){
+				return map1.get(map1.firstKey());
+			
+			//checking if larger than the largest key
+			}else if(dKey>map1.lastKey()){
+				return map1.get(map1.lastKey());
+			
+			//finding nearest key
+			}else{
+				
+				//loading floor and ceiling keys
+				dFloorKey = map1.floorKey(dKey);
+				dCeilingKey = map1.ceilingKey(dKey);
+				
+				//returning closest value
+				if((dKey-dFloorKey)<(dCeilingKey-dKey)){
+					return map1.get(dFloorKey);
+				}else{
+					return map1.get(dCeilingKey);
+				}
+			}
+		}
+	}
+}
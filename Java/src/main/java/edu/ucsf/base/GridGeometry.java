@@ -0,0 +1,195 @@
+package edu.ucsf.base;
+
+import java.util.Arrays;
+
+/**
+ * Geometry of an output grid: extent and cell size in degrees. Row 0 is the northernmost row and column 0 the westernmost
+ * column; cells are addressed by their centers. The default grid is the global 0.5 degree grid (360 rows by 720 columns).
+ * @author jladau
+ */
+
+public class GridGeometry {
+	
+	//dLatMin = southern edge of grid
+	//dLatMax = northern edge of grid
+	//dLonMin = western edge of grid
+	//dLonMax = eastern edge of grid
+	//dCellSize = cell size in degrees
+	//iRows = number of rows
+	//iCols = number of columns
+	
+	private double dLatMin;
+	private double dLatMax;
+	private double dLonMin;
+	private double dLonMax;
+	private double dCellSize;
+	private int iRows;
+	private int iCols;
+	
+	/**
+	 * Constructor for global grid
+	 * @param dCellSize Cell size in degrees.
+	 */
+	public GridGeometry(double dCellSize){
+		this(-90, 90, -180, 180, dCellSize);
+	}
+	
+	/**
+	 * Constructor
+	 * @param dLatMin Southern edge of grid.
+	 * @param dLatMax Northern edge of grid.
+	 * @param dLonMin Western edge of grid.
+	 * @param dLonMax Eastern edge of grid.
+	 * @param dCellSize Cell size in degrees.
+	 */
+	public GridGeometry(double dLatMin, double dLatMax, double dLonMin, double dLonMax, double dCellSize){
+		this.dLatMin = dLatMin;
+		this.dLatMax = dLatMax;
+		this.dLonMin = dLonMin;
+		this.dLonMax = dLonMax;
+		this.dCellSize = dCellSize;
+		iRows = (int) Math.round((dLatMax-dLatMin)/dCellSize);
+		iCols = (int) Math.round((dLonMax-dLonMin)/dCellSize);
+	}
+	
+	/**
+	 * Gets number of rows in grid.
+	 * @return Number of rows.
+	 */
+	public int getRowCount(){
+		return iRows;
+	}
+	
+	/**
+	 * Gets number of columns in grid.
+	 * @return Number of columns.
+	 */
+	public int getColCount(){
+		return iCols;
+	}
+	
+	/**
+	 * Gets size of cells (in degrees).
+	 * @return Cell size.
+	 */
+	public double getCellSize(){
+		return dCellSize;
+	}
+	
+	/**
+	 * Gets extent of grid.
+	 * @return Extent in following order: latmin, latmax, lonmin, lonmax.
+	 */
+	public double[] getExtent(){
+		return new double[]{dLatMin, dLatMax, dLonMin, dLonMax};
+	}
+	
+	/**
+	 * Gets latitude of center of cells in given row.
+	 * @param iRow Row.
+	 * @return Latitude.
+	 */
+	public double findLat(int iRow){
+		return dLatMax-dCellSize*(iRow+0.5);
+	}
+	
+	/**
+	 * Gets longitude of center of cells in given column.
+	 * @param iCol Column.
+	 * @return Longitude.
+	 */
+	public double findLon(int iCol){
+		return dLonMin+dCellSize*(iCol+0.5);
+	}
+	
+	/**
+	 * Finds first row (for maximum latitude) or last row (for minimum latitude) with cell centers within latitude bound.
+	 * @param dLat Latitude bound.
+	 * @param bMax True if bound is maximum latitude.
+	 * @return Row (may be outside of grid if no rows are within bound).
+	 */
+	public int findRow(double dLat, boolean bMax){
+		
+		//d1 = position of bound in rows from center of first row
+		
+		double d1;
+		
+		d1 = (dLatMax-dCellSize/2.-dLat)/dCellSize;
+		if(bMax){
+			return Math.max(0, (int) Math.ceil(d1-0.000001));
+		}else{
+			return Math.min(iRows-1, (int) Math.floor(d1+0.000001));
+		}
+	}
+	
+	/**
+	 * Finds first column (for minimum longitude) or last column (for maximum longitude) with cell centers within longitude bound.
+	 * @param dLon Longitude bound.
+	 * @param bMin True if bound is minimum longitude.
+	 * @return Column (may be outside of grid if no columns are within bound).
+	 */
+	public int findCol(double dLon, boolean bMin){
+		
+		//d1 = position of bound in columns from center of first column
+		
+		double d1;
+		
+		d1 = (dLon-dLonMin-dCellSize/2.)/dCellSize;
+		if(bMin){
+			return Math.max(0, (int) Math.ceil(d1-0.000001));
+		}else{
+			return Math.min(iCols-1, (int) Math.floor(d1+0.000001));
+		}
+	}
+	
+	/**
+	 * Gets latitudes of cell centers in increasing order (as written to NetCDF files).
+	 * @return Latitudes.
+	 */
+	public double[] getLatAxis(){
+		
+		//rgd1 = output
+		
+		double rgd1[];
+		
+		rgd1 = new double[iRows];
+		for(int i=0;i<iRows;i++){
+			rgd1[i] = findLat(iRows-i-1);
+		}
+		return rgd1;
+	}
+	
+	/**
+	 * Gets longitudes of cell centers in increasing order.
+	 * @return Longitudes.
+	 */
+	public double[] getLonAxis(){
+		
+		//rgd1 = output
+		
+		double rgd1[];
+		
+		rgd1 = new double[iCols];
+		for(int j=0;j<iCols;j++){
+			rgd1[j] = findLon(j);
+		}
+		return rgd1;
+	}
+	
+	/**
+	 * Initializes grid with all values set to -9999, so cells that are not filled are recorded as missing.
+	 * @return Grid (rows by columns).
+	 */
+	public double[][] initializeGrid(){
+		
+		//rgd1 = output
+		
+		double rgd1[][];
+		
+		rgd1 = new double[iRows][iCols];
+		for(int i=0;i<iRows;i++){
+			Arrays.fill(rgd1[i], -9999);
+		}
+		return rgd1;
+	}
+}
@@ -0,0 +1,398 @@
+package edu.ucsf.base;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+
+/**
+ * Contiguous tile (block of rows and columns) of a map grid, filled by one task when maps are computed in parallel, and its binary
+ * tile file. File format (big-endian): format code, version, grid extent and cell size, number of rows and columns of grid, first and
+ * last row and column of tile, variable name, number of layers, elevation and time of each layer, and then for each layer the values
+ * of the tile (row-major) as floats. Values are stored as floats because map variables are written to NetCDF files as floats.
+ * @author jladau
+ */
+
+public class MapTile {
+	
+	//FORMAT_CODE = code at start of file
+	//VERSION = format version
+	//geo1 = grid geometry
+	//iRowMin = first row of tile
+	//iRowMax = last row of tile
+	//iColMin = first column of tile
+	//iColMax = last column of tile
+	//sPath = path to tile file
+	//sVarName = variable name
+	//rgdVert = elevation of each layer
+	//rgdTime = time of each layer
+	//lOffset = position of first layer in file
+	//dos1 = output stream (while writing)
+	//iLayer = number of layers written
+	
+	private static final int FORMAT_CODE = 0x53444D54;
+	private static final int VERSION = 1;
+	private GridGeometry geo1;
+	private int iRowMin;
+	private int iRowMax;
+	private int iColMin;
+	private int iColMax;
+	private String sPath;
+	private String sVarName;
+	private double rgdVert[];
+	private double rgdTime[];
+	private long lOffset;
+	private DataOutputStream dos1;
+	private int iLayer;
+	
+	/**
+	 * Constructor
+	 * @param geo1 Grid geometry.
+	 * @param iRowMin First row of tile.
+	 * @param iRowMax Last row of tile.
+	 * @param iColMin First column of tile.
+	 * @param iColMax Last column of tile.
+	 */
+	public MapTile(GridGeometry geo1, int iRowMin, int iRowMax, int iColMin, int iColMax){
+		this.geo1 = geo1;
+		this.iRowMin = iRowMin;
+		this.iRowMax = iRowMax;
+		this.iColMin = iColMin;
+		this.iColMax = iColMax;
+	}
+	
+	/**
+	 * Finds tile for given task: the rows and columns of the region are divided into iTotalTasks contiguous tiles (as close to square
+	 * as the number of tasks allows), numbered in row-major order.
+	 * @param geo1 Grid geometry.
+	 * @param rgn1 Region of interest (null for whole grid).
+	 * @param iTaskID Task ID (tasks are numbered 1,...,iTotalTasks).
+	 * @param iTotalTasks Total number of tasks.
+	 * @return Tile; tile has no rows if task ID is out of range.
+	 */
+	public static MapTile findTile(GridGeometry geo1, RasterRegion rgn1, int iTaskID, int iTotalTasks){
+		
+		//iRowMin = first row of region
+		//iRows = number of rows of region
+		//iColMin = first column of region
+		//iCols = number of columns of region
+		//iTileRows = number of tiles along rows
+		//iTileCols = number of tiles along columns
+		//iTileRow = row of tile
+		//iTileCol = column of tile
+		
+		int iRowMin; int iRows; int iColMin; int iCols; int iTileRows; int iTileCols; int iTileRow; int iTileCol;
+		
+		//loading bounds of region
+		if(rgn1==null){
+			iRowMin = 0; iRows = geo1.getRowCount(); iColMin = 0; iCols = geo1.getColCount();
+		}else{
+			iRowMin = rgn1.getRowMin(); iRows = Math.max(0, rgn1.getRowMax()-iRowMin+1);
+			iColMin = rgn1.getColMin(); iCols = Math.max(0, rgn1.getColMax()-iColMin+1);
+		}
+		
+		//checking task
+		if(iTaskID<1 || iTaskID>iTotalTasks){
+			System.out.println("ERROR: task " + iTaskID + " is not between 1 and " + iTotalTasks + ".");
+			return new MapTile(geo1, 0, -1, 0, -1);
+		}
+		
+		//loading numbers of tiles: largest divisor of number of tasks not greater than its square root along columns
+		iTileCols = (int) Math.floor(Math.sqrt(iTotalTasks));
+		while(iTotalTasks % iTileCols != 0){
+			iTileCols--;
+		}
+		iTileRows = iTotalTasks/iTileCols;
+		
+		//loading tile
+		iTileRow = (iTaskID-1)/iTileCols;
+		iTileCol = (iTaskID-1) % iTileCols;
+		return new MapTile(geo1,
+				iRowMin + findBoundary(iRows, iTileRows, iTileRow), iRowMin + findBoundary(iRows, iTileRows, iTileRow+1) - 1,
+				iColMin + findBoundary(iCols, iTileCols, iTileCol), iColMin + findBoundary(iCols, iTileCols, iTileCol+1) - 1);
+	}
+	
+	/**
+	 * Reads header of tile file.
+	 * @param sPath Path to tile file.
+	 * @return Tile; null if file could not be read.
+	 */
+	public static MapTile readTile(String sPath){
+		
+		//raf1 = file being read
+		//rgd1 = grid extent
+		//dCellSize = cell size
+		//til1 = output
+		//iLayers = number of layers
+		
+		RandomAccessFile raf1;
+		double rgd1[];
+		double dCellSize;
+		MapTile til1;
+		int iLayers;
+		
+		try{
+			raf1 = new RandomAccessFile(sPath, "r");
+			try{
+				
+				//checking header
+				if(raf1.readInt()!=FORMAT_CODE || raf1.readInt()!=VERSION){
+					System.out.println("ERROR: " + sPath + " is not a map tile file.");
+					return null;
+				}
+				
+				//loading grid and tile
+				rgd1 = new double[4];
+				for(int i=0;i<4;i++){
+					rgd1[i] = raf1.readDouble();
+				}
+				dCellSize = raf1.readDouble();
+				raf1.readInt();
+				raf1.readInt();
+				til1 = new MapTile(new GridGeometry(rgd1[0], rgd1[1], rgd1[2], rgd1[3], dCellSize), raf1.readInt(), raf1.readInt(), raf1.readInt(), raf1.readInt());
+				til1.sPath = sPath;
+				til1.sVarName = raf1.readUTF();
+				
+				//loading layers
+				iLayers = raf1.readInt();
+				til1.rgdVert = new double[iLayers];
+				til1.rgdTime = new double[iLayers];
+				for(int k=0;k<iLayers;k++){
+					til1.rgdVert[k] = raf1.readDouble();
+					til1.rgdTime[k] = raf1.readDouble();
+				}
+				til1.lOffset = raf1.getFilePointer();
+			}finally{
+				raf1.close();
+			}
+		}catch(IOException e){
+			System.out.println("ERROR: could not read map tile " + sPath + ".");
+			return null;
+		}
+		return til1;
+	}
+	
+	/**
+	 * Reads layer of tile file into grid: cells of tile are overwritten, other cells are left unchanged.
+	 * @param iLayer Layer.
+	 * @param rgdGrid Grid (rows by columns).
+	 * @return True if layer was read.
+	 */
+	public boolean readLayer(int iLayer, double rgdGrid[][]){
+		
+		//raf1 = file being read
+		//rgb1 = values of layer
+		//flb1 = values of layer as floats
+		//iCols = number of columns of tile
+		
+		RandomAccessFile raf1;
+		byte rgb1[];
+		FloatBuffer flb1;
+		int iCols;
+		
+		iCols = getColCount();
+		rgb1 = new byte[4*getRowCount()*iCols];
+		try{
+			raf1 = new RandomAccessFile(sPath, "r");
+			try{
+				raf1.seek(lOffset + ((long) iLayer)*rgb1.length);
+				raf1.readFully(rgb1);
+			}finally{
+				raf1.close();
+			}
+		}catch(IOException e){
+			System.out.println("ERROR: could not read layer " + iLayer + " of map tile " + sPath + ".");
+			return false;
+		}
+		flb1 = ByteBuffer.wrap(rgb1).asFloatBuffer();
+		for(int i=iRowMin;i<=iRowMax;i++){
+			for(int j=iColMin;j<=iColMax;j++){
+				rgdGrid[i][j] = flb1.get();
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Initializes writer for tile file.
+	 * @param sPath Path to tile file.
+	 * @param sVarName Variable name.
+	 * @param lstVert Elevation of each layer.
+	 * @param lstTime Time of each layer.
+	 */
+	public void initializeWriter(String sPath, String sVarName, ArrayList<Double> lstVert, ArrayList<Double> lstTime){
+		
+		//rgd1 = grid extent
+		
+		double rgd1[];
+		
+		this.sPath = sPath;
+		this.sVarName = sVarName;
+		iLayer = 0;
+		try{
+			dos1 = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(sPath)));
+			dos1.writeInt(FORMAT_CODE);
+			dos1.writeInt(VERSION);
+			rgd1 = geo1.getExtent();
+			for(int i=0;i<4;i++){
+				dos1.writeDouble(rgd1[i]);
+			}
+			dos1.writeDouble(geo1.getCellSize());
+			dos1.writeInt(geo1.getRowCount());
+			dos1.writeInt(geo1.getColCount());
+			dos1.writeInt(iRowMin);
+			dos1.writeInt(iRowMax);
+			dos1.writeInt(iColMin);
+			dos1.writeInt(iColMax);
+			dos1.writeUTF(sVarName);
+			dos1.writeInt(lstVert.size());
+			for(int k=0;k<lstVert.size();k++){
+				dos1.writeDouble(lstVert.get(k));
+				dos1.writeDouble(lstTime.get(k));
+			}
+		}catch(IOException e){
+			System.out.println("ERROR: could not write map tile " + sPath + ".");
+			dos1 = null;
+		}
+	}
+	
+	/**
+	 * Writes next layer to open writer.
+	 * @param rgdGrid Grid (rows by columns); only cells of tile are written.
+	 */
+	public void writeLayer(double rgdGrid[][]){
+		if(dos1==null){
+			return;
+		}
+		try{
+			for(int i=iRowMin;i<=iRowMax;i++){
+				for(int j=iColMin;j<=iColMax;j++){
+					dos1.writeFloat((float) rgdGrid[i][j]);
+				}
+			}
+			iLayer++;
+		}catch(IOException e){
+			System.out.println("ERROR: could not write layer " + iLayer + " of map tile " + sPath + ".");
+		}
+	}
+	
+	/**
+	 * Closes writer.
+	 */
+	public void closeWriter(){
+		if(dos1==null){
+			return;
+		}
+		try{
+			dos1.close();
+		}catch(IOException e){
+			System.out.println("ERROR: could not write map tile " + sPath + ".");
+		}
+		dos1 = null;
+	}
+	
+	/**
+	 * Gets grid geometry of map that tile belongs to.
+	 * @return Grid geometry.
+	 */
+	public GridGeometry getGeometry(){
+		return geo1;
+	}
+	
+	/**
+	 * Gets first row of tile.
+	 * @return First row.
+	 */
+	public int getRowMin(){
+		return iRowMin;
+	}
+	
+	/**
+	 * Gets last row of tile.
+	 * @return Last row.
+	 */
+	public int getRowMax(){
+		return iRowMax;
+	}
+	
+	/**
+	 * Gets first column of tile.
+	 * @return First column.
+	 */
+	public int getColMin(){
+		return iColMin;
+	}
+	
+	/**
+	 * Gets last column of tile.
+	 * @return Last column.
+	 */
+	public int getColMax(){
+		return iColMax;
+	}
+	
+	/**
+	 * Gets number of rows in tile.
+	 * @return Number of rows (0 if tile is empty).
+	 */
+	public int getRowCount(){
+		return Math.max(0, iRowMax-iRowMin+1);
+	}
+	
+	/**
+	 * Gets number of columns in tile.
+	 * @return Number of columns (0 if tile is empty).
+	 */
+	public int getColCount(){
+		return Math.max(0, iColMax-iColMin+1);
+	}
+	
+	/**
+	 * Gets name of variable in tile file.
+	 * @return Variable name.
+	 */
+	public String getVarName(){
+		return sVarName;
+	}
+	
+	/**
+	 * Gets number of layers in tile file.
+	 * @return Number of layers.
+	 */
+	public int getLayerCount(){
+		return rgdVert.length;
+	}
+	
+	/**
+	 * Gets elevation of given layer.
+	 * @param iLayer Layer.
+	 * @return Elevation.
+	 */
+	public double getVert(int iLayer){
+		return rgdVert[iLayer];
+	}
+	
+	/**
+	 * Gets time of given layer.
+	 * @param iLayer Layer.
+	 * @return Time.
+	 */
+	public double getTime(int iLayer){
+		return rgdTime[iLayer];
+	}
+	
+	/**
+	 * Finds boundary between contiguous ranges (as in ClusterIterator).
+	 * @param iTotal Total number of rows or columns.
+	 * @param iParts Number of ranges.
+	 * @param iPart Number of ranges before boundary.
+	 * @return First row or column after boundary (relative to first row or column).
+	 */
+	private static int findBoundary(int iTotal, int iParts, int iPart){
+		return (int) ((((long) iTotal)*iPart)/iParts);
+	}
+}
@@ -0,0 +1,319 @@
+package edu.ucsf.base;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Polygon mask rasterized to a bitmap on a grid: one bit per cell, set if the cell center is within the mask. The bitmap is computed
+ * once per mask file and grid, saved next to the mask file together with a hash of the mask file contents, and memory-mapped on later
+ * runs (it is recomputed if the mask file has changed). File format (big-endian): format code, version, hash length and hash, grid
+ * extent and cell size, number of rows and columns, padding to a multiple of 8 bytes, and bits (row-major) packed into longs.
+ * @author jladau
+ */
+
+public class MaskBitmap {
+	
+	//FORMAT_CODE = code at start of file
+	//VERSION = format version
+	//geo1 = grid geometry
+	//lgb1 = bits packed into longs
+	
+	private static final int FORMAT_CODE = 0x53444D4D;
+	private static final int VERSION = 1;
+	private GridGeometry geo1;
+	private LongBuffer lgb1;
+	
+	/**
+	 * Constructor
+	 * @param geo1 Grid geometry.
+	 * @param lgb1 Bits packed into longs.
+	 */
+	private MaskBitmap(GridGeometry geo1, LongBuffer lgb1){
+		this.geo1 = geo1;
+		this.lgb1 = lgb1;
+	}
+	
+	/**
+	 * Loads bitmap for given mask and grid: memory-maps saved bitmap if it is current, otherwise rasterizes mask and saves bitmap.
+	 * @param sPathMask Path to polygon mask (.shp.txt).
+	 * @param geo1 Grid geometry.
+	 * @return Bitmap.
+	 */
+	public static MaskBitmap load(String sPathMask, GridGeometry geo1){
+		
+		//sPathBitmap = path to saved bitmap
+		//rgbHash = hash of mask file
+		//mbm1 = output
+		//rgl1 = rasterized bits
+		
+		String sPathBitmap;
+		byte rgbHash[];
+		MaskBitmap mbm1;
+		long rgl1[];
+		
+		//loading saved bitmap if current
+		sPathBitmap = findBitmapPath(sPathMask, geo1);
+		rgbHash = findHash(sPathMask);
+		mbm1 = readBitmap(sPathBitmap, geo1, rgbHash);
+		if(mbm1!=null){
+			return mbm1;
+		}
+		
+		//rasterizing and saving
+		rgl1 = rasterize(sPathMask, geo1);
+		writeBitmap(sPathBitmap, geo1, rgbHash, rgl1);
+		mbm1 = readBitmap(sPathBitmap, geo1, rgbHash);
+		if(mbm1==null){
+			mbm1 = new MaskBitmap(geo1, LongBuffer.wrap(rgl1));
+		}
+		return mbm1;
+	}
+	
+	/**
+	 * Checks whether point is in mask.
+	 * @param dLat Latitude.
+	 * @param dLon Longitude.
+	 * @return True if cell containing point is in mask; false otherwise (including points outside of grid).
+	 */
+	public boolean contains(double dLat, double dLon){
+		
+		//rgd1 = grid extent
+		//iRow = row of cell
+		//iCol = column of cell
+		
+		double rgd1[];
+		int iRow; int iCol;
+		
+		rgd1 = geo1.getExtent();
+		iRow = (int) Math.floor((rgd1[1]-dLat)/geo1.getCellSize());
+		iCol = (int) Math.floor((dLon-rgd1[2])/geo1.getCellSize());
+		if(iRow<0 || iRow>=geo1.getRowCount() || iCol<0 || iCol>=geo1.getColCount()){
+			return false;
+		}
+		return contains(iRow, iCol);
+	}
+	
+	/**
+	 * Checks whether cell is in mask.
+	 * @param iRow Row.
+	 * @param iCol Column.
+	 * @return True if cell is in mask.
+	 */
+	public boolean contains(int iRow, int iCol){
+		
+		//l1 = index of cell
+		
+		long l1;
+		
+		l1 = ((long) iRow)*geo1.getColCount()+iCol;
+		return ((lgb1.get((int) (l1>>>6))>>>(l1&63))&1L)==1L;
+	}
+	
+	/**
+	 * Gets grid geometry of bitmap.
+	 * @return Grid geometry.
+	 */
+	public GridGeometry getGeometry(){
+		return geo1;
+	}
+	
+	/**
+	 * Finds path of saved bitmap for given mask and grid.
+	 * @param sPathMask Path to mask.
+	 * @param geo1 Grid geometry.
+	 * @return Path to bitmap.
+	 */
+	public static String findBitmapPath(String sPathMask, GridGeometry geo1){
+		
+		//rgd1 = grid extent
+		
+		double rgd1[];
+		
+		rgd1 = geo1.getExtent();
+		return sPathMask + "_" + geo1.getCellSize() + "_" + rgd1[0] + "_" + rgd1[1] + "_" + rgd1[2] + "_" + rgd1[3] + ".mbm";
+	}
+	
+	/**
+	 * Rasterizes mask: sets bit for each cell with center in a mask polygon (by scanlines, see PolygonRasterizer).
+	 * @param sPathMask Path to mask.
+	 * @param geo1 Grid geometry.
+	 * @return Bits packed into longs.
+	 */
+	private static long[] rasterize(String sPathMask, GridGeometry geo1){
+		
+		//ptl1 = point on land object for polygons
+		
+		PointOnLand ptl1;
+		
+		//loading polygons
+		ptl1 = new PointOnLand(sPathMask);
+		
+		//rasterizing polygons
+		return new PolygonRasterizer(geo1, "winding").rasterize(ptl1.getPolygons());
+	}
+	
+	/**
+	 * Finds hash of file contents.
+	 * @param sPath Path to file.
+	 * @return SHA-256 hash.
+	 */
+	private static byte[] findHash(String sPath){
+		
+		//mdg1 = message digest
+		//ist1 = input stream
+		//rgb1 = buffer
+		//i = number of bytes read
+		
+		MessageDigest mdg1;
+		InputStream ist1;
+		byte rgb1[];
+		int i;
+		
+		try{
+			mdg1 = MessageDigest.getInstance("SHA-256");
+			ist1 = new BufferedInputStream(new FileInputStream(sPath));
+			rgb1 = new byte[65536];
+			while((i=ist1.read(rgb1))!=-1){
+				mdg1.update(rgb1, 0, i);
+			}
+			ist1.close();
+			return mdg1.digest();
+		}catch(IOException e){
+			System.out.println("ERROR: could not read mask " + sPath + ".");
+			return new byte[0];
+		}catch(NoSuchAlgorithmException e){
+			e.printStackTrace();
+			return new byte[0];
+		}
+	}
+	
+	/**
+	 * Memory-maps saved bitmap.
+	 * @param sPathBitmap Path to bitmap.
+	 * @param geo1 Grid geometry.
+	 * @param rgbHash Hash of current mask file.
+	 * @return Bitmap; null if no current bitmap is saved for mask and grid.
+	 */
+	private static MaskBitmap readBitmap(String sPathBitmap, GridGeometry geo1, byte rgbHash[]){
+		
+		//raf1 = file being read
+		//i1 = length of saved hash
+		//rgb1 = saved hash
+		//rgd1 = grid extent
+		//iLongs = number of longs
+		//lOffset = offset of bits
+		//mbm1 = output
+		
+		RandomAccessFile raf1;
+		byte rgb1[];
+		double rgd1[];
+		int iLongs; int i1;
+		long lOffset;
+		MaskBitmap mbm1 = null;
+		
+		if(!new File(sPathBitmap).exists()){
+			return null;
+		}
+		try{
+			raf1 = new RandomAccessFile(sPathBitmap, "r");
+			try{
+				
+				//checking header
+				if(raf1.readInt()!=FORMAT_CODE || raf1.readInt()!=VERSION){
+					return null;
+				}
+				i1 = raf1.readInt();
+				if(i1!=rgbHash.length){
+					return null;
+				}
+				rgb1 = new byte[i1];
+				raf1.readFully(rgb1);
+				if(!Arrays.equals(rgb1, rgbHash)){
+					return null;
+				}
+				rgd1 = geo1.getExtent();
+				for(int i=0;i<4;i++){
+					if(raf1.readDouble()!=rgd1[i]){
+						return null;
+					}
+				}
+				if(raf1.readDouble()!=geo1.getCellSize() || raf1.readInt()!=geo1.getRowCount() || raf1.readInt()!=geo1.getColCount()){
+					return null;
+				}
+				
+				//mapping bits
+				iLongs = (int) ((((long) geo1.getRowCount())*geo1.getColCount()+63)/64);
+				lOffset = (raf1.getFilePointer()+7)/8*8;
+				if(raf1.length()<lOffset+8L*iLongs){
+					return null;
+				}
+				mbm1 = new MaskBitmap(geo1, raf1.getChannel().map(FileChannel.MapMode.READ_ONLY, lOffset, 8L*iLongs).asLongBuffer());
+			}finally{
+				raf1.close();
+			}
+		}catch(IOException e){
+			return null;
+		}
+		return mbm1;
+	}
+	
+	/**
+	 * Saves bitmap (written to temporary file with a unique name and then renamed atomically, so readers never see partial files even if
+	 * several processes save the bitmap at once).
+	 * @param sPathBitmap Path to bitmap.
+	 * @param geo1 Grid geometry.
+	 * @param rgbHash Hash of mask file.
+	 * @param rgl1 Bits packed into longs.
+	 */
+	private static void writeBitmap(String sPathBitmap, GridGeometry geo1, byte rgbHash[], long rgl1[]){
+		
+		//dos1 = output stream
+		//rgd1 = grid extent
+		//filTemp = temporary file
+		
+		DataOutputStream dos1;
+		double rgd1[];
+		File filTemp = null;
+		
+		try{
+			filTemp = FileIO.createTempFile(sPathBitmap);
+			dos1 = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filTemp)));
+			dos1.writeInt(FORMAT_CODE);
+			dos1.writeInt(VERSION);
+			dos1.writeInt(rgbHash.length);
+			dos1.write(rgbHash);
+			rgd1 = geo1.getExtent();
+			for(int i=0;i<4;i++){
+				dos1.writeDouble(rgd1[i]);
+			}
+			dos1.writeDouble(geo1.getCellSize());
+			dos1.writeInt(geo1.getRowCount());
+			dos1.writeInt(geo1.getColCount());
+			while(dos1.size()%8!=0){
+				dos1.writeByte(0);
+			}
+			for(int i=0;i<rgl1.length;i++){
+				dos1.writeLong(rgl1[i]);
+			}
+			dos1.close();
+			FileIO.moveFileAtomic(filTemp, sPathBitmap);
+		}catch(IOException e){
+			System.out.println("ERROR: could not save mask bitmap " + sPathBitmap + "; using bitmap held in memory.");
+			if(filTemp!=null){
+				filTemp.delete();
+			}
+		}
+	}
+}
@@ -31,18 +31,26 @@ public class NetCDF_IO {
 	//sUnits = units of variable
 	//sVarName = name of variable of interest
 	//bVertTime = true if Elevation and time included in raster for reading; false otherwise
+	//axLat = latitude axis (for finding indices of latitude values)
+	//axLon = longitude axis
+	//axVert = vert axis
+	//axTime = time axis
 	
 	private NetcdfFile ncf1 = null;
 	private NetcdfFileWriteable ncf2 = null;
-	private TreeMap<Double, Integer> mapLat = null;
-	private TreeMap<Double, Integer> mapVert = null;
-	private TreeMap<Double, Integer> mapTime = null;
-	private TreeMap<Double, Integer> mapLon = null;
+	protected TreeMap<Double, Integer> mapLat = null;
+	protected TreeMap<Double, Integer> mapVert = null;
+	protected TreeMap<Double, Integer> mapTime = null;
+	protected TreeMap<Double, Integer> mapLon = null;
 	private Variable var1 = null;
 	private int rgiShape[];
-	private String sUnits;
-	private String sVarName;
-	private boolean bVertTime;
+	protected String sUnits;
+	protected String sVarName;
+	protected boolean bVertTime;
+	protected GridAxis axLat = null;
+	protected GridAxis axLon = null;
+	protected GridAxis axVert = null;
+	protected GridAxis axTime = null;
 	
 	/**
 	 * Constructor
@@ -73,6 +81,33 @@ public class NetCDF_IO {
 		}
 	}
 	
+	/**
+	 * Constructor for subclasses that read rasters from other formats.
+	 */
+	protected NetCDF_IO(){
+	}
+	
+	/**
+	 * Opens raster for reading. If a memory-mapped copy of the raster (written by NetCDF_IO_Mapped.writeMapped) exists and is at least as new as the NetCDF file, it is used instead.
+	 * @param sPath Path to NetCDF file.
+	 * @return Reader for raster.
+	 */
+	public static NetCDF_IO openReader(String sPath){
+		
+		//cdf1 = memory-mapped reader
+		
+		NetCDF_IO cdf1;
+		
+		//opening memory-mapped copy if possible (falling back to NetCDF file if it cannot be opened)
+		if(NetCDF_IO_Mapped.isCurrent(sPath)){
+			cdf1 = NetCDF_IO_Mapped.open(NetCDF_IO_Mapped.findMappedPath(sPath));
+			if(cdf1!=null){
+				return cdf1;
+			}
+		}
+		return new NetCDF_IO(sPath, "reading");
+	}
+	
 	/**
 	 * Closes NetCDF file.
 	 */
@@ -193,6 +228,20 @@ public class NetCDF_IO {
 	 * @param sOutPath Output path.
 	 */
 	public void initializeWriter(double dCellSize, String sElevationUnits, ArrayList<Double> lstElevations, String sTimeUnits, ArrayList<Double> lstTimes, String sVarName, String sVarUnits){
+		this.initializeWriter(new GridGeometry(dCellSize), sElevationUnits, lstElevations, sTimeUnits, lstTimes, sVarName, sVarUnits);
+	}
+	
+	/**
+	 * Initializes writer with given grid geometry that allows NetCDF to have data from different times and elevations
+	 * @param geo1 Grid geometry.
+	 * @param sVarName Variable name.
+	 * @param sElevationUnits Units for Elevation variable.
+	 * @param sTimeUnits Units for time variable.
+	 * @param sVarUnits Units for variable.
+	 * @param lstElevations Elevation variable values.
+	 * @param lstTimes Time variable values.
+	 */
+	public void initializeWriter(GridGeometry geo1, String sElevationUnits, ArrayList<Double> lstElevations, String sTimeUnits, ArrayList<Double> lstTimes, String sVarName, String sVarUnits){
 		
 		//sVarName = name of variable
 		//sVarUnits = units of variable
@@ -209,6 +258,8 @@ public class NetCDF_IO {
 		//ary1 = current data being written
 		//rgx1 = index array
 		//rgiO = origin
+		//rgdLat = latitude values
+		//rgdLng = longitude values
 		
 		int iLat; int iLng; int iVert; int iTime;
 		ArrayDouble rga1;
@@ -216,12 +267,14 @@ public class NetCDF_IO {
 		Index rgx1;
 		int rgiO[];
 		Dimension dimLat; Dimension dimLng; Dimension dimVert; Dimension dimTime;
+		double rgdLat[]; double rgdLng[];
 		
 		//loading variable name
 		this.sVarName = sVarName;
 		
 		//loading latitude and longitude dimension
-		iLat = (int) (180/dCellSize); iLng = (int) (360/dCellSize); iVert = lstElevations.size(); iTime = lstTimes.size();
+		rgdLat = geo1.getLatAxis(); rgdLng = geo1.getLonAxis();
+		iLat = rgdLat.length; iLng = rgdLng.length; iVert = lstElevations.size(); iTime = lstTimes.size();
 		
 		//adding dimensions
 		dimLat = ncf2.addDimension("lat", iLat);
@@ -266,7 +319,7 @@ public class NetCDF_IO {
 		rga1 = new ArrayDouble.D1(iLat);
 		rgx1 = rga1.getIndex();
 		for(int i=0; i<iLat; i++) {
-			rga1.setDouble(rgx1.set(i), -90 + dCellSize/2. + ((double) i)*dCellSize);
+			rga1.setDouble(rgx1.set(i), rgdLat[i]);
 		}
 		rgiO = new int[2];
 		try {
@@ -283,7 +336,7 @@ public class NetCDF_IO {
 		rga1 = new ArrayDouble.D1(iLng);
 		rgx1 = rga1.getIndex();
 		for(int i=0; i<iLng; i++) {
-			rga1.setDouble(rgx1.set(i), -180 + dCellSize/2. + ((double) i)*dCellSize);
+			rga1.setDouble(rgx1.set(i), rgdLng[i]);
 		}
 		rgiO = new int[2];
 		try {
@@ -363,12 +416,12 @@ public class NetCDF_IO {
 		
 		//loading latitude
 		i1 = var1.findDimensionIndex("lat");
-		i2 = lookupValue(mapLat, dLat);
+		i2 = axLat.findIndex(dLat);
 		rgiOrigin[i1] = i2;
 		
 		//loading longitude
 		i1 = var1.findDimensionIndex("lon");
-		i2 = lookupValue(mapLon, dLon);
+		i2 = axLon.findIndex(dLon);
 		rgiOrigin[i1] = i2;
 		
 		//checking if vert and time should be added
@@ -376,21 +429,11 @@ public class NetCDF_IO {
 			
 			//loading vert
 			i1 = var1.findDimensionIndex("vert");
-			if(mapVert.size()==1){
-				i2 = 0;
-			}else{
-				i2 = lookupValue(mapVert, dVert);
-			}
-			rgiOrigin[i1] = i2;
+			rgiOrigin[i1] = findVertIndex(dVert);
 			
 			//loading time
 			i1 = var1.findDimensionIndex("time");
-			if(mapTime.size()==1){
-				i2 = 0;
-			}else{
-				i2 = lookupValue(mapTime, dTime);
-			}
-			rgiOrigin[i1] = i2;
+			rgiOrigin[i1] = findTimeIndex(dTime);
 		}
 		
 		//looking up value and loading result in array format
@@ -455,16 +498,16 @@ public class NetCDF_IO {
 			
 			//finding value for current variable
 			if(sDim.equals("lat")){
-				i2 = lookupValue(mapLat, dValue);
+				i2 = axLat.findIndex(dValue);
 			}else if(sDim.equals("lon")){
-				i2 = lookupValue(mapLon, dValue);
+				i2 = axLon.findIndex(dValue);
 			}else if(sDim.equals("vert")){
 				
 				//checking if raster contains elevation data; otherwise taking data from only given elevation
 				if(mapVert.size()==1){
 					i2 = 0;
 				}else{
-					i2 = lookupValue(mapVert, dValue);
+					i2 = axVert.findIndex(dValue);
 				}
 			}else if(sDim.equals("time")){
 				
@@ -472,7 +515,7 @@ public class NetCDF_IO {
 				if(mapTime.size()==1){
 					i2 = 0;
 				}else{
-					i2 = lookupValue(mapTime, dValue);
+					i2 = axTime.findIndex(dValue);
 				}
 			}else{
 				i2 = -9999;
@@ -496,98 +539,127 @@ public class NetCDF_IO {
 	}
 	
 	/**
-	 * Reads and returns entire grid.
-	 * @param dCellSize Cell size in degrees.
-	 * @param dElevation Elevation value to read from.
-	 * @param dTime Time Value to read from.
-	 * @return Grid in double format
+	 * Reads entire latitude-longitude grid of current variable at the given elevation and time with a single read from file.
+	 * @param dVert Elevation (nearest elevation in raster is used; ignored if raster has only one elevation).
+	 * @param dTime Time (nearest time in raster is used; ignored if raster has only one time).
+	 * @return Grid in double format: value at latitude index i and longitude index j of raster is at position i*(number of longitudes)+j.
 	 */
-	public double[][] readGrid(double dCellSize, double dElevation, double dTime){
+	public double[] readSlab(double dVert, double dTime){
 		
-		//rgdGrid = output
+		//rgiOrigin = origin of section
+		//rgiSection = shape of section
+		//iLatDim = latitude dimension
+		//iLonDim = longitude dimension
 		//iLat = number of latitude values
-		//iLng = number of longitude values
-		//dLat = current latitude
-		//dLng = current longitude
+		//iLon = number of longitude values
+		//ary1 = section in array format
+		//rgdOut = output
 		
-		double rgdGrid[][];
-		int iLat; int iLng;
-		double dLat; double dLng;
-		
-		//loading size of grid
-		iLat = (int) (180/dCellSize);
-		iLng = (int) (360/dCellSize);
+		int rgiOrigin[]; int rgiSection[];
+		int iLatDim; int iLonDim; int iLat; int iLon;
+		Array ary1 = null;
+		double rgdOut[];
+		
+		//loading section: all latitudes and longitudes at given elevation and time
+		rgiOrigin = new int[rgiShape.length];
+		rgiSection = var1.getShape();
+		iLatDim = var1.findDimensionIndex("lat");
+		iLonDim = var1.findDimensionIndex("lon");
+		iLat = rgiSection[iLatDim];
+		iLon = rgiSection[iLonDim];
+		if(bVertTime==true){
+			rgiOrigin[var1.findDimensionIndex("vert")] = findVertIndex(dVert);
+			rgiSection[var1.findDimensionIndex("vert")] = 1;
+			rgiOrigin[var1.findDimensionIndex("time")] = findTimeIndex(dTime);
+			rgiSection[var1.findDimensionIndex("time")] = 1;
+		}
 		
-		//initializing grid
-		rgdGrid = new double[iLat][iLng];
+		//reading section
+		try {
+			ary1 = var1.read(rgiOrigin, rgiSection);
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (InvalidRangeException e) {
+			e.printStackTrace();
+		}
 		
-		//looping through latitudes
-		dLat = 90+dCellSize/2.;
-		for(int i=0;i<360;i++){
-			
-			//updating latitude
-			dLat-=dCellSize;
-			
-			//initializing longitude
-			dLng = -180 - dCellSize/2.;
-			
-			//looping through longitude
-			for(int j=0;j<720;j++){
-				
-				//updating longitude
-				dLng+=dCellSize;
-				
-				//saving result
-				rgdGrid[i][j]=this.readValue(dLat,dLng,dElevation,dTime);	
+		//loading output (section is in latitude-longitude order or longitude-latitude order, following dimensions of variable)
+		rgdOut = new double[iLat*iLon];
+		if(iLatDim<iLonDim){
+			for(int k=0;k<rgdOut.length;k++){
+				rgdOut[k]=ary1.getDouble(k);
+			}
+		}else{
+			for(int i=0;i<iLat;i++){
+				for(int j=0;j<iLon;j++){
+					rgdOut[i*iLon+j]=ary1.getDouble(j*iLat+i);
+				}
 			}
 		}
 		
 		//returning result
-		return rgdGrid;
+		return rgdOut;
 	}
 	
 	/**
 	 * Reads and returns entire grid.
 	 * @param dCellSize Cell size in degrees.
+	 * @param dElevation Elevation value to read from.
+	 * @param dTime Time Value to read from.
 	 * @return Grid in double format
 	 */
-	public double[][] readGrid(double dCellSize){
+	public double[][] readGrid(double dCellSize, double dElevation, double dTime){
+		return this.readGrid(new GridGeometry(dCellSize), dElevation, dTime);
+	}
+	
+	/**
+	 * Reads grid with given geometry (values at cell centers are taken from the nearest raster cells).
+	 * @param geo1 Grid geometry.
+	 * @param dElevation Elevation.
+	 * @param dTime Time.
+	 * @return Grid in double format (rows by columns; row 0 is northernmost)
+	 */
+	public double[][] readGrid(GridGeometry geo1, double dElevation, double dTime){
 		
 		//rgdGrid = output
 		//iLat = number of latitude values
 		//iLng = number of longitude values
-		//dLat = current latitude
-		//dLng = current longitude
+		//rgdSlab = grid as read from raster
+		//rgiLat = raster latitude index for each row of output
+		//rgiLng = raster longitude index for each column of output
+		//iRasterLng = number of longitudes in raster
 		
-		double rgdGrid[][];
-		int iLat; int iLng;
-		double dLat; double dLng;
+		double rgdGrid[][]; double rgdSlab[];
+		int iLat; int iLng; int iRasterLng;
+		int rgiLat[]; int rgiLng[];
 		
 		//loading size of grid
-		iLat = (int) (180/dCellSize);
-		iLng = (int) (360/dCellSize);
+		iLat = geo1.getRowCount();
+		iLng = geo1.getColCount();
 		
 		//initializing grid
 		rgdGrid = new double[iLat][iLng];
 		
-		//looping through latitudes
-		dLat = 90+dCellSize/2.;
-		for(int i=0;i<360;i++){
-			
-			//updating latitude
-			dLat-=dCellSize;
-			
-			//initializing longitude
-			dLng = -180 - dCellSize/2.;
-			
-			//looping through longitude
-			for(int j=0;j<720;j++){
-				
-				//updating longitude
-				dLng+=dCellSize;
-				
-				//saving result
-				rgdGrid[i][j]=this.readValue(dLat,dLng,-9999,-9999);	
+		//reading grid from raster
+		rgdSlab = this.readSlab(dElevation, dTime);
+		iRasterLng = getLonCount();
+		
+		//loading raster indices of latitudes
+		rgiLat = new int[iLat];
+		for(int i=0;i<iLat;i++){
+			rgiLat[i] = axLat.findIndex(geo1.findLat(i));
+		}
+		
+		//loading raster indices of longitudes
+		rgiLng = new int[iLng];
+		for(int j=0;j<iLng;j++){
+			rgiLng[j] = axLon.findIndex(geo1.findLon(j));
+		}
+		
+		//looping through latitudes and longitudes and saving results
+		for(int i=0;i<iLat;i++){
+			for(int j=0;j<iLng;j++){
+				rgdGrid[i][j]=rgdSlab[rgiLat[i]*iRasterLng+rgiLng[j]];
 			}
 		}
 		
@@ -595,6 +667,15 @@ public class NetCDF_IO {
 		return rgdGrid;
 	}
 	
+	/**
+	 * Reads and returns entire grid.
+	 * @param dCellSize Cell size in degrees.
+	 * @return Grid in double format
+	 */
+	public double[][] readGrid(double dCellSize){
+		return this.readGrid(dCellSize,-9999,-9999);
+	}
+	
 	/**
 	 * Writes value to open writer
 	 * @param rgdGrid Grid being written.
@@ -901,6 +982,19 @@ public class NetCDF_IO {
 		
 		//loading variable name
 		sVarName = sVar;
+		
+		//loading axes
+		loadAxes();
+	}
+	
+	/**
+	 * Loads axes from maps of dimension values.
+	 */
+	protected void loadAxes(){
+		axLat = new GridAxis(mapLat);
+		axLon = new GridAxis(mapLon);
+		axVert = new GridAxis(mapVert);
+		axTime = new GridAxis(mapTime);
 	}
 
 	/**
@@ -969,47 +1063,154 @@ public class NetCDF_IO {
 		return rgs1;	
 	}
 	
-
+	
+	/**
+	 * Finds index of latitude in raster (nearest latitude).
+	 * @param dLat Latitude.
+	 * @return Index of latitude.
+	 */
+	public int findLatIndex(double dLat){
+		return axLat.findIndex(dLat);
+	}
+	
+	/**
+	 * Finds index of longitude in raster (nearest longitude).
+	 * @param dLon Longitude.
+	 * @return Index of longitude.
+	 */
+	public int findLonIndex(double dLon){
+		return axLon.findIndex(dLon);
+	}
+	
+	/**
+	 * Finds index of latitude-longitude slab in raster for given elevation and time (slabs are ordered by elevation, then time).
+	 * @param dVert Elevation.
+	 * @param dTime Time.
+	 * @return Index of slab (0 if raster has no elevation and time).
+	 */
+	public int findSlabIndex(double dVert, double dTime){
+		if(bVertTime==true){
+			return findVertIndex(dVert)*var1.getShape()[var1.findDimensionIndex("time")]+findTimeIndex(dTime);
+		}else{
+			return 0;
+		}
+	}
+	
 	/**
-	 * Looks up value for key closest to the specified key in the given map.
-	 * @param map1 Map for lookup.
-	 * @param dKey Map for lookup.
-	 * @return Value of closest key. 
+	 * Gets number of latitude-longitude slabs (elevation-time combinations) in raster.
+	 * @return Number of slabs.
 	 */
-	private Integer lookupValue(TreeMap<Double,Integer> map1, double dKey){
+	public int getSlabCount(){
+		if(bVertTime==true){
+			return var1.getShape()[var1.findDimensionIndex("vert")]*var1.getShape()[var1.findDimensionIndex("time")];
+		}else{
+			return 1;
+		}
+	}
+	
+	/**
+	 * Gets values of given dimension in order of raster index.
+	 * @param sDimension Dimension ("lat", "lon", "vert", or "time").
+	 * @return Values of dimension; value with raster index i is at position i.
+	 */
+	public double[] getDimensionAxis(String sDimension){
 		
-		//dFloorKey = floor key
-		//dCeilingKey = ceiling key
+		//map1 = map with dimension values
+		//rgdOut = output
+		
+		Map<Double,Integer> map1 = null;
+		double rgdOut[];
 		
-		double dFloorKey; double dCeilingKey;
+		//loading appropriate map
+		if(sDimension.equals("lat")){
+			map1 = mapLat;
+		}else if(sDimension.equals("lon")){
+			map1 = mapLon;
+		}else if(sDimension.equals("vert")){
+			map1 = mapVert;
+		}else if(sDimension.equals("time")){
+			map1 = mapTime;
+		}
 		
-		//checking if key is in map
-		if(map1.containsKey(dKey)){
-			return map1.get(dKey);
+		//loading output
+		rgdOut = new double[map1.size()];
+		for(double d:map1.keySet()){
+			rgdOut[map1.get(d)]=d;
+		}
+		return rgdOut;
+	}
+	
+	/**
+	 * Checks whether values of variable are stored in double precision.
+	 * @return True if variable is stored as doubles; false otherwise.
+	 */
+	public boolean isDoublePrecision(){
+		return var1.getDataType()==DataType.DOUBLE;
+	}
+	
+	/**
+	 * Gets missing value of variable: its _FillValue or missing_value attribute (-9999 if it has neither).
+	 * @return Missing value.
+	 */
+	public double getMissingValue(){
+		
+		//att1 = attribute with missing value
+		
+		Attribute att1;
+		
+		att1 = var1.findAttribute("_FillValue");
+		if(att1==null || att1.getNumericValue()==null){
+			att1 = var1.findAttribute("missing_value");
+		}
+		if(att1==null || att1.getNumericValue()==null){
+			return -9999;
+		}
+		return att1.getNumericValue().doubleValue();
+	}
+	
+	/**
+	 * Gets number of times in raster.
+	 * @return Number of times (1 if raster has no elevation and time).
+	 */
+	protected int getTimeCount(){
+		if(bVertTime==true){
+			return var1.getShape()[var1.findDimensionIndex("time")];
 		}else{
-			
-			//checking if smaller than the smallest key
-			if(dKey<map1.firstKey()){
-				return map1.get(map1.firstKey());
-				
-			//checking if larger than the largest key	
-			}else if(dKey>map1.lastKey()){
-				return map1.get(map1.lastKey());
-				
-			//finding nearest key	
-			}else{
-				
-				//loading floor and ceiling keys
-				dFloorKey = map1.floorKey(dKey);
-				dCeilingKey = map1.ceilingKey(dKey);
-				
-				//returning closest value
-				if((dKey-dFloorKey)<(dCeilingKey-dKey)){
-					return map1.get(dFloorKey);
-				}else{
-					return map1.get(dCeilingKey);
-				}
-			}
+			return 1;
+		}
+	}
+	
+	/**
+	 * Gets number of longitudes in raster.
+	 * @return Number of longitudes.
+	 */
+	public int getLonCount(){
+		return var1.getShape()[var1.findDimensionIndex("lon")];
+	}
+	
+	/**
+	 * Finds index of elevation in raster (nearest elevation; 0 if raster has only one elevation).
+	 * @param dVert Elevation.
+	 * @return Index of elevation.
+	 */
+	protected int findVertIndex(double dVert){
+		if(mapVert.size()==1){
+			return 0;
+		}else{
+			return axVert.findIndex(dVert);
+		}
+	}
+	
+	/**
+	 * Finds index of time in raster (nearest time; 0 if raster has only one time).
+	 * @param dTime Time.
+	 * @return Index of time.
+	 */
+	protected int findTimeIndex(double dTime){
+		if(mapTime.size()==1){
+			return 0;
+		}else{
+			return axTime.findIndex(dTime);
 		}
 	}
 }
\ No newline at end of file
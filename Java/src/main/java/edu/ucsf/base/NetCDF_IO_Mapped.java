@@ -0,0 +1,449 @@
+package edu.ucsf.base;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.TreeMap;
+
+/**
+ * Reader for rasters stored in flat binary format, served from a memory-mapped file. Files are shared through the page cache by all
+ * processes reading the same raster, and opening a file does not decode it. File format (big-endian): header with format code, version,
+ * number of latitudes, longitudes, elevations, and times, elevation-time flag, bytes per value, missing value, variable name, and units;
+ * axis values (latitude, longitude, elevation, time); padding to a multiple of 64 bytes; values in order of elevation, time, latitude, and
+ * longitude.
+ * @author jladau
+ */
+
+public class NetCDF_IO_Mapped extends NetCDF_IO{
+	
+	//FORMAT_CODE = code at start of file
+	//VERSION = format version
+	//ALIGNMENT = alignment of values in bytes
+	//iLat = number of latitudes
+	//iLon = number of longitudes
+	//iSlabs = number of elevation-time combinations
+	//iTimes = number of times
+	//dMissing = missing value
+	//flb1 = values (single precision)
+	//dbb1 = values (double precision)
+	//raf1 = file being read
+	
+	private static final int FORMAT_CODE = 0x53444D52;
+	private static final int VERSION = 1;
+	private static final int ALIGNMENT = 64;
+	private int iLat;
+	private int iLon;
+	private int iSlabs;
+	private int iTimes;
+	private double dMissing;
+	private FloatBuffer flb1 = null;
+	private DoubleBuffer dbb1 = null;
+	private RandomAccessFile raf1;
+	
+	/**
+	 * Constructor (readers are opened with open).
+	 */
+	private NetCDF_IO_Mapped(){
+	}
+	
+	/**
+	 * Opens memory-mapped raster.
+	 * @param sPath Path to memory-mapped raster.
+	 * @return Reader; null if file could not be opened or is not a memory-mapped raster of the current version.
+	 */
+	public static NetCDF_IO_Mapped open(String sPath){
+		
+		//cdf1 = output
+		
+		NetCDF_IO_Mapped cdf1;
+		
+		cdf1 = new NetCDF_IO_Mapped();
+		if(cdf1.load(sPath)==false){
+			cdf1.closeReader();
+			return null;
+		}
+		return cdf1;
+	}
+	
+	/**
+	 * Loads header and maps values.
+	 * @param sPath Path to memory-mapped raster.
+	 * @return True if raster was loaded.
+	 */
+	private boolean load(String sPath){
+		
+		//iVerts = number of elevations
+		//iBytes = bytes per value
+		//lOffset = offset of values
+		//mbb1 = mapped file
+		
+		int iVerts; int iBytes;
+		long lOffset;
+		MappedByteBuffer mbb1;
+		
+		try{
+			
+			//opening file
+			raf1 = new RandomAccessFile(sPath, "r");
+			
+			//loading header
+			if(raf1.readInt()!=FORMAT_CODE || raf1.readInt()!=VERSION){
+				System.out.println("ERROR: " + sPath + " is not a memory-mapped raster.");
+				return false;
+			}
+			iLat = raf1.readInt();
+			iLon = raf1.readInt();
+			iVerts = raf1.readInt();
+			iTimes = raf1.readInt();
+			bVertTime = raf1.readInt()==1;
+			iBytes = raf1.readInt();
+			dMissing = raf1.readDouble();
+			sVarName = raf1.readUTF();
+			sUnits = raf1.readUTF();
+			
+			//loading axes
+			mapLat = readAxis(raf1, iLat);
+			mapLon = readAxis(raf1, iLon);
+			mapVert = readAxis(raf1, iVerts);
+			mapTime = readAxis(raf1, iTimes);
+			loadAxes();
+			if(bVertTime==true){
+				iSlabs = iVerts*iTimes;
+			}else{
+				iSlabs = 1;
+			}
+			
+			//mapping values
+			lOffset = findAlignedOffset(raf1.getFilePointer());
+			if(((long) iSlabs)*((long) iLat)*((long) iLon)*((long) iBytes)>Integer.MAX_VALUE){
+				System.out.println("ERROR: raster " + sPath + " is too large to be memory-mapped.");
+				return false;
+			}
+			mbb1 = raf1.getChannel().map(FileChannel.MapMode.READ_ONLY, lOffset, ((long) iSlabs)*((long) iLat)*((long) iLon)*((long) iBytes));
+			if(iBytes==8){
+				dbb1 = mbb1.asDoubleBuffer();
+			}else{
+				flb1 = mbb1.asFloatBuffer();
+			}
+		}catch(IOException e){
+			System.out.println("ERROR: could not open memory-mapped raster " + sPath + ".");
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Finds path of memory-mapped copy of given NetCDF file.
+	 * @param sNetCDFPath Path to NetCDF file.
+	 * @return Path to memory-mapped copy.
+	 */
+	public static String findMappedPath(String sNetCDFPath){
+		if(sNetCDFPath.endsWith(".nc")){
+			return sNetCDFPath.substring(0, sNetCDFPath.length()-3) + ".ncm";
+		}else{
+			return sNetCDFPath + ".ncm";
+		}
+	}
+	
+	/**
+	 * Checks whether memory-mapped copy of raster exists and is current.
+	 * @param sNetCDFPath Path to NetCDF file.
+	 * @return True if memory-mapped copy is at least as new as NetCDF file and was written with the current format version.
+	 */
+	public static boolean isCurrent(String sNetCDFPath){
+		
+		//fil1 = memory-mapped copy
+		//raf1 = memory-mapped copy being read
+		
+		File fil1;
+		RandomAccessFile raf1;
+		
+		fil1 = new File(findMappedPath(sNetCDFPath));
+		if(!fil1.exists() || fil1.lastModified()<new File(sNetCDFPath).lastModified()){
+			return false;
+		}
+		
+		//checking header
+		try{
+			raf1 = new RandomAccessFile(fil1, "r");
+			try{
+				return raf1.length()>=8 && raf1.readInt()==FORMAT_CODE && raf1.readInt()==VERSION;
+			}finally{
+				raf1.close();
+			}
+		}catch(IOException e){
+			return false;
+		}
+	}
+	
+	/**
+	 * Writes memory-mapped copy of NetCDF raster. Copy is written to a temporary file with a unique name and then renamed atomically,
+	 * so readers never see partial copies even if several processes convert the raster at once.
+	 * @param sNetCDFPath Path to NetCDF file.
+	 * @param sOutPath Output path.
+	 */
+	public static void writeMapped(String sNetCDFPath, String sOutPath){
+		
+		//cdf1 = NetCDF reader
+		//dos1 = output stream
+		//rgdLat = latitude axis
+		//rgdLon = longitude axis
+		//rgdVert = elevation axis
+		//rgdTime = time axis
+		//rgdSlab = current slab
+		//bDouble = flag for whether values are written in double precision
+		//lPosition = current position in file
+		//filTemp = temporary file
+		
+		NetCDF_IO cdf1;
+		DataOutputStream dos1;
+		File filTemp = null;
+		double rgdLat[]; double rgdLon[]; double rgdVert[]; double rgdTime[]; double rgdSlab[];
+		boolean bDouble;
+		long lPosition;
+		
+		//opening raster
+		cdf1 = new NetCDF_IO(sNetCDFPath, "reading");
+		rgdLat = cdf1.getDimensionAxis("lat");
+		rgdLon = cdf1.getDimensionAxis("lon");
+		rgdVert = cdf1.getDimensionAxis("vert");
+		rgdTime = cdf1.getDimensionAxis("time");
+		bDouble = cdf1.isDoublePrecision();
+		
+		try{
+			
+			//writing header
+			filTemp = FileIO.createTempFile(sOutPath);
+			dos1 = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filTemp)));
+			dos1.writeInt(FORMAT_CODE);
+			dos1.writeInt(VERSION);
+			dos1.writeInt(rgdLat.length);
+			dos1.writeInt(rgdLon.length);
+			dos1.writeInt(rgdVert.length);
+			dos1.writeInt(rgdTime.length);
+			if(cdf1.bVertTime==true){
+				dos1.writeInt(1);
+			}else{
+				dos1.writeInt(0);
+			}
+			if(bDouble==true){
+				dos1.writeInt(8);
+			}else{
+				dos1.writeInt(4);
+			}
+			dos1.writeDouble(cdf1.getMissingValue());
+			dos1.writeUTF(cdf1.getVariableName());
+			if(cdf1.getUnits()==null){
+				dos1.writeUTF("");
+			}else{
+				dos1.writeUTF(cdf1.getUnits());
+			}
+			
+			//writing axes
+			writeAxis(dos1, rgdLat);
+			writeAxis(dos1, rgdLon);
+			writeAxis(dos1, rgdVert);
+			writeAxis(dos1, rgdTime);
+			
+			//writing padding
+			lPosition = dos1.size();
+			for(long l=lPosition;l<findAlignedOffset(lPosition);l++){
+				dos1.writeByte(0);
+			}
+			
+			//writing values: slabs in order of elevation, then time
+			if(cdf1.bVertTime==true){
+				for(int i=0;i<rgdVert.length;i++){
+					for(int j=0;j<rgdTime.length;j++){
+						rgdSlab = cdf1.readSlab(rgdVert[i], rgdTime[j]);
+						writeSlab(dos1, rgdSlab, bDouble);
+					}
+				}
+			}else{
+				rgdSlab = cdf1.readSlab(-9999, -9999);
+				writeSlab(dos1, rgdSlab, bDouble);
+			}
+			dos1.close();
+			
+			//moving output to final location (readers never see partially written files)
+			FileIO.moveFileAtomic(filTemp, sOutPath);
+		}catch(IOException e){
+			e.printStackTrace();
+			if(filTemp!=null){
+				filTemp.delete();
+			}
+		}
+		cdf1.closeReader();
+	}
+	
+	public void closeReader(){
+		flb1 = null;
+		dbb1 = null;
+		if(raf1==null){
+			return;
+		}
+		try{
+			raf1.close();
+		}catch(IOException e){
+			System.out.println("ERROR: CloseCDF method.");
+		}
+	}
+	
+	public double readValue(double dLat, double dLon, double dVert, double dTime){
+		return readIndex((findSlabIndex(dVert, dTime)*iLat+findLatIndex(dLat))*iLon+findLonIndex(dLon));
+	}
+	
+	public double readValue0(String sArgValues){
+		
+		//rgs1 = list of arguments and values
+		//rgs2 = current variable value pair split
+		//rgd1 = latitude, longitude, elevation, and time
+		
+		String rgs1[]; String rgs2[];
+		double rgd1[];
+		
+		rgs1 = sArgValues.split(",");
+		rgd1 = new double[]{0,0,-9999,-9999};
+		for(int i=0;i<rgs1.length;i++){
+			rgs2 = rgs1[i].split(":");
+			if(rgs2[0].equals("lat")){
+				rgd1[0]=Double.parseDouble(rgs2[1]);
+			}else if(rgs2[0].equals("lon")){
+				rgd1[1]=Double.parseDouble(rgs2[1]);
+			}else if(rgs2[0].equals("vert")){
+				rgd1[2]=Double.parseDouble(rgs2[1]);
+			}else if(rgs2[0].equals("time")){
+				rgd1[3]=Double.parseDouble(rgs2[1]);
+			}
+		}
+		return readValue(rgd1[0], rgd1[1], rgd1[2], rgd1[3]);
+	}
+	
+	public double[] readSlab(double dVert, double dTime){
+		
+		//rgdOut = output
+		//iStart = index of first value of slab
+		
+		double rgdOut[];
+		int iStart;
+		
+		rgdOut = new double[iLat*iLon];
+		iStart = findSlabIndex(dVert, dTime)*rgdOut.length;
+		for(int k=0;k<rgdOut.length;k++){
+			rgdOut[k]=readIndex(iStart+k);
+		}
+		return rgdOut;
+	}
+	
+	public int findSlabIndex(double dVert, double dTime){
+		if(bVertTime==true){
+			return findVertIndex(dVert)*iTimes+findTimeIndex(dTime);
+		}else{
+			return 0;
+		}
+	}
+	
+	public int getSlabCount(){
+		return iSlabs;
+	}
+	
+	public int getLonCount(){
+		return iLon;
+	}
+	
+	protected int getTimeCount(){
+		return iTimes;
+	}
+	
+	public boolean isDoublePrecision(){
+		return dbb1!=null;
+	}
+	
+	/**
+	 * Gets missing value.
+	 * @return Missing value.
+	 */
+	public double getMissingValue(){
+		return dMissing;
+	}
+	
+	/**
+	 * Reads value at given position in file.
+	 * @param i Position (in values).
+	 * @return Value.
+	 */
+	private double readIndex(int i){
+		if(flb1!=null){
+			return flb1.get(i);
+		}else{
+			return dbb1.get(i);
+		}
+	}
+	
+	/**
+	 * Finds offset of values: first multiple of alignment at or after given position.
+	 * @param lPosition Position at end of header.
+	 * @return Offset of values.
+	 */
+	private static long findAlignedOffset(long lPosition){
+		return ((lPosition+ALIGNMENT-1)/ALIGNMENT)*ALIGNMENT;
+	}
+	
+	/**
+	 * Reads axis values into map from value to index.
+	 * @param raf1 File being read.
+	 * @param iLength Number of values.
+	 * @return Map from value to index.
+	 */
+	private static TreeMap<Double,Integer> readAxis(RandomAccessFile raf1, int iLength) throws IOException{
+		
+		//map1 = output
+		//byb1 = axis values
+		
+		TreeMap<Double,Integer> map1;
+		ByteBuffer byb1;
+		
+		map1 = new TreeMap<Double,Integer>();
+		byb1 = ByteBuffer.allocate(8*iLength);
+		raf1.readFully(byb1.array());
+		for(int i=0;i<iLength;i++){
+			map1.put(byb1.getDouble(8*i), i);
+		}
+		return map1;
+	}
+	
+	/**
+	 * Writes axis values.
+	 * @param dos1 Output stream.
+	 * @param rgd1 Axis values.
+	 */
+	private static void writeAxis(DataOutputStream dos1, double rgd1[]) throws IOException{
+		for(int i=0;i<rgd1.length;i++){
+			dos1.writeDouble(rgd1[i]);
+		}
+	}
+	
+	/**
+	 * Writes slab values.
+	 * @param dos1 Output stream.
+	 * @param rgd1 Slab values.
+	 * @param bDouble Flag for whether values are written in double precision.
+	 */
+	private static void writeSlab(DataOutputStream dos1, double rgd1[], boolean bDouble) throws IOException{
+		for(int k=0;k<rgd1.length;k++){
+			if(bDouble==true){
+				dos1.writeDouble(rgd1[k]);
+			}else{
+				dos1.writeFloat((float) rgd1[k]);
+			}
+		}
+	}
+}
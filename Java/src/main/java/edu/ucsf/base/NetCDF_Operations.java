@@ -1,6 +1,8 @@
 package edu.ucsf.base;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.TreeMap;
 
 /**
@@ -14,23 +16,37 @@ public class NetCDF_Operations {
 	//dMax = maximum value for current grid
 	//rgbLandGrid = grid returns true if cell should be included in analyses and false otherwise
 	//ptl1 = point on land object
+	//mapLandGridCache(sKey) = returns land grid for given land/ocean mode, topography path, and grid geometry (shared by all objects; grids are not modified after loading)
+	//mapAreaGridCache(sKey) = returns area grid for given grid geometry (shared by all objects; grids are not modified after loading)
 	
+	private static Map<String,boolean[][]> mapLandGridCache = new HashMap<String,boolean[][]>();
+	private static Map<String,double[][]> mapAreaGridCache = new HashMap<String,double[][]>();
 	private boolean rgbLandGrid[][];
 	private double rgdAreaGrid[][];
 	private double dMin;
 	private double dMax;
 	
 	/**
-	 * Constructor.
+	 * Constructor (for global 0.5 degree grids).
 	 * @param sLandOcean "terrestrial" if only land observations should be used, "marine" if only ocean observations should be used, "both" if all observations should be used.
 	 */
 	public NetCDF_Operations(String sLandOcean, String sPathGlobalTopography){
+		this(sLandOcean, sPathGlobalTopography, new GridGeometry(0.5));
+	}
+	
+	/**
+	 * Constructor.
+	 * @param sLandOcean "terrestrial" if only land observations should be used, "marine" if only ocean observations should be used, "both" if all observations should be used.
+	 * @param sPathGlobalTopography Path to global topography (or mask) used by PointOnLand.
+	 * @param geo1 Geometry of grids that will be analyzed.
+	 */
+	public NetCDF_Operations(String sLandOcean, String sPathGlobalTopography, GridGeometry geo1){
 
-		//loading land grid
-		loadLandGrid(sLandOcean,sPathGlobalTopography);
+		//loading land grid (computed once for each land/ocean mode, topography path, and grid geometry)
+		rgbLandGrid = findLandGrid(sLandOcean,sPathGlobalTopography,geo1);
 		
-		//loading area grid
-		rgdAreaGrid = loadAreaGrid();
+		//loading area grid (computed once for each grid geometry)
+		rgdAreaGrid = findAreaGrid(geo1);
 	}
 	
 	/**
@@ -91,8 +107,8 @@ public class NetCDF_Operations {
 		dTotal=0;
 		dPass=0;
 		dTotalPossibleArea=0;
-		for(int i=0;i<360;i++){
-			for(int j=0;j<720;j++){
+		for(int i=0;i<rgdGrid.length;i++){
+			for(int j=0;j<rgdGrid[0].length;j++){
 				if(rgbLandGrid[i][j]==true){
 					dTotalPossibleArea+=rgdAreaGrid[i][j];
 					if(rgdGrid[i][j]!=-9999){
@@ -509,11 +525,73 @@ public class NetCDF_Operations {
 		
 	}
 
+	/**
+	 * Finds land grid from cache, loading it if it has not been loaded.
+	 * @param sLandOcean "terrestrial" if only land observations should be used, "marine" if only ocean observations should be used, "both" if all observations should be used.
+	 * @param sPathGlobalTopography Path to global topography (or mask) used by PointOnLand.
+	 * @param geo1 Grid geometry.
+	 * @return Land grid.
+	 */
+	private static synchronized boolean[][] findLandGrid(String sLandOcean, String sPathGlobalTopography, GridGeometry geo1){
+		
+		//sKey = cache key
+		//rgb1 = output
+		
+		String sKey;
+		boolean rgb1[][];
+		
+		sKey = sLandOcean + "," + sPathGlobalTopography + "," + findGeometryKey(geo1);
+		rgb1 = mapLandGridCache.get(sKey);
+		if(rgb1==null){
+			rgb1 = loadLandGrid(sLandOcean, sPathGlobalTopography, geo1);
+			mapLandGridCache.put(sKey, rgb1);
+		}
+		return rgb1;
+	}
+	
+	/**
+	 * Finds area grid from cache, loading it if it has not been loaded.
+	 * @param geo1 Grid geometry.
+	 * @return Array with cell areas.
+	 */
+	private static synchronized double[][] findAreaGrid(GridGeometry geo1){
+		
+		//sKey = cache key
+		//rgd1 = output
+		
+		String sKey;
+		double rgd1[][];
+		
+		sKey = findGeometryKey(geo1);
+		rgd1 = mapAreaGridCache.get(sKey);
+		if(rgd1==null){
+			rgd1 = loadAreaGrid(geo1);
+			mapAreaGridCache.put(sKey, rgd1);
+		}
+		return rgd1;
+	}
+	
+	/**
+	 * Finds cache key for grid geometry.
+	 * @param geo1 Grid geometry.
+	 * @return Key with extent and cell size.
+	 */
+	private static String findGeometryKey(GridGeometry geo1){
+		
+		//rgd1 = extent
+		
+		double rgd1[];
+		
+		rgd1 = geo1.getExtent();
+		return rgd1[0] + "," + rgd1[1] + "," + rgd1[2] + "," + rgd1[3] + "," + geo1.getCellSize();
+	}
+	
 	/**
 	 * Loads an array containing grid areas.
+	 * @param geo1 Grid geometry.
 	 * @return Array with cell areas.
 	 */
-	private double[][] loadAreaGrid(){
+	private static double[][] loadAreaGrid(GridGeometry geo1){
 		
 		//sph1 = spherical geometry object
 		//rgd1 = output
@@ -525,27 +603,25 @@ public class NetCDF_Operations {
 		double[][] rgd1;
 		
 		//initializing output
-		rgd1 = new double[360][720];
+		rgd1 = new double[geo1.getRowCount()][geo1.getColCount()];
 		
 		//initializing spherical geometry object
 		sph1 = new SphericalGeometry();
 		
 		//looping through latitudes
-		dLat = 90.25;
-		for(int i=0;i<360;i++){
+		for(int i=0;i<geo1.getRowCount();i++){
 			
-			//updating dLat
-			dLat-=0.5;
+			//loading dLat
+			dLat = geo1.findLat(i);
 			
 			//looping through longitudes
-			dLng=-180.25;
-			for(int j=0;j<720;j++){
+			for(int j=0;j<geo1.getColCount();j++){
 			
-				//updating dLng
-				dLng+=0.5;
+				//loading dLng
+				dLng = geo1.findLon(j);
 				
 				//loading entry
-				rgd1[i][j]=sph1.findAreaCell(dLat, dLng, 0.5, 0.5);
+				rgd1[i][j]=sph1.findAreaCell(dLat, dLng, geo1.getCellSize(), geo1.getCellSize());
 			}
 		}
 		
@@ -556,39 +632,41 @@ public class NetCDF_Operations {
 	/**
 	 * Loads Land Grid
 	 * @param sLandOcean "terrestrial" if only land observations should be used, "marine" if only ocean observations should be used, "both" if all observations should be used.
+	 * @param geo1 Grid geometry.
+	 * @return Land grid.
 	*/
-	private void loadLandGrid(String sLandOcean, String sPathGlobalTopography){
+	private static boolean[][] loadLandGrid(String sLandOcean, String sPathGlobalTopography, GridGeometry geo1){
 		
 		//ptl1 = PointOnLand object
 		//dLat = current latitude
 		//dLng = current longitude
+		//rgbLandGrid = output
 		
 		PointOnLand ptl1;
 		double dLat; double dLng;
+		boolean rgbLandGrid[][];
 		
 		//initializing point on land object
-		ptl1 = new PointOnLand(sPathGlobalTopography);
+		ptl1 = new PointOnLand(sPathGlobalTopography, geo1);
 		//ptl1 = new PointOnLand("/home/jladau/Documents/Research/Java/PointOnLand Data/globaltopography.nc");
 	
 		//initializing land grid
-		rgbLandGrid = new boolean[360][720];
+		rgbLandGrid = new boolean[geo1.getRowCount()][geo1.getColCount()];
 		
 		//checking if null (i.e., both ocean and land
 		if(sLandOcean.equals("both")){
-			for(int i=0;i<360;i++){
-				for(int j=0;j<720;j++){
+			for(int i=0;i<geo1.getRowCount();i++){
+				for(int j=0;j<geo1.getColCount();j++){
 					rgbLandGrid[i][j]=true;
 				}
 			}
 		}
 		
 		//looping through latitudes and longitudes
-		dLat = 90.25;
-		for(int i=0;i<360;i++){
-			dLat -= 0.5;
-			dLng = -180.25;
-			for(int j=0;j<720;j++){
-				dLng+=0.5;
+		for(int i=0;i<geo1.getRowCount();i++){
+			dLat = geo1.findLat(i);
+			for(int j=0;j<geo1.getColCount();j++){
+				dLng = geo1.findLon(j);
 				
 				//checking value
 				if(ptl1.isOnLand(dLat, dLng)==true){
@@ -606,5 +684,8 @@ public class NetCDF_Operations {
 				}
 			}
 		}
+		
+		//returning result
+		return rgbLandGrid;
 	}	
 }
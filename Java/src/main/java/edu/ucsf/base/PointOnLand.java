@@ -1,6 +1,8 @@
 package edu.ucsf.base;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 import edu.ucsf.ranges.GeographicRange;
 
@@ -11,23 +13,58 @@ import edu.ucsf.ranges.GeographicRange;
 
 public class PointOnLand {
 
-	//cdf1 = NetCDF_IO object
+	//sLandRasterPath = path to topography raster
 	//lst1 = list of polygons
-	//sMode = cdf or shp
-	//sph1 = spherical geometry object
+	//sMode = cdf, shp, or bitmap
+	//mbm1 = rasterized polygon mask (bitmap mode)
+	//pdx1 = spatial index over polygons
+	//rdx1 = axes of topography raster (cdf mode)
+	//rglLand = bits (in order of cells of topography raster) set for cells with non-error values (cdf mode)
+	//mapLandCache(sLandRasterPath) = returns bits for cells with non-error values for given topography raster (shared by all objects)
 	
+	private static Map<String,long[]> mapLandCache = new HashMap<String,long[]>();
 	private String sMode;
-	private NetCDF_IO cdf1;
+	private String sLandRasterPath;
 	private ArrayList<Polygon> lstPolygons;
 	private final double RAD_TO_DEG = 57.295779513;
 	private final double DEG_TO_RAD = 0.017453293;
-	private SphericalGeometry sph1;
+	private MaskBitmap mbm1;
+	private PolygonIndex pdx1;
+	private RasterIndex rdx1;
+	private long rglLand[];
 	
 	/**
 	 * Constructor
 	 * @param sLandRasterPath Path to topography raster
 	 */
 	public PointOnLand(String sLandRasterPath){
+		loadMask(sLandRasterPath);
+	}
+	
+	/**
+	 * Constructor for lookups at cell centers of given grid: polygon masks are rasterized to a bitmap once per mask file and grid (saved
+	 * next to the mask file), so each lookup is a single bit test.
+	 * @param sLandRasterPath Path to topography raster or polygon mask
+	 * @param geo1 Grid geometry
+	 */
+	public PointOnLand(String sLandRasterPath, GridGeometry geo1){
+		if(sLandRasterPath.endsWith(".shp.txt")){
+			
+			//loading mode
+			sMode = "bitmap";
+			
+			//loading bitmap
+			mbm1 = MaskBitmap.load(sLandRasterPath, geo1);
+		}else{
+			loadMask(sLandRasterPath);
+		}
+	}
+	
+	/**
+	 * Loads raster or polygons
+	 * @param sLandRasterPath Path to topography raster
+	 */
+	private void loadMask(String sLandRasterPath){
 		
 		//rng1 = GeographicRange object
 		//lst1 = current polygon in arraylist format
@@ -40,16 +77,17 @@ public class PointOnLand {
 			//loading mode
 			sMode = "cdf";
 			
-			//loading cdf object
-			cdf1 = new NetCDF_IO(sLandRasterPath, "reading");
+			//loading raster path
+			this.sLandRasterPath = sLandRasterPath;
+			
+			//loading cells with non-error values (read once per raster, so lookups need no reader)
+			rdx1 = RasterReaderPool.getDefault().getIndex(sLandRasterPath);
+			rglLand = findLandCells(sLandRasterPath);
 		}else if(sLandRasterPath.endsWith(".shp.txt")){
 			
 			//loading mode
 			sMode = "shp";
 			
-			//initializing spherical geometry object
-			sph1 = new SphericalGeometry();
-			
 			//loading range object
 			rng1 = new GeographicRange(sLandRasterPath);
 			
@@ -60,6 +98,9 @@ public class PointOnLand {
 				lstPolygons.add(new Polygon(lst1,1234,false));
 				lst1 = rng1.getNextRange();
 			}
+			
+			//loading spatial index
+			pdx1 = new PolygonIndex(lstPolygons);
 		}
 	}
 	
@@ -71,31 +112,95 @@ public class PointOnLand {
 	 */
 	public boolean isOnLand(double dLat, double dLon){
 		
+		//i1 = index of cell in topography raster (cdf mode)
+		
+		int i1;
+		
 		//checking whether reading from cdf file or shapefile
 		if(sMode.equals("cdf")){
 		
-			//checking value
-			if(cdf1.readValue(dLat,dLon,-9999,-9999)!=-9999){
-				return true;
-			}else{
-				return false;
-			}
+			//checking bit for nearest cell of raster
+			i1 = rdx1.findCellIndex(dLat, dLon);
+			return (rglLand[i1>>>6] & (1L<<(i1&63)))!=0;
 		}else if(sMode.equals("shp")){
 			
-			//checking value
-			for(int i=0;i<lstPolygons.size();i++){
-				if(sph1.isPointPolygon(dLat, dLon, lstPolygons.get(i), "winding")==1){
-					return true;
-				}
-			}
+			//checking value (only polygons with bounds containing point are tested)
+			return pdx1.isPointPolygon(dLat, dLon, "winding");
+		}else if(sMode.equals("bitmap")){
 			
-			//outputting failure value
-			return false;
+			//checking bit
+			return mbm1.contains(dLat, dLon);
 		}else{
 			return false;
 		}
 	}
 
+	/**
+	 * Finds cells of topography raster with non-error values (as read by NetCDF_IO.readValue at elevation and time -9999), loading them
+	 * if they have not been loaded.
+	 * @param sLandRasterPath Path to topography raster.
+	 * @return Bits (in order of cells of slab) set for cells with non-error values.
+	 */
+	private static synchronized long[] findLandCells(String sLandRasterPath){
+		
+		//rgl1 = output
+		//rgd1 = values of raster
+		
+		long rgl1[];
+		double rgd1[];
+		
+		rgl1 = mapLandCache.get(sLandRasterPath);
+		if(rgl1==null){
+			rgd1 = RasterReaderPool.getDefault().readSlab(sLandRasterPath, -9999, -9999);
+			rgl1 = new long[(rgd1.length+63)/64];
+			for(int i=0;i<rgd1.length;i++){
+				if(rgd1[i]!=-9999){
+					rgl1[i>>>6] |= 1L<<(i&63);
+				}
+			}
+			mapLandCache.put(sLandRasterPath, rgl1);
+		}
+		return rgl1;
+	}
+	
+	/**
+	 * Gets bounds of polygons (shapefile mode).
+	 * @return Bounds in following order: latmin, latmax, lonmin, lonmax; null if reading from raster or bitmap.
+	 */
+	public double[] getBounds(){
+		
+		//rgd1 = output
+		//rgd2 = bounds of current polygon (lonmin, lonmax, latmin, latmax)
+		
+		double rgd1[]; double rgd2[];
+		
+		//checking mode
+		if(!sMode.equals("shp")){
+			return null;
+		}
+		
+		//looping through polygons
+		rgd1 = new double[]{9999., -9999., 9999., -9999.};
+		for(int i=0;i<lstPolygons.size();i++){
+			rgd2 = lstPolygons.get(i).getBounds();
+			rgd1[0] = Math.min(rgd1[0], rgd2[2]);
+			rgd1[1] = Math.max(rgd1[1], rgd2[3]);
+			rgd1[2] = Math.min(rgd1[2], rgd2[0]);
+			rgd1[3] = Math.max(rgd1[3], rgd2[1]);
+		}
+		
+		//outputting result
+		return rgd1;
+	}
+	
+	/**
+	 * Gets polygons (shapefile mode).
+	 * @return Polygons; null if reading from raster or bitmap.
+	 */
+	public ArrayList<Polygon> getPolygons(){
+		return lstPolygons;
+	}
+	
 	/**
 	 * Checks if specified bounds are entirely over land
 	 * @param bds1 GeographicBounds
@@ -648,7 +648,9 @@ public class Polygon {
 		//rgdCounts = returns number of species observed at location
 		//mapOut(dIntersectionCount) = returns mean area for number of intersections
 		//dValue = current value in output map
+		//pdx1 = spatial index over polygons
 		
+		PolygonIndex pdx1;
 		Map<Double,Double> mapOut;
 		double dArea;
 		double du; double dv; double dLat; double dLng; double d2 = 0; double d3 = 0; double d4 = 0; double dValue;
@@ -693,6 +695,9 @@ public class Polygon {
 		//initializing counts array
 		rgdCounts = new double[iIterations];
 		
+		//loading spatial index
+		pdx1 = new PolygonIndex(setPolygons);
+		
 		//looping through sampling points
 		for(int i=1;i<=iIterations;i++){
 			
@@ -716,11 +721,7 @@ public class Polygon {
 			}
 			
 			//checking if sampling point is in range
-			for(Polygon ply:setPolygons){
-				if(sph1.isPointPolygon(dLat, dLng, ply, sAlgorithm)==1){
-					rgdCounts[i-1]++;
-				}
-			}
+			rgdCounts[i-1] = pdx1.findPolygons(dLat, dLng, sAlgorithm).size();
 		}
 		
 		//initializing output
@@ -788,7 +789,9 @@ public class Polygon {
 		//iMaxSubsetSize = maximum subset size
 		//lstCurrentSubsets = current list of subsets
 		//dValue = current map value being updated
+		//pdx1 = spatial index over polygons
 		
+		PolygonIndex pdx1;
 		ArrayList<HashSet<String>> lstCurrentSubsets; ArrayList<String> lstOccur;
 		Map<HashSet<String>,Double> mapArea;
 		double dArea; double dValue;
@@ -842,6 +845,9 @@ public class Polygon {
 			}
 		}
 		
+		//loading spatial index
+		pdx1 = new PolygonIndex(mapPolygon);
+		
 		//looping through sampling points
 		for(int i=1;i<=iIterations;i++){
 			
@@ -865,12 +871,7 @@ public class Polygon {
 			}
 			
 			//loading list of species that occurred
-			lstOccur = new ArrayList<String>(mapPolygon.keySet().size());
-			for(String s:mapPolygon.keySet()){
-				if(sph1.isPointPolygon(dLat, dLng, mapPolygon.get(s), sAlgorithm)==1){
-					lstOccur.add(s);
-				}
-			}
+			lstOccur = pdx1.findPolygons(dLat, dLng, sAlgorithm);
 			
 			//checking if at least one species observed
 			if(lstOccur.size()==0){
@@ -924,16 +925,17 @@ public class Polygon {
 		//d2 = number of degrees between upper and lower bounds
 		//d3 = cos(minimum latitude)
 		//d4 = cos(maximum latitude) - cos(minimum latitude)
-		//mapOccur(sSpecies) = returns true if species occurs in current location, false otherwise
+		//setOccur = set of species that occur in current location
 		//rgdArea = returns the area of intersection for the corresponding subset in lstSpeciesSets
 		//bAddOne = flag for whether to increment current species subset
-		//bAtLeastOne = flag for whether at least one species was observed
+		//pdx1 = spatial index over polygons
 		
-		Map<String,Boolean> mapOccur;
+		PolygonIndex pdx1;
+		HashSet<String> setOccur;
 		double dArea;
 		double du; double dv; double dLat; double dLng; double d2 = 0; double d3 = 0; double d4 = 0;
 		double rgd1[] = null; double rgd2[] = null; double rgdArea[];
-		boolean bAddOne; boolean bAtLeastOne;
+		boolean bAddOne;
 		
 		//loading variables
 		if(rgdSamplingBounds==null){
@@ -974,6 +976,9 @@ public class Polygon {
 		//initializing area map
 		rgdArea = new double[lstSpeciesSets.size()];
 		
+		//loading spatial index
+		pdx1 = new PolygonIndex(mapPolygon);
+		
 		//looping through sampling points
 		for(int i=1;i<=iIterations;i++){
 			
@@ -996,20 +1001,11 @@ public class Polygon {
 				dLat = RAD_TO_DEG*dLat-90.;
 			}
 			
-			//loading list of species that occurred
-			mapOccur = new HashMap<String,Boolean>();
-			bAtLeastOne = false;
-			for(String s:mapPolygon.keySet()){
-				if(sph1.isPointPolygon(dLat, dLng, mapPolygon.get(s), sAlgorithm)==1){
-					mapOccur.put(s, true);
-					bAtLeastOne=true;
-				}else{
-					mapOccur.put(s, false);
-				}
-			}
+			//loading set of species that occurred
+			setOccur = new HashSet<String>(pdx1.findPolygons(dLat, dLng, sAlgorithm));
 			
 			//checking if at least one species observed
-			if(bAtLeastOne==false){
+			if(setOccur.size()==0){
 				continue;
 			}
 			
@@ -1017,7 +1013,7 @@ public class Polygon {
 			for(int j=0;j<lstSpeciesSets.size();j++){
 				bAddOne=true;
 				for(String s:lstSpeciesSets.get(j)){
-					if(mapOccur.get(s)==false){
+					if(!setOccur.contains(s)){
 						bAddOne=false;
 						break;
 					}
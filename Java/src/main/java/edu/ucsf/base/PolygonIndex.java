@@ -0,0 +1,324 @@
+package edu.ucsf.base;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Spatial index over a set of polygons for point-in-polygon queries. The bounding boxes of the polygons are assigned to the cells
+ * (buckets) of a uniform grid covering all boxes, so a query tests only the polygons whose boxes contain the query point.
+ * Under SphericalGeometry.isPointPolygon, points outside of the longitude bounds or south of the latitude bounds of a polygon are never
+ * within the polygon. Points north of the latitude bounds can be within polygons that enclose the north pole, so the boxes of such
+ * polygons are extended to the pole. Results are the same as testing every polygon with SphericalGeometry.isPointPolygon.
+ * @author jladau
+ */
+
+public class PolygonIndex {
+	
+	//MAX_BUCKETS = maximum number of buckets along each axis
+	//rgsKeys = keys of polygons
+	//rgPolygons = polygons
+	//rgbPolar = flags for polygons that enclose the north pole (boxes extend to latitude 90)
+	//rgiBucket = indices of polygons with bounding boxes overlapping each bucket (row-major, from south-west corner)
+	//dLatMin = southern edge of buckets
+	//dLonMin = western edge of buckets
+	//dBucketLat = height of buckets in degrees
+	//dBucketLon = width of buckets in degrees
+	//iRows = number of rows of buckets
+	//iCols = number of columns of buckets
+	//sph1 = spherical geometry object
+	
+	private static final int MAX_BUCKETS = 256;
+	private String rgsKeys[];
+	private Polygon rgPolygons[];
+	private boolean rgbPolar[];
+	private int rgiBucket[][];
+	private double dLatMin;
+	private double dLonMin;
+	private double dBucketLat;
+	private double dBucketLon;
+	private int iRows;
+	private int iCols;
+	private SphericalGeometry sph1;
+	
+	/**
+	 * Constructor
+	 * @param colPolygons Polygons; keys are positions of polygons in iteration order ("0", "1", ...).
+	 */
+	public PolygonIndex(Collection<Polygon> colPolygons){
+		
+		//i1 = current polygon
+		
+		int i1;
+		
+		rgsKeys = new String[colPolygons.size()];
+		rgPolygons = new Polygon[colPolygons.size()];
+		i1 = 0;
+		for(Polygon ply1:colPolygons){
+			rgsKeys[i1] = Integer.toString(i1);
+			rgPolygons[i1] = ply1;
+			i1++;
+		}
+		loadBuckets();
+	}
+	
+	/**
+	 * Constructor
+	 * @param mapPolygon Returns the polygon for each key (e.g., species).
+	 */
+	public PolygonIndex(Map<String,Polygon> mapPolygon){
+		
+		//i1 = current polygon
+		
+		int i1;
+		
+		rgsKeys = new String[mapPolygon.size()];
+		rgPolygons = new Polygon[mapPolygon.size()];
+		i1 = 0;
+		for(String s:mapPolygon.keySet()){
+			rgsKeys[i1] = s;
+			rgPolygons[i1] = mapPolygon.get(s);
+			i1++;
+		}
+		loadBuckets();
+	}
+	
+	/**
+	 * Finds polygons containing point.
+	 * @param dLat Latitude of point.
+	 * @param dLon Longitude of point.
+	 * @param sAlgorithm "winding" for winding number, "even-odd" for even-odd algorithm.
+	 * @return Keys of polygons containing point (in order in which polygons were indexed).
+	 */
+	public ArrayList<String> findPolygons(double dLat, double dLon, String sAlgorithm){
+		
+		//rgi1 = candidate polygons
+		//lst1 = output
+		
+		int rgi1[];
+		ArrayList<String> lst1;
+		
+		lst1 = new ArrayList<String>();
+		rgi1 = findCandidates(dLat, dLon);
+		if(rgi1==null){
+			return lst1;
+		}
+		for(int i:rgi1){
+			if(isPointPolygon(dLat, dLon, i, sAlgorithm)){
+				lst1.add(rgsKeys[i]);
+			}
+		}
+		return lst1;
+	}
+	
+	/**
+	 * Checks whether point is within any polygon.
+	 * @param dLat Latitude of point.
+	 * @param dLon Longitude of point.
+	 * @param sAlgorithm "winding" for winding number, "even-odd" for even-odd algorithm.
+	 * @return True if point is within at least one polygon.
+	 */
+	public boolean isPointPolygon(double dLat, double dLon, String sAlgorithm){
+		
+		//rgi1 = candidate polygons
+		
+		int rgi1[];
+		
+		rgi1 = findCandidates(dLat, dLon);
+		if(rgi1==null){
+			return false;
+		}
+		for(int i:rgi1){
+			if(isPointPolygon(dLat, dLon, i, sAlgorithm)){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Gets number of polygons.
+	 * @return Number of polygons.
+	 */
+	public int size(){
+		return rgPolygons.length;
+	}
+	
+	/**
+	 * Checks whether point is within bounding box of given polygon (extended to the pole for polar polygons) and within polygon.
+	 * @param dLat Latitude of point.
+	 * @param dLon Longitude of point.
+	 * @param iPolygon Index of polygon.
+	 * @param sAlgorithm "winding" for winding number, "even-odd" for even-odd algorithm.
+	 * @return True if point is within polygon.
+	 */
+	private boolean isPointPolygon(double dLat, double dLon, int iPolygon, String sAlgorithm){
+		
+		//ply1 = polygon
+		
+		Polygon ply1;
+		
+		ply1 = rgPolygons[iPolygon];
+		if(dLat<ply1.dLatMinimum || dLat>findLatMaximum(iPolygon) || dLon<ply1.dLonMinimum || dLon>ply1.dLonMaximum){
+			return false;
+		}
+		return sph1.isPointPolygon(dLat, dLon, ply1, sAlgorithm)==1;
+	}
+	
+	/**
+	 * Finds northern edge of bounding box of given polygon.
+	 * @param iPolygon Index of polygon.
+	 * @return Maximum latitude of polygon; 90 if polygon encloses the north pole.
+	 */
+	private double findLatMaximum(int iPolygon){
+		if(rgbPolar[iPolygon]){
+			return 90.;
+		}
+		return rgPolygons[iPolygon].dLatMaximum;
+	}
+	
+	/**
+	 * Finds polygons with bounding boxes overlapping bucket containing point.
+	 * @param dLat Latitude of point.
+	 * @param dLon Longitude of point.
+	 * @return Indices of polygons; null if point is outside of buckets.
+	 */
+	private int[] findCandidates(double dLat, double dLon){
+		
+		//iRow = row of bucket
+		//iCol = column of bucket
+		
+		int iRow; int iCol;
+		
+		if(iRows==0 || dLat<dLatMin || dLon<dLonMin){
+			return null;
+		}
+		iRow = findBucket(dLat, dLatMin, dBucketLat, iRows);
+		iCol = findBucket(dLon, dLonMin, dBucketLon, iCols);
+		if(iRow<0 || iCol<0){
+			return null;
+		}
+		return rgiBucket[iRow*iCols+iCol];
+	}
+	
+	/**
+	 * Finds bucket containing value along one axis.
+	 * @param dValue Value.
+	 * @param dMin Edge of first bucket.
+	 * @param dSize Size of buckets.
+	 * @param iBuckets Number of buckets.
+	 * @return Bucket; -1 if value is beyond last bucket.
+	 */
+	private int findBucket(double dValue, double dMin, double dSize, int iBuckets){
+		
+		//i1 = output
+		
+		int i1;
+		
+		i1 = (int) Math.floor((dValue-dMin)/dSize);
+		if(i1>=iBuckets){
+			
+			//values on far edge are assigned to last bucket
+			if(dValue<=dMin+dSize*iBuckets){
+				return iBuckets-1;
+			}
+			return -1;
+		}
+		return i1;
+	}
+	
+	/**
+	 * Loads buckets: grid covering all bounding boxes, with about one bucket per polygon (up to MAX_BUCKETS along each axis).
+	 */
+	private void loadBuckets(){
+		
+		//rgd1 = bounds of all polygons (latmin, latmax, lonmin, lonmax)
+		//rgiCount = number of polygons in each bucket
+		//rgiBox = buckets overlapped by each polygon (row min, row max, column min, column max); null for polygons without edges
+		//ply1 = current polygon
+		//iBuckets = number of buckets along each axis
+		
+		double rgd1[];
+		int rgiCount[]; int rgiBox[][];
+		Polygon ply1;
+		int iBuckets;
+		
+		//initializing spherical geometry object
+		sph1 = new SphericalGeometry();
+		
+		//loading polygons that enclose the north pole
+		rgbPolar = new boolean[rgPolygons.length];
+		for(int i=0;i<rgPolygons.length;i++){
+			ply1 = rgPolygons[i];
+			if(ply1.dLatMinimum>ply1.dLatMaximum){
+				continue;
+			}
+			rgbPolar[i] = sph1.isPointPolygon(90., (ply1.dLonMinimum+ply1.dLonMaximum)/2., ply1, "even-odd")==1;
+		}
+		
+		//loading bounds of polygons
+		rgd1 = new double[]{9999., -9999., 9999., -9999.};
+		for(int i=0;i<rgPolygons.length;i++){
+			ply1 = rgPolygons[i];
+			if(ply1.dLatMinimum>ply1.dLatMaximum){
+				continue;
+			}
+			rgd1[0] = Math.min(rgd1[0], ply1.dLatMinimum);
+			rgd1[1] = Math.max(rgd1[1], findLatMaximum(i));
+			rgd1[2] = Math.min(rgd1[2], ply1.dLonMinimum);
+			rgd1[3] = Math.max(rgd1[3], ply1.dLonMaximum);
+		}
+		if(rgd1[0]>rgd1[1]){
+			iRows = 0;
+			iCols = 0;
+			return;
+		}
+		
+		//loading bucket grid
+		iBuckets = Math.min(MAX_BUCKETS, Math.max(1, (int) Math.ceil(Math.sqrt(rgPolygons.length))));
+		iRows = iBuckets;
+		iCols = iBuckets;
+		dLatMin = rgd1[0];
+		dLonMin = rgd1[2];
+		dBucketLat = Math.max(rgd1[1]-rgd1[0], 0.000001)/((double) iRows);
+		dBucketLon = Math.max(rgd1[3]-rgd1[2], 0.000001)/((double) iCols);
+		
+		//counting polygons in each bucket
+		rgiCount = new int[iRows*iCols];
+		rgiBox = new int[rgPolygons.length][];
+		for(int i=0;i<rgPolygons.length;i++){
+			ply1 = rgPolygons[i];
+			if(ply1.dLatMinimum>ply1.dLatMaximum){
+				continue;
+			}
+			rgiBox[i] = new int[]{
+					findBucket(ply1.dLatMinimum, dLatMin, dBucketLat, iRows),
+					findBucket(findLatMaximum(i), dLatMin, dBucketLat, iRows),
+					findBucket(ply1.dLonMinimum, dLonMin, dBucketLon, iCols),
+					findBucket(ply1.dLonMaximum, dLonMin, dBucketLon, iCols)};
+			for(int k=rgiBox[i][0];k<=rgiBox[i][1];k++){
+				for(int l=rgiBox[i][2];l<=rgiBox[i][3];l++){
+					rgiCount[k*iCols+l]++;
+				}
+			}
+		}
+		
+		//loading polygons in each bucket
+		rgiBucket = new int[iRows*iCols][];
+		for(int k=0;k<rgiBucket.length;k++){
+			rgiBucket[k] = new int[rgiCount[k]];
+			rgiCount[k] = 0;
+		}
+		for(int i=0;i<rgPolygons.length;i++){
+			if(rgiBox[i]==null){
+				continue;
+			}
+			for(int k=rgiBox[i][0];k<=rgiBox[i][1];k++){
+				for(int l=rgiBox[i][2];l<=rgiBox[i][3];l++){
+					rgiBucket[k*iCols+l][rgiCount[k*iCols+l]] = i;
+					rgiCount[k*iCols+l]++;
+				}
+			}
+		}
+	}
+}
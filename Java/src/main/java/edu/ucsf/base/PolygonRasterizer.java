@@ -0,0 +1,210 @@
+package edu.ucsf.base;
+
+import java.util.ArrayList;
+
+/**
+ * Rasterizes polygons onto a grid by scanlines: a cell is set if its center is within a polygon. Points are tested in
+ * SphericalGeometry.isPointPolygon by counting the edges that cross the meridian of the point to the south of the point, so
+ * scanlines run along the meridians of the grid columns: for each column, the edges crossing the meridian are looked up once in
+ * the interval tree of the polygon, the first row at which each crossing is counted is found, and the counts are accumulated from
+ * south to north. The cost is of order columns by crossings (plus one pass over the cells) rather than one polygon test per cell,
+ * and cells are set exactly as by SphericalGeometry.isPointPolygon.
+ * @author jladau
+ */
+
+public class PolygonRasterizer {
+	
+	//DEG_TO_RAD = conversion from degrees to radians (as in SphericalGeometry)
+	//geo1 = grid geometry
+	//sAlgorithm = even-odd or winding
+	//sph1 = spherical geometry object
+	
+	private static final double DEG_TO_RAD = 0.01745329251994;
+	private GridGeometry geo1;
+	private String sAlgorithm;
+	private SphericalGeometry sph1;
+	
+	/**
+	 * Constructor
+	 * @param geo1 Grid geometry.
+	 * @param sAlgorithm Algorithm for checking whether points are within polygons: even-odd or winding.
+	 */
+	public PolygonRasterizer(GridGeometry geo1, String sAlgorithm){
+		this.geo1 = geo1;
+		this.sAlgorithm = sAlgorithm;
+		sph1 = new SphericalGeometry();
+	}
+	
+	/**
+	 * Rasterizes polygons: sets bit for each cell with center within a polygon and within the bounds of the polygons.
+	 * @param lstPolygons Polygons.
+	 * @return Bits (row-major) packed into longs.
+	 */
+	public long[] rasterize(ArrayList<Polygon> lstPolygons){
+		
+		//rgl1 = output
+		//rgd1 = bounds of polygons (latmin, latmax, lonmin, lonmax)
+		//rgd2 = bounds of current polygon (lonmin, lonmax, latmin, latmax)
+		//iRowMin = first row within bounds
+		//iRowMax = last row within bounds
+		
+		long rgl1[];
+		double rgd1[]; double rgd2[];
+		int iRowMin; int iRowMax;
+		
+		//loading bounds of polygons
+		rgd1 = new double[]{9999., -9999., 9999., -9999.};
+		for(int i=0;i<lstPolygons.size();i++){
+			rgd2 = lstPolygons.get(i).getBounds();
+			rgd1[0] = Math.min(rgd1[0], rgd2[2]);
+			rgd1[1] = Math.max(rgd1[1], rgd2[3]);
+			rgd1[2] = Math.min(rgd1[2], rgd2[0]);
+			rgd1[3] = Math.max(rgd1[3], rgd2[1]);
+		}
+		iRowMin = geo1.findRow(rgd1[1], true);
+		iRowMax = geo1.findRow(rgd1[0], false);
+		
+		//looping through polygons
+		rgl1 = new long[(int) ((((long) geo1.getRowCount())*geo1.getColCount()+63)/64)];
+		for(int i=0;i<lstPolygons.size();i++){
+			rasterize(lstPolygons.get(i), iRowMin, iRowMax, geo1.findCol(rgd1[2], true), geo1.findCol(rgd1[3], false), rgl1);
+		}
+		return rgl1;
+	}
+	
+	/**
+	 * Rasterizes polygon within given rows and columns.
+	 * @param ply1 Polygon.
+	 * @param iRowMin First row.
+	 * @param iRowMax Last row.
+	 * @param iColMin First column.
+	 * @param iColMax Last column.
+	 * @param rgl1 Bits (row-major) packed into longs; bits are set for cells within polygon.
+	 */
+	private void rasterize(Polygon ply1, int iRowMin, int iRowMax, int iColMin, int iColMax, long rgl1[]){
+		
+		//rgiCount = change in crossing count at each row (index 0 is iRowMax, the southernmost row)
+		//rgdLatRad = latitude of center of each row in radians (same order as rgiCount)
+		//lst1 = edges crossing meridian of current column
+		//edg1 = current edge
+		//dLon = longitude of current column
+		//i1 = first row (from south) at which current edge is counted
+		//i2 = current crossing count
+		//iRows = number of rows
+		//l1 = index of current cell
+		
+		int rgiCount[];
+		double rgdLatRad[];
+		ArrayList<Edge> lst1;
+		Edge edg1;
+		double dLon;
+		int i1; int i2; int iRows;
+		long l1;
+		
+		//checking rows
+		iRows = iRowMax-iRowMin+1;
+		if(iRows<=0){
+			return;
+		}
+		
+		//loading latitudes of rows
+		rgdLatRad = new double[iRows];
+		for(int k=0;k<iRows;k++){
+			rgdLatRad[k] = geo1.findLat(iRowMax-k)*DEG_TO_RAD;
+		}
+		rgiCount = new int[iRows+1];
+		
+		//looping through columns within bounds of polygon
+		iColMin = Math.max(iColMin, geo1.findCol(ply1.dLonMinimum, true));
+		iColMax = Math.min(iColMax, geo1.findCol(ply1.dLonMaximum, false));
+		for(int j=iColMin;j<=iColMax;j++){
+			
+			//checking longitude (as in SphericalGeometry.isPointPolygon)
+			dLon = geo1.findLon(j);
+			if(dLon<ply1.dLonMinimum || dLon>ply1.dLonMaximum){
+				continue;
+			}
+			
+			//loading edges crossing meridian
+			lst1 = ply1.getIntersectingEdgesLongitude(dLon);
+			if(lst1==null){
+				continue;
+			}
+			
+			//loading changes in crossing count
+			for(int k=0;k<=iRows;k++){
+				rgiCount[k]=0;
+			}
+			for(int k=0;k<lst1.size();k++){
+				edg1 = lst1.get(k);
+				i1 = findFirstRow(edg1, dLon, iRowMax, rgdLatRad);
+				if(sAlgorithm.equals("even-odd")){
+					rgiCount[i1]++;
+				}else if(sAlgorithm.equals("winding")){
+					rgiCount[i1]+=edg1.iWinding;
+				}
+			}
+			
+			//filling cells within polygon, from south to north
+			i2 = 0;
+			for(int k=0;k<iRows;k++){
+				i2+=rgiCount[k];
+				if((sAlgorithm.equals("even-odd") && i2 % 2 == 1) || (sAlgorithm.equals("winding") && i2!=0)){
+					l1 = ((long) (iRowMax-k))*geo1.getColCount()+j;
+					rgl1[(int) (l1>>>6)] |= 1L<<(l1&63);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Finds first row (from south) at which edge is counted as a crossing south of the cell center. Whether an edge is counted
+	 * increases with latitude, so the row is found by bisection using the test in SphericalGeometry.isPointPolygon.
+	 * @param edg1 Edge.
+	 * @param dLon Longitude of meridian.
+	 * @param iRowMax Southernmost row.
+	 * @param rgdLatRad Latitude of center of each row in radians (from south to north).
+	 * @return Index of first row (from south) at which edge is counted; number of rows if edge is not counted in any row.
+	 */
+	private int findFirstRow(Edge edg1, double dLon, int iRowMax, double rgdLatRad[]){
+		
+		//dLatRad = latitude of crossing in radians
+		//iLow = lower bound on output
+		//iHigh = upper bound on output
+		//iMid = current row
+		
+		double dLatRad;
+		int iLow; int iHigh; int iMid;
+		
+		dLatRad = sph1.findLatitude(edg1.dLatStart*DEG_TO_RAD, edg1.dLonStart*DEG_TO_RAD, edg1.dLatEnd*DEG_TO_RAD, edg1.dLonEnd*DEG_TO_RAD, dLon*DEG_TO_RAD);
+		iLow = 0;
+		iHigh = rgdLatRad.length;
+		while(iLow<iHigh){
+			iMid = (iLow+iHigh)/2;
+			if(isCounted(edg1, geo1.findLat(iRowMax-iMid), rgdLatRad[iMid], dLatRad)){
+				iHigh = iMid;
+			}else{
+				iLow = iMid+1;
+			}
+		}
+		return iLow;
+	}
+	
+	/**
+	 * Checks whether edge crossing meridian is south of point (as in SphericalGeometry.isPointPolygon).
+	 * @param edg1 Edge.
+	 * @param dLat Latitude of point.
+	 * @param dLatRad Latitude of point in radians.
+	 * @param dCrossingRad Latitude at which great circle through edge crosses meridian, in radians.
+	 * @return True if edge is counted as a crossing.
+	 */
+	private boolean isCounted(Edge edg1, double dLat, double dLatRad, double dCrossingRad){
+		if(edg1.getLatMinimum()>dLat){
+			return false;
+		}
+		if(edg1.getLatMaximum()<dLat){
+			return true;
+		}
+		return dCrossingRad<=dLatRad;
+	}
+}
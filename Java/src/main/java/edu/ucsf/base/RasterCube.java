@@ -0,0 +1,240 @@
+package edu.ucsf.base;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-memory cache of raster slabs (latitude-longitude grids at a given elevation and time). Each slab is read from file once and
+ * values are then looked up by index arithmetic. Slabs are evicted in approximately least-recently-used order when the memory budget
+ * is exceeded: recency is counted in loads, and a lookup only records its slab as used if it has not been used since the last load.
+ * Lookups of loaded slabs take no lock; a slab that is not loaded is read under a lock for that slab only (so threads reading other
+ * slabs are not blocked by the file read), and only the memory accounting and eviction are done under the lock for the cache.
+ * @author jladau
+ */
+
+public class RasterCube {
+	
+	//mapSlabs(sVar) = returns slabs for given variable, indexed by slab index of raster (null if slab is not loaded)
+	//mapLastUse(sVar) = returns load counter at last use of each slab for given variable
+	//mapLocks(sVar) = returns lock for loading each slab for given variable
+	//lMaxCells = maximum number of cells held in memory
+	//lCells = number of cells currently held in memory (guarded by lock for cache)
+	//lClock = load counter (incremented only when a slab is loaded, so lookups of loaded slabs only read it)
+	
+	private Map<String,AtomicReferenceArray<double[]>> mapSlabs;
+	private Map<String,AtomicLongArray> mapLastUse;
+	private Map<String,Object[]> mapLocks;
+	private long lMaxCells;
+	private long lCells;
+	private AtomicLong lClock;
+	
+	/**
+	 * Constructor
+	 * @param dMemoryMB Memory budget in megabytes (at least one slab is always held).
+	 */
+	public RasterCube(double dMemoryMB){
+		mapSlabs = new ConcurrentHashMap<String,AtomicReferenceArray<double[]>>();
+		mapLastUse = new ConcurrentHashMap<String,AtomicLongArray>();
+		mapLocks = new ConcurrentHashMap<String,Object[]>();
+		lMaxCells = (long) (dMemoryMB*1024.*1024./8.);
+		lCells = 0;
+		lClock = new AtomicLong();
+	}
+	
+	/**
+	 * Reads value of variable at the given location, loading slab from raster if necessary. Location is resolved to nearest raster cell, as in NetCDF_IO.readValue.
+	 * @param sVar Variable name.
+	 * @param sPath Path to raster for variable.
+	 * @param rrp1 Reader pool (for axes of raster, and for reading slab if it is not loaded).
+	 * @param dLat Latitude.
+	 * @param dLon Longitude.
+	 * @param dVert Elevation.
+	 * @param dTime Time.
+	 * @return Value at given location.
+	 */
+	public double readValue(String sVar, String sPath, RasterReaderPool rrp1, double dLat, double dLon, double dVert, double dTime){
+		
+		//rgdSlabs = slabs for variable
+		//rgd1 = slab
+		//iSlab = slab index
+		//rdx1 = axes of raster
+		//rgoLock = locks for loading slabs of variable
+		//rglLastUse = load counters at last use for variable
+		//lEpoch = current load counter
+		
+		AtomicReferenceArray<double[]> rgdSlabs;
+		double rgd1[];
+		int iSlab;
+		RasterIndex rdx1;
+		Object rgoLock[];
+		AtomicLongArray rglLastUse;
+		long lEpoch;
+		
+		//loading axes
+		rdx1 = rrp1.getIndex(sPath);
+		
+		//loading slabs for variable
+		rgdSlabs = mapSlabs.get(sVar);
+		if(rgdSlabs==null){
+			rgdSlabs = initializeVariable(sVar, rdx1.getSlabCount());
+		}
+		
+		//loading slab
+		iSlab = rdx1.findSlabIndex(dVert, dTime);
+		rgd1 = rgdSlabs.get(iSlab);
+		if(rgd1==null){
+			
+			//reading slab if it has not been read by another thread in the meantime (slab is read without caching if variable has been removed)
+			rgoLock = mapLocks.get(sVar);
+			if(rgoLock==null){
+				rgd1 = rrp1.readSlab(sPath, dVert, dTime);
+			}else{
+				
+				//returning readers held by thread before blocking (thread that holds lock may be waiting for a reader)
+				rrp1.returnHeldReaders();
+				synchronized(rgoLock[iSlab]){
+					rgd1 = rgdSlabs.get(iSlab);
+					if(rgd1==null){
+						rgd1 = rrp1.readSlab(sPath, dVert, dTime);
+						addSlab(sVar, rgdSlabs, iSlab, rgd1);
+					}
+				}
+			}
+		}else{
+			
+			//recording use (written only if slab has not been used since last load, so most lookups do not write shared memory)
+			rglLastUse = mapLastUse.get(sVar);
+			if(rglLastUse!=null){
+				lEpoch = lClock.get();
+				if(rglLastUse.get(iSlab)<lEpoch){
+					rglLastUse.lazySet(iSlab, lEpoch);
+				}
+			}
+		}
+		
+		//returning value
+		return rgd1[rdx1.findCellIndex(dLat, dLon)];
+	}
+	
+	/**
+	 * Removes all slabs for given variable (e.g., when reader for variable is closed).
+	 * @param sVar Variable name.
+	 */
+	public synchronized void remove(String sVar){
+		
+		//rgdSlabs = slabs for variable
+		//rgd1 = current slab
+		
+		AtomicReferenceArray<double[]> rgdSlabs;
+		double rgd1[];
+		
+		rgdSlabs = mapSlabs.remove(sVar);
+		mapLastUse.remove(sVar);
+		mapLocks.remove(sVar);
+		if(rgdSlabs!=null){
+			for(int i=0;i<rgdSlabs.length();i++){
+				rgd1 = rgdSlabs.getAndSet(i, null);
+				if(rgd1!=null){
+					lCells-=rgd1.length;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Initializes slabs, load counters, and locks for variable if they have not been initialized.
+	 * @param sVar Variable name.
+	 * @param iSlabs Number of slabs in raster.
+	 * @return Slabs for variable.
+	 */
+	private synchronized AtomicReferenceArray<double[]> initializeVariable(String sVar, int iSlabs){
+		
+		//rgdSlabs = output
+		//rgo1 = locks
+		
+		AtomicReferenceArray<double[]> rgdSlabs;
+		Object rgo1[];
+		
+		rgdSlabs = mapSlabs.get(sVar);
+		if(rgdSlabs==null){
+			rgo1 = new Object[iSlabs];
+			for(int i=0;i<iSlabs;i++){
+				rgo1[i] = new Object();
+			}
+			mapLocks.put(sVar, rgo1);
+			mapLastUse.put(sVar, new AtomicLongArray(iSlabs));
+			rgdSlabs = new AtomicReferenceArray<double[]>(iSlabs);
+			mapSlabs.put(sVar, rgdSlabs);
+		}
+		return rgdSlabs;
+	}
+	
+	/**
+	 * Adds slab that has been read to cache, evicting least recently used slabs if memory budget is exceeded.
+	 * @param sVar Variable name.
+	 * @param rgdSlabs Slabs for variable (slab is not cached if variable has been removed since they were loaded).
+	 * @param iSlab Slab index.
+	 * @param rgd1 Slab.
+	 */
+	private synchronized void addSlab(String sVar, AtomicReferenceArray<double[]> rgdSlabs, int iSlab, double rgd1[]){
+		if(mapSlabs.get(sVar)!=rgdSlabs){
+			return;
+		}
+		rgdSlabs.set(iSlab, rgd1);
+		lCells+=rgd1.length;
+		mapLastUse.get(sVar).set(iSlab, lClock.incrementAndGet());
+		while(lCells>lMaxCells && removeLeastRecentlyUsed(sVar, iSlab)){
+		}
+	}
+	
+	/**
+	 * Removes least recently used slab, other than the given slab (called under lock for cache).
+	 * @param sVarKeep Variable of slab to keep.
+	 * @param iSlabKeep Index of slab to keep.
+	 * @return True if a slab was removed; false if no other slabs are loaded.
+	 */
+	private boolean removeLeastRecentlyUsed(String sVarKeep, int iSlabKeep){
+		
+		//sVar = variable of least recently used slab
+		//iSlab = index of least recently used slab
+		//lMin = load counter at last use of least recently used slab
+		//rgdSlabs = slabs for current variable
+		//rglLastUse = load counters at last use for current variable
+		//rgd1 = removed slab
+		
+		String sVar = null;
+		int iSlab = -1;
+		long lMin;
+		AtomicReferenceArray<double[]> rgdSlabs;
+		AtomicLongArray rglLastUse;
+		double rgd1[];
+		
+		//finding least recently used slab
+		lMin = Long.MAX_VALUE;
+		for(String s:mapSlabs.keySet()){
+			rgdSlabs = mapSlabs.get(s);
+			rglLastUse = mapLastUse.get(s);
+			for(int i=0;i<rgdSlabs.length();i++){
+				if(rgdSlabs.get(i)==null || (i==iSlabKeep && s.equals(sVarKeep))){
+					continue;
+				}
+				if(rglLastUse.get(i)<lMin){
+					lMin = rglLastUse.get(i);
+					sVar = s;
+					iSlab = i;
+				}
+			}
+		}
+		
+		//removing slab (threads that are using slab keep their reference to it)
+		if(sVar==null){
+			return false;
+		}
+		rgd1 = mapSlabs.get(sVar).getAndSet(iSlab, null);
+		lCells-=rgd1.length;
+		return true;
+	}
+}
@@ -0,0 +1,91 @@
+package edu.ucsf.base;
+
+/**
+ * Axes of a raster, for finding the slab and cell of a location without a reader. Locations are resolved to the nearest raster cell
+ * by the same rules as NetCDF_IO.readValue. Objects are not modified after construction, so one object is shared by all threads
+ * reading the raster.
+ * @author jladau
+ */
+
+public class RasterIndex {
+	
+	//axLat = latitude axis
+	//axLon = longitude axis
+	//axVert = elevation axis
+	//axTime = time axis
+	//bVertTime = true if raster has elevation and time
+	//iLon = number of longitudes
+	//iTimes = number of times
+	//iSlabs = number of latitude-longitude slabs
+	
+	private GridAxis axLat;
+	private GridAxis axLon;
+	private GridAxis axVert;
+	private GridAxis axTime;
+	private boolean bVertTime;
+	private int iLon;
+	private int iTimes;
+	private int iSlabs;
+	
+	/**
+	 * Constructor
+	 * @param cdf1 Reader for raster (only used during construction).
+	 */
+	public RasterIndex(NetCDF_IO cdf1){
+		axLat = cdf1.axLat;
+		axLon = cdf1.axLon;
+		axVert = cdf1.axVert;
+		axTime = cdf1.axTime;
+		bVertTime = cdf1.bVertTime;
+		iLon = cdf1.getLonCount();
+		iTimes = cdf1.getTimeCount();
+		iSlabs = cdf1.getSlabCount();
+	}
+	
+	/**
+	 * Finds index of latitude-longitude slab for given elevation and time (as in NetCDF_IO.findSlabIndex).
+	 * @param dVert Elevation.
+	 * @param dTime Time.
+	 * @return Index of slab (0 if raster has no elevation and time).
+	 */
+	public int findSlabIndex(double dVert, double dTime){
+		
+		//iVert = index of elevation
+		//iTime = index of time
+		
+		int iVert; int iTime;
+		
+		if(bVertTime==false){
+			return 0;
+		}
+		if(axVert.size()==1){
+			iVert = 0;
+		}else{
+			iVert = axVert.findIndex(dVert);
+		}
+		if(axTime.size()==1){
+			iTime = 0;
+		}else{
+			iTime = axTime.findIndex(dTime);
+		}
+		return iVert*iTimes+iTime;
+	}
+	
+	/**
+	 * Finds index of cell within slab (slabs are in latitude-longitude order, as returned by NetCDF_IO.readSlab).
+	 * @param dLat Latitude.
+	 * @param dLon Longitude.
+	 * @return Index of cell.
+	 */
+	public int findCellIndex(double dLat, double dLon){
+		return axLat.findIndex(dLat)*iLon+axLon.findIndex(dLon);
+	}
+	
+	/**
+	 * Gets number of latitude-longitude slabs.
+	 * @return Number of slabs.
+	 */
+	public int getSlabCount(){
+		return iSlabs;
+	}
+}
@@ -19,6 +19,12 @@ public class RasterIterator implements Iterator{
 	//iCounter = counter
 	//sVar = variable name for raster
 	//dLatPrevious = latitude of previous value
+	//geo1 = grid geometry
+	//rgn1 = region of interest (null if all cells are visited)
+	//iNextRow = row of next cell in region (-1 if iteration is complete)
+	//iNextCol = column of next cell in region
+	//iRowFirst = first row to visit (rows outside of region are skipped)
+	//iRowLast = last row to visit
 	
 	public String sVar;
 	public int iRow; 
@@ -29,6 +35,12 @@ public class RasterIterator implements Iterator{
 	public double dLatPrevious;
 	public double dVert;
 	public double dTime;
+	private GridGeometry geo1;
+	private RasterRegion rgn1;
+	private int iNextRow;
+	private int iNextCol;
+	private int iRowFirst;
+	private int iRowLast;
 	
 	/**
 	 * Constructor
@@ -36,14 +48,49 @@ public class RasterIterator implements Iterator{
 	 * @param sVar Variable name
 	 */
 	public RasterIterator(double dVert, double dTime, String sVar){
-		dLat = 90.25;
+		this(dVert, dTime, sVar, new GridGeometry(0.5), null);
+	}
+	
+	/**
+	 * Constructor
+	 * @param dVert Elevation
+	 * @param dTime Time
+	 * @param sVar Variable name
+	 * @param geo1 Grid geometry
+	 * @param rgn1 Region of interest on grid: only cells in region are visited (null for all cells)
+	 */
+	public RasterIterator(double dVert, double dTime, String sVar, GridGeometry geo1, RasterRegion rgn1){
+		this(dVert, dTime, sVar, geo1, rgn1, 0, geo1.getRowCount()-1);
+	}
+	
+	/**
+	 * Constructor for band of rows (e.g., for threads filling disjoint parts of a map)
+	 * @param dVert Elevation
+	 * @param dTime Time
+	 * @param sVar Variable name
+	 * @param geo1 Grid geometry
+	 * @param rgn1 Region of interest on grid: only cells in region are visited (null for all cells)
+	 * @param iRowFirst First row to visit
+	 * @param iRowLast Last row to visit
+	 */
+	public RasterIterator(double dVert, double dTime, String sVar, GridGeometry geo1, RasterRegion rgn1, int iRowFirst, int iRowLast){
+		dLat = geo1.findLat(-1);
 		iRow = -1;
-		iCol = 719;
+		iCol = geo1.getColCount()-1;
 		iCounter = 0;
 		this.dTime = dTime;
 		this.dVert = dVert;
 		this.sVar = sVar;
+		this.geo1 = geo1;
+		this.rgn1 = rgn1;
+		this.iRowFirst = iRowFirst;
+		this.iRowLast = iRowLast;
 		dLatPrevious = -9999;
+		
+		//loading first cell
+		iNextRow = -1;
+		iNextCol = iCol;
+		loadNextCell();
 	}
 	
 	/**
@@ -51,7 +98,7 @@ public class RasterIterator implements Iterator{
 	 */
 	public boolean hasNext(){
 		
-		if(iRow==359 && iCol==719){
+		if(iNextRow==-1){
 			return false;
 		}else{
 			return true;
@@ -66,22 +113,16 @@ public class RasterIterator implements Iterator{
 		//saving latitude
 		dLatPrevious = dLat;
 		
-		//updating column
-		iCol++;
+		//updating row and column
+		iRow = iNextRow;
+		iCol = iNextCol;
 		
-		//checking if new row
-		if(iCol==720){
-			iRow++;
-			iCol=0;
-			dLat-=0.5;
-			dLon=-179.75;
-		}else{
-			dLon+=0.5;
-		}
+		//loading coordinates
+		dLat = geo1.findLat(iRow);
+		dLon = geo1.findLon(iCol);
 		
-		//rounding numbers
-		dLat = round(dLat);
-		dLon = round(dLon);
+		//loading next cell
+		loadNextCell();
 		
 		//updating counter
 		iCounter++;
@@ -104,16 +145,44 @@ public class RasterIterator implements Iterator{
 	}
 	
 	/**
-	 * Rounds to the nearest 0.25
+	 * Advances next cell to the following cell in region and band of rows (row-major order).
 	 */
-	private double round(double d1){
-	
-		//d2 = temporary value
+	private void loadNextCell(){
+		
+		//iRowMin = first row to visit
+		//iRowMax = last row to visit
+		//iColMin = first column to visit
+		//iColMax = last column to visit
 		
-		double d2;
+		int iRowMin; int iRowMax; int iColMin; int iColMax;
 		
-		d2 = d1 * 4.;
-		d2 = Math.round(d2);
-		return d2/4.;
+		//loading bounds
+		if(rgn1==null){
+			iRowMin = 0; iRowMax = geo1.getRowCount()-1; iColMin = 0; iColMax = geo1.getColCount()-1;
+		}else{
+			iRowMin = rgn1.getRowMin(); iRowMax = rgn1.getRowMax(); iColMin = rgn1.getColMin(); iColMax = rgn1.getColMax();
+		}
+		iRowMin = Math.max(iRowMin, iRowFirst);
+		iRowMax = Math.min(iRowMax, iRowLast);
+		if(iNextRow<iRowMin){
+			iNextRow = iRowMin;
+			iNextCol = iColMin-1;
+		}
+		
+		//finding next cell
+		while(true){
+			iNextCol++;
+			if(iNextCol>iColMax){
+				iNextRow++;
+				iNextCol = iColMin;
+			}
+			if(iNextRow>iRowMax){
+				iNextRow = -1;
+				return;
+			}
+			if(rgn1==null || rgn1.contains(iNextRow, iNextCol)){
+				return;
+			}
+		}
 	}
 }
@@ -567,9 +567,10 @@ public class RasterOperations {
 	 * @param dThreshold Threshold
 	 * @param rgdGrid Grid with data.
 	 * @param sVariable Variable
+	 * @param geo1 Geometry of grid with data
 	 * @return String array giving results
 	 */
-	public static String[][] findProportionBelowThreshold(String sVariable, int iMonth, double rgdGrid[][], String sLandOcean, double dThreshold, String sPathGlobalTopography){
+	public static String[][] findProportionBelowThreshold(String sVariable, int iMonth, double rgdGrid[][], String sLandOcean, double dThreshold, String sPathGlobalTopography, GridGeometry geo1){
 		
 		//sPathMapTest = path to map with data for deciding which map to use
 		//dElevation = depth to consider
@@ -596,8 +597,8 @@ public class RasterOperations {
 		//loading depth
 		dElevation = 0;
 		
-		//initializing NetCDF_Operations object
-		ncf1 = new NetCDF_Operations(sLandOcean, sPathGlobalTopography);
+		//initializing NetCDF_Operations object (land and area grids are loaded once for each grid geometry and shared across calls)
+		ncf1 = new NetCDF_Operations(sLandOcean, sPathGlobalTopography, geo1);
 		
 		//outputting results
 		rgsOut = new String[2][1];
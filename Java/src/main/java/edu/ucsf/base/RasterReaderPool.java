@@ -0,0 +1,401 @@
+package edu.ucsf.base;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool of open raster readers shared by all objects reading rasters. A reader is used by one thread at a time: it is borrowed
+ * from the pool for a lookup and returned afterwards, so threads reading the same raster use separate readers. The number of open
+ * readers never exceeds the maximum: idle readers are closed in least-recently-used order to make room, and a thread that needs a
+ * reader while all readers are in use waits until one is returned. For passes over many cells, a thread holds its readers
+ * (holdReaders and releaseReaders), so its lookups do not go through the pool lock; a thread returns its held readers before it
+ * waits, so threads that are waiting never keep readers from each other. The axes of each raster are shared by all threads as a
+ * RasterIndex.
+ * @author jladau
+ */
+
+public class RasterReaderPool {
+	
+	//rrpDefault = pool shared by all raster data objects
+	//mapIdle(sPath) = returns idle readers for given path
+	//mapLastUse = idle readers and their paths, in order of last use (least recently used first)
+	//iOpen = number of open readers (idle and in use)
+	//iMaxOpen = maximum number of open readers
+	//mapIndex(sPath) = returns axes of given raster (shared by all threads)
+	//thlHeld(sPath) = returns reader held by current thread for given raster (null if thread is not holding readers)
+	//thlDepth = number of nested holds by current thread
+	
+	private static RasterReaderPool rrpDefault = new RasterReaderPool(64);
+	private Map<String,ArrayList<NetCDF_IO>> mapIdle;
+	private LinkedHashMap<NetCDF_IO,String> mapLastUse;
+	private int iOpen;
+	private int iMaxOpen;
+	private Map<String,RasterIndex> mapIndex;
+	private ThreadLocal<HashMap<String,NetCDF_IO>> thlHeld;
+	private ThreadLocal<Integer> thlDepth;
+	
+	/**
+	 * Constructor
+	 * @param iMaxOpen Maximum number of open readers.
+	 */
+	public RasterReaderPool(int iMaxOpen){
+		mapIdle = new HashMap<String,ArrayList<NetCDF_IO>>();
+		mapLastUse = new LinkedHashMap<NetCDF_IO,String>();
+		iOpen = 0;
+		this.iMaxOpen = Math.max(1, iMaxOpen);
+		mapIndex = new ConcurrentHashMap<String,RasterIndex>();
+		thlHeld = new ThreadLocal<HashMap<String,NetCDF_IO>>();
+		thlDepth = new ThreadLocal<Integer>();
+	}
+	
+	/**
+	 * Gets pool shared by all raster data objects.
+	 * @return Default pool.
+	 */
+	public static RasterReaderPool getDefault(){
+		return rrpDefault;
+	}
+	
+	/**
+	 * Sets maximum number of open readers, closing idle readers if necessary.
+	 * @param iMaxOpen Maximum number of open readers.
+	 */
+	public synchronized void setMaxOpen(int iMaxOpen){
+		this.iMaxOpen = Math.max(1, iMaxOpen);
+		while(iOpen>this.iMaxOpen && closeLeastRecentlyUsed()){
+		}
+		notifyAll();
+	}
+	
+	/**
+	 * Gets number of open readers.
+	 * @return Number of open readers.
+	 */
+	public synchronized int getOpenCount(){
+		return iOpen;
+	}
+	
+	/**
+	 * Borrows reader for given raster; reader must be returned with returnReader when lookup is complete. If the maximum number of
+	 * readers are open and none are idle, waits until a reader is returned.
+	 * @param sPath Path to raster.
+	 * @return Reader not in use by any other thread.
+	 */
+	public NetCDF_IO borrowReader(String sPath){
+		
+		//lst1 = idle readers for path
+		//cdf1 = output
+		
+		ArrayList<NetCDF_IO> lst1;
+		NetCDF_IO cdf1;
+		
+		synchronized(this){
+			while(true){
+				
+				//checking for idle reader
+				lst1 = mapIdle.get(sPath);
+				if(lst1!=null && lst1.size()>0){
+					cdf1 = lst1.remove(lst1.size()-1);
+					mapLastUse.remove(cdf1);
+					return cdf1;
+				}
+				
+				//making room for new reader: idle readers are closed, then readers held by current thread are returned, and otherwise
+				//thread waits for a reader to be returned
+				if(iOpen<iMaxOpen){
+					iOpen++;
+					break;
+				}
+				if(closeLeastRecentlyUsed()){
+					continue;
+				}
+				if(returnHeldReaders()){
+					continue;
+				}
+				try{
+					wait();
+				}catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("ERROR: Interrupted while waiting for raster reader for " + sPath + ".");
+				}
+			}
+		}
+		
+		//opening reader (outside of lock: opening is slow)
+		try{
+			return NetCDF_IO.openReader(sPath);
+		}catch(RuntimeException e){
+			synchronized(this){
+				iOpen--;
+				notifyAll();
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * Returns borrowed reader to pool.
+	 * @param sPath Path to raster.
+	 * @param cdf1 Reader borrowed with borrowReader.
+	 */
+	public synchronized void returnReader(String sPath, NetCDF_IO cdf1){
+		
+		//lst1 = idle readers for path
+		
+		ArrayList<NetCDF_IO> lst1;
+		
+		lst1 = mapIdle.get(sPath);
+		if(lst1==null){
+			lst1 = new ArrayList<NetCDF_IO>();
+			mapIdle.put(sPath, lst1);
+		}
+		lst1.add(cdf1);
+		mapLastUse.put(cdf1, sPath);
+		while(iOpen>iMaxOpen && closeLeastRecentlyUsed()){
+		}
+		notifyAll();
+	}
+	
+	/**
+	 * Starts holding readers for the current thread: until releaseReaders is called, each raster read by the thread is read with
+	 * one reader, borrowed on first use, so lookups do not go through the pool lock. Holds may be nested; readers are returned when
+	 * the outermost hold is released.
+	 */
+	public void holdReaders(){
+		
+		//iDepth = number of nested holds
+		
+		Integer iDepth;
+		
+		iDepth = thlDepth.get();
+		if(iDepth==null){
+			thlHeld.set(new HashMap<String,NetCDF_IO>());
+			iDepth = 0;
+		}
+		thlDepth.set(iDepth+1);
+	}
+	
+	/**
+	 * Stops holding readers for the current thread (readers are returned to the pool when the outermost hold is released).
+	 */
+	public void releaseReaders(){
+		
+		//iDepth = number of nested holds
+		
+		Integer iDepth;
+		
+		iDepth = thlDepth.get();
+		if(iDepth==null){
+			return;
+		}
+		if(iDepth>1){
+			thlDepth.set(iDepth-1);
+			return;
+		}
+		returnHeldReaders();
+		thlHeld.remove();
+		thlDepth.remove();
+	}
+	
+	/**
+	 * Returns readers held by the current thread to the pool without ending the hold (readers are borrowed again on next use). Called
+	 * before a thread that may be holding readers blocks, so that blocked threads do not keep readers from other threads.
+	 * @return True if any readers were returned.
+	 */
+	public boolean returnHeldReaders(){
+		
+		//map1 = held readers
+		
+		HashMap<String,NetCDF_IO> map1;
+		
+		map1 = thlHeld.get();
+		if(map1==null || map1.size()==0){
+			return false;
+		}
+		for(String s:map1.keySet()){
+			returnReader(s, map1.get(s));
+		}
+		map1.clear();
+		return true;
+	}
+	
+	/**
+	 * Reads value from given raster.
+	 * @param sPath Path to raster.
+	 * @param dLat Latitude.
+	 * @param dLon Longitude.
+	 * @param dVert Elevation.
+	 * @param dTime Time.
+	 * @return Value at given location.
+	 */
+	public double readValue(String sPath, double dLat, double dLon, double dVert, double dTime){
+		
+		//cdf1 = reader
+		
+		NetCDF_IO cdf1;
+		
+		//reading with held reader if thread is holding readers
+		cdf1 = findHeldReader(sPath);
+		if(cdf1!=null){
+			return cdf1.readValue(dLat, dLon, dVert, dTime);
+		}
+		
+		//reading with borrowed reader
+		cdf1 = borrowReader(sPath);
+		try{
+			return cdf1.readValue(dLat, dLon, dVert, dTime);
+		}finally{
+			returnReader(sPath, cdf1);
+		}
+	}
+	
+	/**
+	 * Reads latitude-longitude slab from given raster.
+	 * @param sPath Path to raster.
+	 * @param dVert Elevation.
+	 * @param dTime Time.
+	 * @return Slab (as returned by NetCDF_IO.readSlab).
+	 */
+	public double[] readSlab(String sPath, double dVert, double dTime){
+		
+		//cdf1 = reader
+		
+		NetCDF_IO cdf1;
+		
+		//reading with held reader if thread is holding readers
+		cdf1 = findHeldReader(sPath);
+		if(cdf1!=null){
+			return cdf1.readSlab(dVert, dTime);
+		}
+		
+		//reading with borrowed reader
+		cdf1 = borrowReader(sPath);
+		try{
+			return cdf1.readSlab(dVert, dTime);
+		}finally{
+			returnReader(sPath, cdf1);
+		}
+	}
+	
+	/**
+	 * Gets axes of given raster: loaded once per raster and then found without a reader or lock.
+	 * @param sPath Path to raster.
+	 * @return Axes of raster.
+	 */
+	public RasterIndex getIndex(String sPath){
+		
+		//rdx1 = output
+		//cdf1 = reader
+		
+		RasterIndex rdx1;
+		NetCDF_IO cdf1;
+		
+		rdx1 = mapIndex.get(sPath);
+		if(rdx1!=null){
+			return rdx1;
+		}
+		cdf1 = findHeldReader(sPath);
+		if(cdf1!=null){
+			rdx1 = new RasterIndex(cdf1);
+		}else{
+			cdf1 = borrowReader(sPath);
+			try{
+				rdx1 = new RasterIndex(cdf1);
+			}finally{
+				returnReader(sPath, cdf1);
+			}
+		}
+		mapIndex.put(sPath, rdx1);
+		return rdx1;
+	}
+	
+	/**
+	 * Closes idle readers for given raster (readers in use are returned to the pool and closed once they are least recently used).
+	 * @param sPath Path to raster.
+	 */
+	public synchronized void closeReaders(String sPath){
+		
+		//lst1 = idle readers for path
+		
+		ArrayList<NetCDF_IO> lst1;
+		
+		mapIndex.remove(sPath);
+		lst1 = mapIdle.remove(sPath);
+		if(lst1==null){
+			return;
+		}
+		for(NetCDF_IO cdf1:lst1){
+			mapLastUse.remove(cdf1);
+			cdf1.closeReader();
+			iOpen--;
+		}
+		notifyAll();
+	}
+	
+	/**
+	 * Closes all idle readers.
+	 */
+	public synchronized void closeAll(){
+		while(closeLeastRecentlyUsed()){
+		}
+	}
+	
+	/**
+	 * Finds reader held by current thread for given raster, borrowing it if the thread is holding readers and has not read the raster.
+	 * @param sPath Path to raster.
+	 * @return Held reader; null if thread is not holding readers.
+	 */
+	private NetCDF_IO findHeldReader(String sPath){
+		
+		//map1 = held readers
+		//cdf1 = output
+		
+		HashMap<String,NetCDF_IO> map1;
+		NetCDF_IO cdf1;
+		
+		map1 = thlHeld.get();
+		if(map1==null){
+			return null;
+		}
+		cdf1 = map1.get(sPath);
+		if(cdf1==null){
+			cdf1 = borrowReader(sPath);
+			map1.put(sPath, cdf1);
+		}
+		return cdf1;
+	}
+	
+	/**
+	 * Closes least recently used idle reader.
+	 * @return True if a reader was closed; false if no readers are idle.
+	 */
+	private boolean closeLeastRecentlyUsed(){
+		
+		//itr1 = iterator over idle readers
+		//cdf1 = least recently used reader
+		//sPath = path for least recently used reader
+		//ery1 = entry for least recently used reader
+		
+		Iterator<Map.Entry<NetCDF_IO,String>> itr1;
+		Map.Entry<NetCDF_IO,String> ery1;
+		NetCDF_IO cdf1;
+		String sPath;
+		
+		itr1 = mapLastUse.entrySet().iterator();
+		if(!itr1.hasNext()){
+			return false;
+		}
+		ery1 = itr1.next();
+		cdf1 = ery1.getKey();
+		sPath = ery1.getValue();
+		itr1.remove();
+		mapIdle.get(sPath).remove(cdf1);
+		cdf1.closeReader();
+		iOpen--;
+		return true;
+	}
+}
@@ -0,0 +1,213 @@
+package edu.ucsf.base;
+
+/**
+ * Region of interest on an output grid. A cell is in the region if its center is within the bounding box and, if a mask is given,
+ * within the mask (polygon file or raster, as in PointOnLand). Used by RasterIterator to visit only cells within the region.
+ * @author jladau
+ */
+
+public class RasterRegion {
+	
+	//geo1 = grid geometry
+	//rgb1 = flags for whether each cell (row, column) is in region (null if all cells within bounds are in region)
+	//iRowMin = first row in region
+	//iRowMax = last row in region
+	//iColMin = first column in region
+	//iColMax = last column in region
+	//iCells = number of cells in region
+	
+	private GridGeometry geo1;
+	private boolean rgb1[][] = null;
+	private int iRowMin;
+	private int iRowMax;
+	private int iColMin;
+	private int iColMax;
+	private int iCells;
+	
+	/**
+	 * Constructor
+	 * @param geo1 Grid geometry.
+	 * @param rgdBounds Bounding box in following order: latmin, latmax, lonmin, lonmax.
+	 */
+	public RasterRegion(GridGeometry geo1, double rgdBounds[]){
+		this.geo1 = geo1;
+		loadBounds(rgdBounds);
+		iCells = Math.max(0, iRowMax-iRowMin+1)*Math.max(0, iColMax-iColMin+1);
+	}
+	
+	/**
+	 * Constructor
+	 * @param geo1 Grid geometry.
+	 * @param sPathMask Path to mask: polygon file (.shp.txt) or raster (.nc; cells with values other than -9999 are in mask).
+	 * @param rgdBounds Bounding box in following order: latmin, latmax, lonmin, lonmax; null if only mask is used.
+	 */
+	public RasterRegion(GridGeometry geo1, String sPathMask, double rgdBounds[]){
+		
+		//ptl1 = point on land object for mask
+		//rgd1 = bounds of mask polygons
+		//i1 = first row in mask
+		//i2 = last row in mask
+		//j1 = first column in mask
+		//j2 = last column in mask
+		
+		PointOnLand ptl1;
+		double rgd1[];
+		int i1; int i2; int j1; int j2;
+		
+		//loading mask
+		this.geo1 = geo1;
+		ptl1 = new PointOnLand(sPathMask, geo1);
+		
+		//loading bounds: bounding box and bounds of mask polygons
+		loadBounds(rgdBounds);
+		rgd1 = ptl1.getBounds();
+		if(rgd1!=null){
+			iRowMin = Math.max(iRowMin, geo1.findRow(rgd1[1], true));
+			iRowMax = Math.min(iRowMax, geo1.findRow(rgd1[0], false));
+			iColMin = Math.max(iColMin, geo1.findCol(rgd1[2], true));
+			iColMax = Math.min(iColMax, geo1.findCol(rgd1[3], false));
+		}
+		
+		//loading flags for cells within bounds
+		rgb1 = new boolean[geo1.getRowCount()][geo1.getColCount()];
+		iCells = 0;
+		i1 = geo1.getRowCount(); i2 = -1; j1 = geo1.getColCount(); j2 = -1;
+		for(int i=iRowMin;i<=iRowMax;i++){
+			for(int j=iColMin;j<=iColMax;j++){
+				if(ptl1.isOnLand(geo1.findLat(i), geo1.findLon(j))){
+					rgb1[i][j] = true;
+					iCells++;
+					i1 = Math.min(i1, i);
+					i2 = Math.max(i2, i);
+					j1 = Math.min(j1, j);
+					j2 = Math.max(j2, j);
+				}
+			}
+		}
+		
+		//shrinking bounds to cells in mask
+		iRowMin = i1; iRowMax = i2; iColMin = j1; iColMax = j2;
+	}
+	
+	/**
+	 * Constructor for part of region
+	 * @param rgn1 Region.
+	 * @param iRowMin First row of part.
+	 * @param iRowMax Last row of part.
+	 * @param iColMin First column of part.
+	 * @param iColMax Last column of part.
+	 */
+	private RasterRegion(RasterRegion rgn1, int iRowMin, int iRowMax, int iColMin, int iColMax){
+		this.geo1 = rgn1.geo1;
+		this.rgb1 = rgn1.rgb1;
+		this.iRowMin = Math.max(iRowMin, rgn1.iRowMin);
+		this.iRowMax = Math.min(iRowMax, rgn1.iRowMax);
+		this.iColMin = Math.max(iColMin, rgn1.iColMin);
+		this.iColMax = Math.min(iColMax, rgn1.iColMax);
+		
+		//counting cells
+		if(rgb1==null){
+			iCells = Math.max(0, this.iRowMax-this.iRowMin+1)*Math.max(0, this.iColMax-this.iColMin+1);
+		}else{
+			iCells = 0;
+			for(int i=this.iRowMin;i<=this.iRowMax;i++){
+				for(int j=this.iColMin;j<=this.iColMax;j++){
+					if(rgb1[i][j]){
+						iCells++;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets part of region within given rows and columns (e.g., tile of map filled by one task).
+	 * @param iRowMin First row.
+	 * @param iRowMax Last row.
+	 * @param iColMin First column.
+	 * @param iColMax Last column.
+	 * @return Region with cells of this region within given rows and columns.
+	 */
+	public RasterRegion findSubregion(int iRowMin, int iRowMax, int iColMin, int iColMax){
+		return new RasterRegion(this, iRowMin, iRowMax, iColMin, iColMax);
+	}
+	
+	/**
+	 * Checks whether cell is in region.
+	 * @param iRow Row.
+	 * @param iCol Column.
+	 * @return True if cell is in region.
+	 */
+	public boolean contains(int iRow, int iCol){
+		if(iRow<iRowMin || iRow>iRowMax || iCol<iColMin || iCol>iColMax){
+			return false;
+		}
+		if(rgb1==null){
+			return true;
+		}
+		return rgb1[iRow][iCol];
+	}
+	
+	/**
+	 * Gets grid geometry of region.
+	 * @return Grid geometry.
+	 */
+	public GridGeometry getGeometry(){
+		return geo1;
+	}
+	
+	/**
+	 * Gets first row of bounding box of region.
+	 * @return First row.
+	 */
+	public int getRowMin(){
+		return iRowMin;
+	}
+	
+	/**
+	 * Gets last row of bounding box of region.
+	 * @return Last row.
+	 */
+	public int getRowMax(){
+		return iRowMax;
+	}
+	
+	/**
+	 * Gets first column of bounding box of region.
+	 * @return First column.
+	 */
+	public int getColMin(){
+		return iColMin;
+	}
+	
+	/**
+	 * Gets last column of bounding box of region.
+	 * @return Last column.
+	 */
+	public int getColMax(){
+		return iColMax;
+	}
+	
+	/**
+	 * Gets number of cells in region.
+	 * @return Number of cells.
+	 */
+	public int getCellCount(){
+		return iCells;
+	}
+	
+	/**
+	 * Loads rows and columns with centers within bounding box.
+	 * @param rgdBounds Bounding box in following order: latmin, latmax, lonmin, lonmax; null for whole grid.
+	 */
+	private void loadBounds(double rgdBounds[]){
+		if(rgdBounds==null){
+			iRowMin = 0; iRowMax = geo1.getRowCount()-1; iColMin = 0; iColMax = geo1.getColCount()-1;
+		}else{
+			iRowMin = geo1.findRow(rgdBounds[1], true);
+			iRowMax = geo1.findRow(rgdBounds[0], false);
+			iColMin = geo1.findCol(rgdBounds[2], true);
+			iColMax = geo1.findCol(rgdBounds[3], false);
+		}
+	}
+}
@@ -80,9 +80,11 @@ public class CommunitySamples {
 	 */
 	public void loadCommunitySamples(SmoothedGeographicRanges smr1, SamplingLocations slc1, boolean bLoadRangeAttributes){
 		
-		//iCounter = counter for updating progress
+		//mapRange(sSpecies) = returns range for species with range bounds overlapping sampling bounds
+		//pdx1 = spatial index over ranges
 		
-		int iCounter;
+		Map<String,Polygon> mapRange;
+		PolygonIndex pdx1;
 		
 		//saving variables
 		this.smr1=smr1;
@@ -97,9 +99,6 @@ public class CommunitySamples {
 		//checking if valid sampling points could be found
 		if(slc1.rgdSamplingPoints!=null){
 		
-			//initializing counter
-			iCounter = 0;
-			
 			//initializing set of species
 			for(int i=0;i<slc1.rgdSamplingPoints.length;i++){
 				
@@ -116,30 +115,29 @@ public class CommunitySamples {
 				}
 			}
 			
-			//looping through species
+			//loading ranges with bounds overlapping sampling bounds
+			mapRange = new HashMap<String,Polygon>();
 			for(String s:smr1.mapSmoothedRange.keySet()){
 				
-				//updating progress
-				iCounter++;
-				//System.out.println("Analyzing species " + iCounter + " of " + smr1.mapSmoothedRange.size() + "...");
-				
 				//checking if sampling bounds overlap range bounds
 				if(sph1.doBoundsOverlap(smr1.mapSmoothedRange.get(s).getBounds(), slc1.bds1.rgdArray)==false){
 					continue;
 				}
+				mapRange.put(s, smr1.mapSmoothedRange.get(s));
+			}
+			
+			//loading spatial index over ranges
+			pdx1 = new PolygonIndex(mapRange);
+			
+			//looping through sampling locations
+			for(int i=0;i<slc1.rgdSamplingPoints.length;i++){
 				
-				//looping through sampling locations for given species
-				for(int i=0;i<slc1.rgdSamplingPoints.length;i++){
-					
-					//updating species set
-					if(sph1.isPointPolygon(slc1.rgdSamplingPoints[i][0], slc1.rgdSamplingPoints[i][1], smr1.mapSmoothedRange.get(s), "even-odd")==1){
-						mapSpecies.get(i).get(0).add(s);
-					}
-					
-					//updating second sampling point set of species
-					if(slc1.sMode.equals("beta-diversity") && sph1.isPointPolygon(slc1.rgdSamplingPoints[i][2], slc1.rgdSamplingPoints[i][3], smr1.mapSmoothedRange.get(s), "even-odd")==1){
-						mapSpecies.get(i).get(1).add(s);
-					}
+				//updating species set
+				mapSpecies.get(i).get(0).addAll(pdx1.findPolygons(slc1.rgdSamplingPoints[i][0], slc1.rgdSamplingPoints[i][1], "even-odd"));
+				
+				//updating second sampling point set of species
+				if(slc1.sMode.equals("beta-diversity")){
+					mapSpecies.get(i).get(1).addAll(pdx1.findPolygons(slc1.rgdSamplingPoints[i][2], slc1.rgdSamplingPoints[i][3], "even-odd"));
 				}
 			}
 		}
@@ -12,7 +12,9 @@ public class AnalyzeSampleCoverageMain {
 	public static void main(String rgsArgs[]){
 		
 		//sdm1 = SDM object
-		//cdfWriter = output cdf
+		//cdfWriter = output cdf for combined mess map
+		//rgcWriters = output cdfs for mess maps of predictors
+		//lstResults = list of output strings for each predictor
 		//rgsProportion = proportion below threshold output
 		//lst1 = list of output strings
 		//dMinAreaCoverage = minimum area of coverage
@@ -25,6 +27,8 @@ public class AnalyzeSampleCoverageMain {
 		double dMinAreaCoverage; double dMaxProportion; double dValue;
 		ArrayList<String> lst1;
 		NetCDF_IO cdfWriter = null;
+		NetCDF_IO rgcWriters[];
+		ArrayList<ArrayList<String>> lstResults;
 		String rgsProportion[][];
 		
 		//loading arguments
@@ -62,48 +66,64 @@ public class AnalyzeSampleCoverageMain {
 		//FileIO.writeFile(rgsProportion, arg1.getValueString("sPathArguments").replace(".args",".mess"), ",", 0, false);
 		FileIO.writeFile(rgsProportion, sdm1.arg1.sMESSPath, ",", 0, false);
 		
-		//looping through sets of predictors (models)
-		//for(int i=0;i<sdm1.arg1.iModels;i++){
+		//initializing writers
+		rgcWriters = new NetCDF_IO[sdm1.arg1.rgsPredictors.length];
+		if(arg1.getValueBoolean("bMESSPlots")==true){
+			for(int i=0;i<sdm1.arg1.rgsPredictors.length;i++){
+				rgcWriters[i] = new NetCDF_IO(sdm1.arg1.sDirOutput + "/MESS_" + sdm1.arg1.rgsCandidatePredictors[i] + ".nc","writing");
+				rgcWriters[i].initializeWriter(sdm1.arg1.getGeometry(), "Meters", sdm1.arg1.lstElevationsCDF, "Month", sdm1.arg1.lstTimesCDF, "MESS", "");
+			}
+			cdfWriter = new NetCDF_IO(sdm1.arg1.sDirOutput + "/MESS_Combined.nc","writing");
+			cdfWriter.initializeWriter(sdm1.arg1.getGeometry(), "Meters", sdm1.arg1.lstElevationsCDF, "Month", sdm1.arg1.lstTimesCDF, "MESS", "");
+		}
+		
+		//initializing output lists
+		lstResults = new ArrayList<ArrayList<String>>();
 		for(int i=0;i<sdm1.arg1.rgsPredictors.length;i++){
+			lstResults.add(new ArrayList<String>());
+		}
 		
-			//initializing writer
-			if(arg1.getValueBoolean("bMESSPlots")==true){
-				cdfWriter = new NetCDF_IO(sdm1.arg1.sDirOutput + "/MESS_" + sdm1.arg1.rgsCandidatePredictors[i] + ".nc","writing");
-				cdfWriter.initializeWriter(0.5, "Meters", sdm1.arg1.lstElevationsCDF, "Month", sdm1.arg1.lstTimesCDF, "MESS", "");
-			}
-				
+		//looping through times: mess maps for all predictors are loaded in one pass over the study region
+		for(int k=0;k<sdm1.arg1.lstTimes.size();k++){
+			
 			//updating progress
-			System.out.println("Variable: " + sdm1.arg1.rgsPredictors[i]);
+			System.out.println("Analyzing time " + (k+1) + " of " + sdm1.arg1.lstTimes.size() + "...");
 			
-			//initializing output list
-			lst1 = new ArrayList<String>();
+			//loading current mess grids
+			sdm1.mss1.loadMESSMaps(k);
 			
-			//looping through times
-			for(int k=0;k<sdm1.arg1.lstTimes.size();k++){
-				
-				//loading current mess grid
-				sdm1.mss1.loadMESSMap(k,i);
+			//looping through sets of predictors (models)
+			for(int i=0;i<sdm1.arg1.rgsPredictors.length;i++){
 				
 				//writing grid
 				if(arg1.getValueBoolean("bMESSPlots")==true){
-					cdfWriter.writeGrid(sdm1.mss1.rgdMap, sdm1.arg1.lstElevations.get(k), sdm1.arg1.lstTimes.get(k));
+					rgcWriters[i].writeGrid(sdm1.mss1.rgdMaps[i], sdm1.arg1.lstElevations.get(k), sdm1.arg1.lstTimes.get(k));
 				}
 				
-				//updating progress
-				System.out.println("Analyzing time " + (k+1) + " of " + sdm1.arg1.lstTimes.size() + "...");
-				
 				//loading result
-				rgsProportion = RasterOperations.findProportionBelowThreshold(sdm1.arg1.rgsPredictors[i], k, sdm1.mss1.rgdMap, arg1.getValueString("sLocation"), -20, sdm1.arg1.sPathGlobalTopography);
+				rgsProportion = RasterOperations.findProportionBelowThreshold(sdm1.arg1.rgsPredictors[i], k, sdm1.mss1.rgdMaps[i], arg1.getValueString("sLocation"), -20, sdm1.arg1.sPathGlobalTopography, sdm1.arg1.getGeometry());
 				
 				//saving result
-				lst1.add(rgsProportion[1][0]);
-				
-				//checking if static variable
-				if(!sdm1.arg1.rgsPredictors[0].contains("Momean")){
-					break;
-				}
+				lstResults.get(i).add(rgsProportion[1][0]);
 			}
 			
+			//writing combined grid
+			if(arg1.getValueBoolean("bMESSPlots")==true){
+				cdfWriter.writeGrid(sdm1.mss1.rgdMapCombined, sdm1.arg1.lstElevations.get(k), sdm1.arg1.lstTimes.get(k));
+			}
+			
+			//checking if static variable
+			if(!sdm1.arg1.rgsPredictors[0].contains("Momean")){
+				break;
+			}
+		}
+		
+		//looping through sets of predictors (models)
+		for(int i=0;i<sdm1.arg1.rgsPredictors.length;i++){
+			
+			//loading output list
+			lst1 = lstResults.get(i);
+			
 			//finding extremes
 			dMinAreaCoverage = 9999; dMaxProportion = -9999;
 			for(int k=0;k<lst1.size();k++){
@@ -122,21 +142,21 @@ public class AnalyzeSampleCoverageMain {
 			}
 			
 			//outputting results
-			//rgsProportion = new String[2][1];
-			//rgsProportion[0][0]="VARIABLE,MIN_AREA_NOT_COVERED,MAX_PROPORTION_BELOW_THRESHOLD";
-			//rgsProportion[1][0]=sdm1.arg1.lstSuffixes.get(i) + "," + dMinAreaCoverage + "," + dMaxProportion;
-			//FileIO.writeFile(rgsProportion, sdm1.arg1.sDirOutput + "/MESSProportion_" + sdm1.arg1.lstSuffixes.get(i) + ".csv", ",", 0, false);
 			rgsProportion = new String[1][1];
 			rgsProportion[0][0]=sdm1.arg1.rgsPredictors[i] + "," + dMinAreaCoverage + "," + dMaxProportion;
-			//FileIO.writeFile(rgsProportion, sdm1.arg1.sDirOutput + "/MESSProportion.csv", ",", 0, true);
 			FileIO.writeFile(rgsProportion, sdm1.arg1.sMESSPath, ",", 0, true);
 			
 			//closing writer
 			if(arg1.getValueBoolean("bMESSPlots")==true){
-				cdfWriter.closeWriter();
+				rgcWriters[i].closeWriter();
 			}
 		}
 		
+		//closing combined writer
+		if(arg1.getValueBoolean("bMESSPlots")==true){
+			cdfWriter.closeWriter();
+		}
+		
 		//terminating
 		//FileIO.writeCompletionFile(sdm1.arg1.sMESSPath);
 		arg1.printArguments(sdm1.arg1.sPathLog, true, "AnalyzeSampleCoverage");
@@ -0,0 +1,49 @@
+package edu.ucsf.sdm;
+
+import edu.ucsf.base.*;
+
+/**
+ * This code writes memory-mapped copies of the NetCDF rasters in a directory. Readers opened through NetCDF_IO.openReader use the
+ * memory-mapped copy of a raster when it is at least as new as the NetCDF file.
+ * @author jladau
+ */
+public class ConvertRastersMain {
+	public static void main(String rgsArgs[]){
+		
+		//arg1 = arguments
+		//sRasterDir = directory with rasters
+		//rgsFiles = list of files
+		//sPath = current NetCDF path
+		
+		Arguments arg1;
+		String sRasterDir; String sPath;
+		String rgsFiles[];
+		
+		//loading arguments
+		arg1 = new Arguments(rgsArgs);
+		sRasterDir = arg1.getValueString("sRasterDir");
+		
+		//looping through rasters
+		rgsFiles = FileIO.getFileList(sRasterDir);
+		for(int i=0;i<rgsFiles.length;i++){
+			
+			//checking if NetCDF file
+			if(!rgsFiles[i].endsWith(".nc")){
+				continue;
+			}
+			sPath = sRasterDir + "/" + rgsFiles[i];
+			
+			//checking if memory-mapped copy is current
+			if(NetCDF_IO_Mapped.isCurrent(sPath)){
+				continue;
+			}
+			
+			//writing memory-mapped copy
+			System.out.println("Converting " + rgsFiles[i] + "...");
+			NetCDF_IO_Mapped.writeMapped(sPath, NetCDF_IO_Mapped.findMappedPath(sPath));
+		}
+		
+		//terminating
+		System.out.println("Done.");
+	}
+}
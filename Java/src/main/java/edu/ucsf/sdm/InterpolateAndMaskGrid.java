@@ -14,11 +14,15 @@ public class InterpolateAndMaskGrid {
 
 	//mapLat = returns lookup latitude value for netcdf object for given latitude in initial reference grid
 	//mapLng = returns lookup longitude value for netcdf object for given longitude in initial reference grid
-	//ptl1 = point on land object, for masking
+	//ptl1 = point on land object, for masking (rasterized at resolution dMaskResolution)
+	//sMaskPath = path to mask (null if no mask)
+	//dMaskResolution = resolution at which mask is loaded
 	
 	private TreeMap<Double,Double> mapLat; 
 	private TreeMap<Double,Double> mapLng;
 	private PointOnLand ptl1 = null;
+	private String sMaskPath = null;
+	private double dMaskResolution = -9999;
 	
 	/**
 	 * Constructor.
@@ -48,10 +52,8 @@ public class InterpolateAndMaskGrid {
 		mapLng.put(-180.25,mapLng.get(179.75));
 		mapLng.put(180.25,mapLng.get(-179.75));
 		
-		//initializing mask if appropriate
-		if(sMaskPath!=null){
-			ptl1 = new PointOnLand(sMaskPath);
-		}
+		//saving mask path (mask is loaded for each output resolution)
+		this.sMaskPath = sMaskPath;
 		
 	}
 	
@@ -88,6 +90,12 @@ public class InterpolateAndMaskGrid {
 		//initializing values map
 		mapValue = new HashMap<String,Double>();
 		
+		//loading mask at output resolution if appropriate
+		if(sMaskPath!=null && dMaskResolution!=dResolution){
+			ptl1 = new PointOnLand(sMaskPath, new GridGeometry(dResolution));
+			dMaskResolution = dResolution;
+		}
+		
 		//looping through latitudes in output grid
 		dLat=90. + dResolution/2.;
 		for(int i=0;i<rgd1.length;i++){
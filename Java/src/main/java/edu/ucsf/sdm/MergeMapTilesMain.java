@@ -0,0 +1,132 @@
+package edu.ucsf.sdm;
+
+import java.util.ArrayList;
+
+import edu.ucsf.base.*;
+
+/**
+ * This code merges map tiles created by running DrawMapMain on the cluster with sMapPartitionMode=tiles into the NetCDF map
+ * @author jladau
+ */
+
+
+public class MergeMapTilesMain {
+	public static void main(String rgsArgs[]){
+
+		//arg1 = arguments
+		//sMapPath = path to map (tiles are at sMapPath_<task>.tile)
+		//iTotalTasks = total number of tasks
+		//rgtTiles = tiles
+		//geo1 = grid geometry
+		//lstVert = elevations for cdf writer (no duplicates)
+		//lstTime = times for cdf writer (no duplicates)
+		//cdfWriter = output cdf
+		//rgdGrid = current grid
+
+		Arguments arg1;
+		String sMapPath;
+		int iTotalTasks;
+		MapTile rgtTiles[];
+		GridGeometry geo1;
+		ArrayList<Double> lstVert; ArrayList<Double> lstTime;
+		NetCDF_IO cdfWriter;
+		double rgdGrid[][];
+
+		//loading arguments
+		arg1 = new Arguments(rgsArgs);
+		if(arg1.mapAllArguments.containsKey("sMapPath")){
+			sMapPath = arg1.getValueString("sMapPath");
+		}else{
+			sMapPath = arg1.getValueString("sDataPath").replace(".data",".nc");
+		}
+		iTotalTasks = arg1.getValueInt("iTotalTasks");
+
+		//waiting until all tiles are complete
+		FileIO.checkAndWaitForCompletion(sMapPath, 1, iTotalTasks);
+
+		//loading tiles
+		rgtTiles = new MapTile[iTotalTasks];
+		for(int i=0;i<iTotalTasks;i++){
+			rgtTiles[i] = MapTile.readTile(sMapPath + "_" + (i+1) + ".tile");
+			if(rgtTiles[i]==null){
+				return;
+			}
+			if(!isCompatible(rgtTiles[0], rgtTiles[i])){
+				System.out.println("ERROR: map tile " + sMapPath + "_" + (i+1) + ".tile does not match map tile " + sMapPath + "_1.tile.");
+				return;
+			}
+		}
+
+		//loading elevations and times
+		lstVert = new ArrayList<Double>();
+		lstTime = new ArrayList<Double>();
+		for(int k=0;k<rgtTiles[0].getLayerCount();k++){
+			if(!lstVert.contains(rgtTiles[0].getVert(k))){
+				lstVert.add(rgtTiles[0].getVert(k));
+			}
+			if(!lstTime.contains(rgtTiles[0].getTime(k))){
+				lstTime.add(rgtTiles[0].getTime(k));
+			}
+		}
+
+		//initializing writer
+		geo1 = rgtTiles[0].getGeometry();
+		cdfWriter = new NetCDF_IO(sMapPath,"writing");
+		cdfWriter.initializeWriter(geo1, "Meters", lstVert, "Month", lstTime, rgtTiles[0].getVarName(), "");
+
+		//outputting layers: cells outside of all tiles are left as -9999
+		for(int k=0;k<rgtTiles[0].getLayerCount();k++){
+			rgdGrid = geo1.initializeGrid();
+			for(int i=0;i<iTotalTasks;i++){
+				rgtTiles[i].readLayer(k, rgdGrid);
+			}
+			cdfWriter.writeGrid(rgdGrid, rgtTiles[0].getVert(k), rgtTiles[0].getTime(k));
+		}
+
+		//closing writer
+		cdfWriter.closeWriter();
+
+		//deleting tiles
+		for(int i=1;i<=iTotalTasks;i++){
+			FileIO.deleteFile(sMapPath + "_" + i + ".tile");
+			FileIO.deleteFile(sMapPath + "_" + i + ".complete");
+		}
+
+		//terminating
+		System.out.println("Done.");
+	}
+
+	/**
+	 * Checks whether tiles are from the same map: same grid, variable, and layers.
+	 * @param til1 First tile.
+	 * @param til2 Second tile.
+	 * @return True if tiles are from the same map.
+	 */
+	private static boolean isCompatible(MapTile til1, MapTile til2){
+
+		//rgd1 = extent of first grid
+		//rgd2 = extent of second grid
+
+		double rgd1[]; double rgd2[];
+
+		rgd1 = til1.getGeometry().getExtent();
+		rgd2 = til2.getGeometry().getExtent();
+		for(int i=0;i<4;i++){
+			if(rgd1[i]!=rgd2[i]){
+				return false;
+			}
+		}
+		if(til1.getGeometry().getCellSize()!=til2.getGeometry().getCellSize()){
+			return false;
+		}
+		if(!til1.getVarName().equals(til2.getVarName()) || til1.getLayerCount()!=til2.getLayerCount()){
+			return false;
+		}
+		for(int k=0;k<til1.getLayerCount();k++){
+			if(til1.getVert(k)!=til2.getVert(k) || til1.getTime(k)!=til2.getTime(k)){
+				return false;
+			}
+		}
+		return true;
+	}
+}
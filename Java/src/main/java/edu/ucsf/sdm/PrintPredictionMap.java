@@ -58,7 +58,7 @@ public abstract class PrintPredictionMap {
 		//initializing writers
 		//cdfWriter = new NetCDF_IO(sdm1.arg1.sDirOutput + "/" + sName + "_" + sdm1.arg1.lstSuffixes.get(iModelIndex) + ".nc","writing");
 		cdfWriter = new NetCDF_IO(sdm1.arg1.sMapPath,"writing");
-		cdfWriter.initializeWriter(0.5, "Meters", sdm1.arg1.lstElevationsCDF, "Month", sdm1.arg1.lstTimesCDF, sdm1.arg1.sResponse, "");
+		cdfWriter.initializeWriter(sdm1.arg1.getGeometry(), "Meters", sdm1.arg1.lstElevationsCDF, "Month", sdm1.arg1.lstTimesCDF, sdm1.arg1.sResponse, "");
 		
 		//outputting richness map
 		for(int i=0;i<sdm1.arg1.lstTimes.size();i++){
@@ -85,6 +85,12 @@ public abstract class PrintPredictionMap {
 		sdm1.mdl1.fitModel(sdm1.arg1.sResponse, sdm1.arg1.rgsPredictors);
 		sdm1.mdl1.loadCoefficients();
 		
+		//outputting tile if appropriate
+		if(sdm1.arg1.sMapPartitionMode.equals("tiles")){
+			printNonVectorMapTile(iTaskID, iTotalTasks);
+			return;
+		}
+		
 		//outputting maps
 		for(int i=0;i<sdm1.arg1.lstTimes.size();i++){
 			
@@ -102,4 +108,34 @@ public abstract class PrintPredictionMap {
 		}
 	}
 	
+	/**
+	 * Prints tile of non-vector map: task fills one contiguous tile of the map and writes it to a binary tile file (merged into the
+	 * map with MergeMapTilesMain).
+	 * @param iTaskID Task ID
+	 * @param iTotalTasks Total number of tasks
+	 */
+	private void printNonVectorMapTile(int iTaskID, int iTotalTasks){
+		
+		//til1 = tile
+		
+		MapTile til1;
+		
+		//initializing writer
+		til1 = MapTile.findTile(sdm1.arg1.getGeometry(), sdm1.arg1.getRegion(), iTaskID, iTotalTasks);
+		til1.initializeWriter(sdm1.arg1.sMapPath + "_" + iTaskID + ".tile", sdm1.arg1.sResponse, sdm1.arg1.lstElevations, sdm1.arg1.lstTimes);
+		
+		//outputting maps
+		for(int i=0;i<sdm1.arg1.lstTimes.size();i++){
+			
+			//loading predictions
+			sdm1.prd1.loadMapTile(i, iTaskID, til1);
+			
+			//outputting predictions
+			til1.writeLayer(sdm1.prd1.rgdMap);
+		}
+		
+		//closing writer
+		til1.closeWriter();
+		FileIO.writeCompletionFile(sdm1.arg1.sMapPath + "_" + iTaskID);
+	}
 }
\ No newline at end of file
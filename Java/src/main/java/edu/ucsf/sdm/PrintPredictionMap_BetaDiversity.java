@@ -61,10 +61,10 @@ public class PrintPredictionMap_BetaDiversity extends PrintPredictionMap{
 				
 		//initializing writers
 		cdfWriterX = new NetCDF_IO(sdm1.arg1.sDirOutput + "/BetaDiversity_VectorX_" + sdm1.arg1.sResponse + ".nc","writing");
-		cdfWriterX.initializeWriter(0.5, "Meters", sdm1.arg1.lstElevationsCDF, "Month", sdm1.arg1.lstTimesCDF, sdm1.arg1.sResponse, "");
+		cdfWriterX.initializeWriter(sdm1.arg1.getGeometry(), "Meters", sdm1.arg1.lstElevationsCDF, "Month", sdm1.arg1.lstTimesCDF, sdm1.arg1.sResponse, "");
 		
 		cdfWriterY = new NetCDF_IO(sdm1.arg1.sDirOutput + "/BetaDiversity_VectorY_" + sdm1.arg1.sResponse + ".nc","writing");
-		cdfWriterY.initializeWriter(0.5, "Meters", sdm1.arg1.lstElevationsCDF, "Month", sdm1.arg1.lstTimesCDF, sdm1.arg1.sResponse, "");
+		cdfWriterY.initializeWriter(sdm1.arg1.getGeometry(), "Meters", sdm1.arg1.lstElevationsCDF, "Month", sdm1.arg1.lstTimesCDF, sdm1.arg1.sResponse, "");
 		
 		//outputting maps
 		for(int i=0;i<sdm1.arg1.lstTimes.size();i++){
@@ -91,6 +91,12 @@ public class PrintPredictionMap_BetaDiversity extends PrintPredictionMap{
 		sdm1.mdl1.fitModel(sdm1.arg1.sResponse, sdm1.arg1.rgsPredictors);
 		sdm1.mdl1.loadCoefficients();
 		
+		//outputting tiles if appropriate
+		if(sdm1.arg1.sMapPartitionMode.equals("tiles")){
+			printVectorMapTile(iTaskID, iTotalTasks);
+			return;
+		}
+		
 		//outputting maps
 		for(int i=0;i<sdm1.arg1.lstTimes.size();i++){
 			
@@ -107,4 +113,44 @@ public class PrintPredictionMap_BetaDiversity extends PrintPredictionMap{
 			}
 		}
 	}
+	
+	/**
+	 * Prints tiles of vector map: task fills one contiguous tile of the x and y maps and writes them to binary tile files (merged into
+	 * the maps with MergeMapTilesMain).
+	 * @param iTaskID Task ID
+	 * @param iTotalTasks Total number of tasks
+	 */
+	private void printVectorMapTile(int iTaskID, int iTotalTasks){
+		
+		//tilX = tile for X
+		//tilY = tile for Y
+		//sPathX = path to X map
+		//sPathY = path to Y map
+		
+		MapTile tilX; MapTile tilY;
+		String sPathX; String sPathY;
+		
+		//initializing writers
+		sPathX = sdm1.arg1.sDirOutput + "/BetaDiversity_VectorX_" + sdm1.arg1.sResponse;
+		sPathY = sdm1.arg1.sDirOutput + "/BetaDiversity_VectorY_" + sdm1.arg1.sResponse;
+		tilX = MapTile.findTile(sdm1.arg1.getGeometry(), sdm1.arg1.getRegion(), iTaskID, iTotalTasks);
+		tilX.initializeWriter(sPathX + ".nc_" + iTaskID + ".tile", sdm1.arg1.sResponse, sdm1.arg1.lstElevations, sdm1.arg1.lstTimes);
+		tilY = MapTile.findTile(sdm1.arg1.getGeometry(), sdm1.arg1.getRegion(), iTaskID, iTotalTasks);
+		tilY.initializeWriter(sPathY + ".nc_" + iTaskID + ".tile", sdm1.arg1.sResponse, sdm1.arg1.lstElevations, sdm1.arg1.lstTimes);
+		
+		//outputting maps
+		for(int i=0;i<sdm1.arg1.lstTimes.size();i++){
+			
+			//loading predictions
+			sdm1.prd1.loadMapTile(i, iTaskID, tilX);
+			tilX.writeLayer(((SDMPrediction_BetaDiversity) sdm1.prd1).rgdMapX);
+			tilY.writeLayer(((SDMPrediction_BetaDiversity) sdm1.prd1).rgdMapY);
+		}
+		
+		//closing writers
+		tilX.closeWriter();
+		tilY.closeWriter();
+		FileIO.writeCompletionFile(sPathX + ".nc_" + iTaskID);
+		FileIO.writeCompletionFile(sPathY + ".nc_" + iTaskID);
+	}
 }
\ No newline at end of file
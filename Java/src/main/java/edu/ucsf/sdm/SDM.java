@@ -28,6 +28,8 @@ public abstract class SDM {
 	
 	public abstract void loadModel();
 	
+	public abstract SDMModel createModel();
+	
 	public abstract void loadMESS();
 	
 	public abstract void loadPredictions();
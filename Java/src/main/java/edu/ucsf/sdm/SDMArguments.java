@@ -3,6 +3,8 @@ package edu.ucsf.sdm;
 import java.util.ArrayList;
 
 import edu.ucsf.base.FileIO;
+import edu.ucsf.base.GridGeometry;
+import edu.ucsf.base.RasterRegion;
 
 /**
  * Community observation data for beta diversity analysis
@@ -31,6 +33,22 @@ public abstract class SDMArguments {
 	//lstTime = list of time values
 	//rgsFiles = array of files
 	//dMESSCutoff = maximum tolerable proportion of area with mess score less than -20
+	//sCrossValidationMode = cross validation mode: "refit" (model refit for each left out observation) or "closed-form" (alpha-diversity: leave-one-out predictions from residuals and leverages of full fit; beta-diversity: leave-pair-out fits from full cross products downdated by rows involving the left out samples)
+	//sSelectModelEngine = model selection engine: "refit" (each candidate model fit from data) or "gram" (candidate models fit from cross-product matrix computed once)
+	//sSubsetOrder = order in which candidate subsets are enumerated in model selection: "lexicographic" or "revolving-door" (consecutive subsets differ by exchanging one variable)
+	//sSearchMode = model selection search: "exhaustive" (all subsets checked) or "branch-and-bound" (subsets that cannot improve on best models pruned using bounds on RSS; alpha-diversity only)
+	//iThreads = number of threads for model selection (exhaustive search; subsets are divided among threads in contiguous ranges of ranks) and map generation (rows of maps are divided among threads in bands)
+	//sPartitionMode = partition of candidate subsets among cluster tasks: "modulo" (every iTotalTasks-th subset) or "contiguous" (each task enumerates only one contiguous range of subset ranks)
+	//sMapPartitionMode = partition of map cells among cluster tasks: "modulo" (every iTotalTasks-th cell, written as text lines) or "tiles" (each task fills one contiguous tile of rows and columns, written as a binary tile file and merged with MergeMapTilesMain)
+	//dCheckpointMinutes = minutes between model selection checkpoints (-9999 if checkpoints are not written); a restarted run resumes from its checkpoint (branch-and-bound search is only checkpointed after each number of variables)
+	//dRasterCacheMB = memory budget in megabytes for in-memory cache of predictor raster slabs (-9999 if raster values are read from file for each lookup)
+	//iMaxOpenRasters = maximum number of raster readers held open at once (idle readers closed in least-recently-used order; -9999 for default)
+	//sPathMask = mask for study region: polygon file (.shp.txt) or raster (.nc); maps, MESS maps and raster ranges only consider cells in region (null for whole globe)
+	//rgdRegionBounds = bounding box for study region: latmin, latmax, lonmin, lonmax (null for whole globe)
+	//rgn1 = study region (loaded from mask and bounding box when first needed)
+	//dGridCellSize = cell size in degrees of output grids (maps and MESS maps)
+	//rgdGridExtent = extent of output grids: latmin, latmax, lonmin, lonmax (null for whole globe)
+	//geo1 = geometry of output grids (loaded from cell size and extent when first needed)
 	
 	public String[] rgsCandidatePredictors;
 	public int iMaxVars;
@@ -60,6 +78,22 @@ public abstract class SDMArguments {
 	public String sMapPath;
 	public String sCrossvalidationPath;
 	public double dMESSCutoff = 0.005;
+	public String sCrossValidationMode = "refit";
+	public String sSelectModelEngine = "refit";
+	public String sSubsetOrder = "lexicographic";
+	public String sSearchMode = "exhaustive";
+	public int iThreads = 1;
+	public String sPartitionMode = "modulo";
+	public String sMapPartitionMode = "modulo";
+	public double dCheckpointMinutes = -9999;
+	public double dRasterCacheMB = -9999;
+	public int iMaxOpenRasters = -9999;
+	public String sPathMask = null;
+	public double[] rgdRegionBounds = null;
+	private RasterRegion rgn1 = null;
+	public double dGridCellSize = 0.5;
+	public double[] rgdGridExtent = null;
+	private GridGeometry geo1 = null;
 	
 	/**
 	 * Constructor
@@ -100,6 +134,42 @@ public abstract class SDMArguments {
 			sLocation = sValue;
 		}else if(sName.equals("dMESSCutoff")){
 			dMESSCutoff = Double.parseDouble(sValue);
+		}else if(sName.equals("sCrossValidationMode")){
+			sCrossValidationMode = sValue;
+		}else if(sName.equals("sSelectModelEngine")){
+			sSelectModelEngine = sValue;
+		}else if(sName.equals("sSubsetOrder")){
+			sSubsetOrder = sValue;
+		}else if(sName.equals("sSearchMode")){
+			sSearchMode = sValue;
+		}else if(sName.equals("iThreads")){
+			iThreads = Integer.parseInt(sValue);
+		}else if(sName.equals("sPartitionMode")){
+			sPartitionMode = sValue;
+		}else if(sName.equals("sMapPartitionMode")){
+			sMapPartitionMode = sValue;
+		}else if(sName.equals("dCheckpointMinutes")){
+			dCheckpointMinutes = Double.parseDouble(sValue);
+		}else if(sName.equals("dRasterCacheMB")){
+			dRasterCacheMB = Double.parseDouble(sValue);
+		}else if(sName.equals("iMaxOpenRasters")){
+			iMaxOpenRasters = Integer.parseInt(sValue);
+		}else if(sName.equals("sPathMask")){
+			sPathMask = sValue;
+		}else if(sName.equals("sRegionBounds")){
+			rgs1 = sValue.split(",");
+			rgdRegionBounds = new double[4];
+			for(int i=0;i<4;i++){
+				rgdRegionBounds[i] = Double.parseDouble(rgs1[i]);
+			}
+		}else if(sName.equals("dGridCellSize")){
+			dGridCellSize = Double.parseDouble(sValue);
+		}else if(sName.equals("sGridExtent")){
+			rgs1 = sValue.split(",");
+			rgdGridExtent = new double[4];
+			for(int i=0;i<4;i++){
+				rgdGridExtent[i] = Double.parseDouble(rgs1[i]);
+			}
 		}else if(sName.equals("mess summary path") || sName.equals("sMESSSummaryPath")){
 			sMESSPath = sValue;
 		}else if(sName.equals("maximum number of covariates") || sName.equals("iMaximumCovariates")){
@@ -162,6 +232,36 @@ public abstract class SDMArguments {
 		}	
 	}
 	
+	/**
+	 * Gets study region (cells within mask and bounding box).
+	 * @return Study region; null if neither mask nor bounding box is given.
+	 */
+	public synchronized RasterRegion getRegion(){
+		if(rgn1==null){
+			if(sPathMask!=null){
+				rgn1 = new RasterRegion(getGeometry(), sPathMask, rgdRegionBounds);
+			}else if(rgdRegionBounds!=null){
+				rgn1 = new RasterRegion(getGeometry(), rgdRegionBounds);
+			}
+		}
+		return rgn1;
+	}
+	
+	/**
+	 * Gets geometry of output grids.
+	 * @return Grid geometry.
+	 */
+	public synchronized GridGeometry getGeometry(){
+		if(geo1==null){
+			if(rgdGridExtent==null){
+				geo1 = new GridGeometry(dGridCellSize);
+			}else{
+				geo1 = new GridGeometry(rgdGridExtent[0], rgdGridExtent[1], rgdGridExtent[2], rgdGridExtent[3], dGridCellSize);
+			}
+		}
+		return geo1;
+	}
+	
 	private void loadPredictors(String sName, String sValue){
 		
 		//rgs1 = select model file
@@ -1,24 +1,44 @@
 package edu.ucsf.sdm;
 
+import edu.ucsf.base.RasterIterator;
+import edu.ucsf.base.RasterReaderPool;
 import edu.ucsf.base.SphericalGeometry;
 
 public abstract class SDMMESS {
-
+	
 	/** draws diversity map using the model fit in the given AssembleFirst object */
 	
 	//rgdMap = map
+	//rgdMaps = maps for all predictors (in order of arguments.rgsPredictors) from loadMESSMaps
+	//rgdMapCombined = combined map (minimum across predictors; -9999 if any predictor is missing) from loadMESSMaps
 	//sph1 = spherical geometry object
+	//arg1 = arguments object
+	//obs1 = observations object
+	//rgdMinimum = minimum observed value of each predictor (in order of arguments.rgsPredictors)
+	//rgdMaximum = maximum observed value of each predictor
+	//rgdRange = observed range of each predictor
 	
 	public double rgdMap[][];
+	public double rgdMaps[][][];
+	public double rgdMapCombined[][];
 	public SphericalGeometry sph1;
+	private SDMArguments arg1;
+	private SDMObservationalData obs1;
+	private double rgdMinimum[] = null;
+	private double rgdMaximum[] = null;
+	private double rgdRange[] = null;
 	
 	/**
 	 * Constructor
 	 */
-	public SDMMESS(){
-			
+	public SDMMESS(SDMArguments arg1, SDMObservationalData obs1){
+		
 		//initializing spherical geometry object
 		sph1 = new SphericalGeometry();
+		
+		//saving arguments and data
+		this.arg1 = arg1;
+		this.obs1 = obs1;
 	}
 	
 	/**
@@ -27,4 +47,116 @@ public abstract class SDMMESS {
 	 * @param iVariable Index of variable in arguments.rgsPredictors array
 	 */
 	public abstract void loadMESSMap(int iFixedPredictorsIndex, int iVariable);
+	
+	/**
+	 * Finds MESS value of variable at location
+	 * @param rit1 RasterIterator giving current location in raster
+	 * @param iVariable Index of variable in arguments.rgsPredictors array
+	 * @return MESS value (in percent of observed range); -9999 if value is missing
+	 */
+	protected abstract double findMESS(RasterIterator rit1, int iVariable);
+	
+	/**
+	 * Loads mess maps for all predictors and combined mess map in one pass over the cells of the study region: all predictors are
+	 * read at each cell in turn (from the in-memory slab cache if it is initialized).
+	 * @param iFixedPredictorsIndex Index of fixed predictors currently under consideration
+	 */
+	public void loadMESSMaps(int iFixedPredictorsIndex){
+		
+		//rit1 = RasterIterator object
+		//dMESS = current mess value
+		//dCombined = current combined mess value
+		//bMissing = flag for whether a predictor is missing at current cell
+		
+		RasterIterator rit1;
+		double dMESS; double dCombined;
+		boolean bMissing;
+		
+		//initializing maps (cells outside of study region are left as -9999)
+		rgdMaps = new double[arg1.rgsPredictors.length][][];
+		for(int i=0;i<rgdMaps.length;i++){
+			rgdMaps[i] = arg1.getGeometry().initializeGrid();
+		}
+		rgdMapCombined = arg1.getGeometry().initializeGrid();
+		
+		//initializing iterator
+		rit1 = new RasterIterator(arg1.lstVert.get(iFixedPredictorsIndex), arg1.lstTime.get(iFixedPredictorsIndex), "NA", arg1.getGeometry(), arg1.getRegion());
+		
+		//looping through locations (holding readers for the pass)
+		RasterReaderPool.getDefault().holdReaders();
+		try{
+			while(rit1.hasNext()){
+				
+				//updating iterator
+				rit1.next();
+				
+				//saving MESS values
+				dCombined = 9999999999999.;
+				bMissing = rgdMaps.length==0;
+				for(int i=0;i<rgdMaps.length;i++){
+					dMESS = findMESS(rit1, i);
+					rgdMaps[i][rit1.iRow][rit1.iCol] = dMESS;
+					if(dMESS==-9999){
+						bMissing = true;
+					}else if(dMESS<dCombined){
+						dCombined = dMESS;
+					}
+				}
+				if(bMissing==false){
+					rgdMapCombined[rit1.iRow][rit1.iCol] = dCombined;
+				}
+			}
+		}finally{
+			RasterReaderPool.getDefault().releaseReaders();
+		}
+	}
+	
+	/**
+	 * Finds MESS value of variable value relative to observed range
+	 * @param dValue Variable value
+	 * @param iVariable Index of variable in arguments.rgsPredictors array
+	 * @return MESS value (fraction of observed range): 0 within observed range, negative outside of it
+	 */
+	protected double findMESS(double dValue, int iVariable){
+		
+		//loading ranges if necessary
+		if(rgdMinimum==null){
+			loadRanges();
+		}
+		
+		//finding mess value
+		if(dValue<rgdMinimum[iVariable]){
+			return (dValue - rgdMinimum[iVariable])/rgdRange[iVariable];
+		}else if(dValue>rgdMaximum[iVariable]){
+			return (rgdMaximum[iVariable] - dValue)/rgdRange[iVariable];
+		}else{
+			return 0;
+		}
+	}
+	
+	/**
+	 * Loads observed minimum, maximum, and range of each predictor (observed ranges are computed once).
+	 */
+	private void loadRanges(){
+		
+		//sVar = current variable
+		
+		String sVar;
+		
+		//loading observed ranges if necessary
+		if(obs1.mapMinimum==null){
+			obs1.loadRanges();
+		}
+		
+		//loading arrays
+		rgdMinimum = new double[arg1.rgsPredictors.length];
+		rgdMaximum = new double[arg1.rgsPredictors.length];
+		rgdRange = new double[arg1.rgsPredictors.length];
+		for(int i=0;i<arg1.rgsPredictors.length;i++){
+			sVar = arg1.rgsPredictors[i];
+			rgdMinimum[i] = obs1.mapMinimum.get(sVar);
+			rgdMaximum[i] = obs1.mapMaximum.get(sVar);
+			rgdRange[i] = obs1.mapRange.get(sVar);
+		}
+	}
 }
\ No newline at end of file
@@ -21,7 +21,7 @@ public class SDMMESS_AlphaDiversity extends SDMMESS{
 	public SDMMESS_AlphaDiversity(SDMObservationalData_AlphaDiversity obs1, SDMArguments_AlphaDiversity arg1, SDMRasterData_AlphaDiversity ras1){
 		
 		//calling super
-		super();
+		super(arg1, obs1);
 		
 		//saving arguments and data
 		this.arg1 = arg1;
@@ -39,11 +39,11 @@ public class SDMMESS_AlphaDiversity extends SDMMESS{
 		
 		RasterIterator rit1;
 		
-		//initializing map
-		rgdMap = new double[360][720];
+		//initializing map (cells outside of study region are left as -9999)
+		rgdMap = arg1.getGeometry().initializeGrid();
 		
 		//initializing iterator
-		rit1 = new RasterIterator(arg1.lstVert.get(iFixedPredictorsIndex), arg1.lstTime.get(iFixedPredictorsIndex), arg1.rgsPredictors[iVariable]);
+		rit1 = new RasterIterator(arg1.lstVert.get(iFixedPredictorsIndex), arg1.lstTime.get(iFixedPredictorsIndex), arg1.rgsPredictors[iVariable], arg1.getGeometry(), arg1.getRegion());
 		
 		//looping through locations
 		while(rit1.hasNext()){
@@ -52,7 +52,7 @@ public class SDMMESS_AlphaDiversity extends SDMMESS{
 			rit1.next();
 			
 			//saving MESS value
-			rgdMap[rit1.iRow][rit1.iCol]=findMESSAlpha(rit1);
+			rgdMap[rit1.iRow][rit1.iCol]=findMESS(rit1, iVariable);
 		}
 	}
 	
@@ -81,8 +81,10 @@ public class SDMMESS_AlphaDiversity extends SDMMESS{
 		//initializing output
 		dOut = 9999999999999.;
 		
-		//loading observed ranges
-		obs1.loadRanges();
+		//loading observed ranges if necessary (ranges are computed once)
+		if(obs1.mapMinimum==null){
+			obs1.loadRanges();
+		}
 		
 		//looping through variables
 		rgs1 = sRasterValue.split(",");
@@ -117,20 +119,20 @@ public class SDMMESS_AlphaDiversity extends SDMMESS{
 	}
 	
 	/**
-	 * Finds MESS value for local spatial turnover mapping
-	 * @param rit1 RasterIterator giving current (focal) location in raster
+	 * Finds MESS value of variable at location
+	 * @param rit1 RasterIterator giving current location in raster
+	 * @param iVariable Index of variable in arguments.rgsPredictors array
 	 * @return MESS value
 	 */
-	private double findMESSAlpha(RasterIterator rit1){
+	protected double findMESS(RasterIterator rit1, int iVariable){
 		
 		//dValue = current value
-		//dMESS = current mess value
 		
-		double dValue; double dMESS; 
+		double dValue; 
 		
 		//loading value
 		try{	
-			dValue = ras1.getRasterValue(rit1.getRasterLocation(), rit1.sVar);
+			dValue = ras1.getRasterValue(rit1.getRasterLocation(), arg1.rgsPredictors[iVariable]);
 		}catch(Exception e){
 			dValue=-9999;
 		}
@@ -140,17 +142,7 @@ public class SDMMESS_AlphaDiversity extends SDMMESS{
 			return -9999;
 		}
 		
-		//checking mess value
-		if(dValue<obs1.mapMinimum.get(rit1.sVar)){
-			dMESS = (dValue - obs1.mapMinimum.get(rit1.sVar))/obs1.mapRange.get(rit1.sVar);
-		}else if(dValue>obs1.mapMaximum.get(rit1.sVar)){
-			dMESS = (obs1.mapMaximum.get(rit1.sVar) - dValue)/obs1.mapRange.get(rit1.sVar);
-		}else{
-			dMESS = 0;
-		}
-		
 		//outputting result
-		dMESS*=100.;
-		return dMESS;
+		return findMESS(dValue, iVariable)*100.;
 	}
 }
\ No newline at end of file
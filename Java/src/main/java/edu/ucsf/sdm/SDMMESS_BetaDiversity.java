@@ -22,7 +22,7 @@ public class SDMMESS_BetaDiversity extends SDMMESS{
 	public SDMMESS_BetaDiversity(SDMObservationalData_BetaDiversity obs1, SDMArguments_BetaDiversity arg1, SDMRasterData_BetaDiversity ras1){
 		
 		//calling super
-		super();
+		super(arg1, obs1);
 		
 		//saving arguments and data
 		this.arg1 = arg1;
@@ -41,11 +41,11 @@ public class SDMMESS_BetaDiversity extends SDMMESS{
 		
 		RasterIterator rit1;
 		
-		//initializing map
-		rgdMap = new double[360][720];
+		//initializing map (cells outside of study region are left as -9999)
+		rgdMap = arg1.getGeometry().initializeGrid();
 		
 		//initializing iterator
-		rit1 = new RasterIterator(arg1.lstVert.get(iFixedPredictorsIndex), arg1.lstTime.get(iFixedPredictorsIndex), arg1.rgsPredictors[iVariable]);
+		rit1 = new RasterIterator(arg1.lstVert.get(iFixedPredictorsIndex), arg1.lstTime.get(iFixedPredictorsIndex), arg1.rgsPredictors[iVariable], arg1.getGeometry(), arg1.getRegion());
 		
 		//looping through locations
 		while(rit1.hasNext()){
@@ -54,24 +54,37 @@ public class SDMMESS_BetaDiversity extends SDMMESS{
 			rit1.next();
 			
 			//saving MESS value
-			if(arg1.sMapType.equals("local turnover") || arg1.sMapType.equals("vector")){
-				rgdMap[rit1.iRow][rit1.iCol]=findMESSLocal(rit1);
-			}else if(arg1.sMapType.equals("community clustering")){
-				rgdMap[rit1.iRow][rit1.iCol]=findMESSClassification(rit1);
-			}else if(arg1.sMapType.equals("community novelty")){
-				rgdMap[rit1.iRow][rit1.iCol]=findMESSNovelty(rit1);
-			}
+			rgdMap[rit1.iRow][rit1.iCol]=findMESS(rit1, iVariable);
 		}
 		
 	}
 	
+	/**
+	 * Finds MESS value of variable at location for current map type
+	 * @param rit1 RasterIterator giving current (focal) location in raster
+	 * @param iVariable Index of variable in arguments.rgsPredictors array
+	 * @return MESS value
+	 */
+	protected double findMESS(RasterIterator rit1, int iVariable){
+		if(arg1.sMapType.equals("local turnover") || arg1.sMapType.equals("vector")){
+			return findMESSLocal(rit1, iVariable);
+		}else if(arg1.sMapType.equals("community clustering")){
+			return findMESSClassification(rit1, iVariable);
+		}else if(arg1.sMapType.equals("community novelty")){
+			return findMESSNovelty(rit1, iVariable);
+		}else{
+			return -9999;
+		}
+	}
+	
 	
 	/**
 	 * Finds MESS value for local spatial turnover mapping
 	 * @param rit1 RasterIterator giving current (focal) location in raster
+	 * @param iVariable Index of variable in arguments.rgsPredictors array
 	 * @return MESS value
 	 */
-	private double findMESSLocal(RasterIterator rit1){
+	private double findMESSLocal(RasterIterator rit1, int iVariable){
 		
 		//rgd1 = current latitude and longitude
 		//dValue = current value
@@ -94,7 +107,7 @@ public class SDMMESS_BetaDiversity extends SDMMESS{
 			rsl1 = new RasterLocation(rgd1[0],rgd1[1],rit1.dVert,rit1.dTime,-9999,-9999,null);
 			
 			//loading value
-			dValue = ras1.getRasterValue(rit1.getRasterLocation(), rsl1, rit1.sVar);
+			dValue = ras1.getRasterValue(rit1.getRasterLocation(), rsl1, arg1.rgsPredictors[iVariable]);
 			
 			//checking for error
 			if(dValue==-9999){
@@ -102,13 +115,7 @@ public class SDMMESS_BetaDiversity extends SDMMESS{
 			}
 			
 			//checking mess value
-			if(dValue<obs1.mapMinimum.get(rit1.sVar)){
-				dMESS = (dValue - obs1.mapMinimum.get(rit1.sVar))/obs1.mapRange.get(rit1.sVar);
-			}else if(dValue>obs1.mapMaximum.get(rit1.sVar)){
-				dMESS = (obs1.mapMaximum.get(rit1.sVar) - dValue)/obs1.mapRange.get(rit1.sVar);
-			}else{
-				dMESS = 0;
-			}
+			dMESS = findMESS(dValue, iVariable);
 			if(dMESS<dOut || dOut==-9999){
 				dOut = dMESS;
 			}
@@ -124,9 +131,10 @@ public class SDMMESS_BetaDiversity extends SDMMESS{
 	/**
 	 * Finds MESS value for biome classification mapping
 	 * @param rit1 RasterIterator giving current (focal) location in raster
+	 * @param iVariable Index of variable in arguments.rgsPredictors array
 	 * @return MESS value
 	 */
-	private double findMESSClassification(RasterIterator rit1){
+	private double findMESSClassification(RasterIterator rit1, int iVariable){
 
 		//dValue = current value
 		//dMESS = current mess value
@@ -141,14 +149,14 @@ public class SDMMESS_BetaDiversity extends SDMMESS{
 		
 		//initializing minimum and maximum value
 		rgd1 = new double[2];
-		rgd1[0]=ras1.findMin(rit1.dVert, rit1.dTime, rit1.sVar, arg1);
-		rgd1[1]=ras1.findMax(rit1.dVert, rit1.dTime, rit1.sVar, arg1);
+		rgd1[0]=ras1.findMin(rit1.dVert, rit1.dTime, arg1.rgsPredictors[iVariable], arg1);
+		rgd1[1]=ras1.findMax(rit1.dVert, rit1.dTime, arg1.rgsPredictors[iVariable], arg1);
 		
 		//looping through minimum and maximum
 		for(int i=0;i<2;i++){
 			
 			//loading value
-			dValue = ras1.getRasterValue(rit1.getRasterLocation(), rgd1[i], rit1.sVar);
+			dValue = ras1.getRasterValue(rit1.getRasterLocation(), rgd1[i], arg1.rgsPredictors[iVariable]);
 			
 			//checking for error
 			if(dValue==-9999){
@@ -156,13 +164,7 @@ public class SDMMESS_BetaDiversity extends SDMMESS{
 			}
 			
 			//checking mess value
-			if(dValue<obs1.mapMinimum.get(rit1.sVar)){
-				dMESS = (dValue - obs1.mapMinimum.get(rit1.sVar))/obs1.mapRange.get(rit1.sVar);
-			}else if(dValue>obs1.mapMaximum.get(rit1.sVar)){
-				dMESS = (obs1.mapMaximum.get(rit1.sVar) - dValue)/obs1.mapRange.get(rit1.sVar);
-			}else{
-				dMESS = 0;
-			}
+			dMESS = findMESS(dValue, iVariable);
 			if(dMESS<dOut || dOut==-9999){
 				dOut = dMESS;
 			}
@@ -178,10 +180,11 @@ public class SDMMESS_BetaDiversity extends SDMMESS{
 	/**
 	 * Finds MESS value for biome classification mapping
 	 * @param rit1 RasterIterator giving current (focal) location in raster
+	 * @param iVariable Index of variable in arguments.rgsPredictors array
 	 * @return MESS value
 	 */
 	@Deprecated
-	private double findMESSNovelty(RasterIterator rit1){
+	private double findMESSNovelty(RasterIterator rit1, int iVariable){
 	
 		//dValue = current value
 		//dMESS = current mess value
@@ -196,14 +199,14 @@ public class SDMMESS_BetaDiversity extends SDMMESS{
 		
 		//initializing minimum and maximum value
 		rgd1 = new double[2];
-		rgd1[0]=obs1.mapSingleLocationMinimum.get(rit1.sVar.split("_")[0]);
-		rgd1[1]=obs1.mapSingleLocationMaximum.get(rit1.sVar.split("_")[0]);
+		rgd1[0]=obs1.mapSingleLocationMinimum.get(arg1.rgsPredictors[iVariable].split("_")[0]);
+		rgd1[1]=obs1.mapSingleLocationMaximum.get(arg1.rgsPredictors[iVariable].split("_")[0]);
 		
 		//looping through minimum and maximum
 		for(int i=0;i<2;i++){
 			
 			//loading value
-			dValue = ras1.getRasterValue(rit1.getRasterLocation(), rgd1[i], rit1.sVar);
+			dValue = ras1.getRasterValue(rit1.getRasterLocation(), rgd1[i], arg1.rgsPredictors[iVariable]);
 			
 			//checking for error
 			if(dValue==-9999){
@@ -211,13 +214,7 @@ public class SDMMESS_BetaDiversity extends SDMMESS{
 			}
 			
 			//checking mess value
-			if(dValue<obs1.mapMinimum.get(rit1.sVar)){
-				dMESS = (dValue - obs1.mapMinimum.get(rit1.sVar))/obs1.mapRange.get(rit1.sVar);
-			}else if(dValue>obs1.mapMaximum.get(rit1.sVar)){
-				dMESS = (obs1.mapMaximum.get(rit1.sVar) - dValue)/obs1.mapRange.get(rit1.sVar);
-			}else{
-				dMESS = 0;
-			}
+			dMESS = findMESS(dValue, iVariable);
 			if(dMESS<dOut || dOut==-9999){
 				dOut = dMESS;
 			}
@@ -12,9 +12,13 @@ public abstract class SDMModel extends FitLM_Apache{
 
 	//dPRESS = press statistic
 	//lstPredictions = observed and predicted values
+	//rgiRasterColumn = column in predictor matrix for each raster variable (null until loaded after each fit; volatile so that columns loaded by one thread are seen by others)
+	//thlBuffer = buffers for raster values (index 0) and row of predictor matrix (index 1) for each thread
 	
 	public double dPRESS;
 	public ArrayList<String> lstPredictions;
+	private volatile int rgiRasterColumn[] = null;
+	private ThreadLocal<double[][]> thlBuffer = new ThreadLocal<double[][]>();
 	
 	/**
 	 * Constructor
@@ -38,6 +42,76 @@ public abstract class SDMModel extends FitLM_Apache{
 		return rgs1;
 	}
 	
+	/**
+	 * Fits model with given response variable and predictors (columns for raster variables are then reloaded when needed).
+	 * @param sResponse Response variable name.
+	 * @param rgsPredictors Predictor names.
+	 */
+	public void fitModel(String sResponse, String[] rgsPredictors){
+		super.fitModel(sResponse, rgsPredictors);
+		rgiRasterColumn = null;
+	}
+	
+	/**
+	 * Loads columns in predictor matrix for raster variables for current fit (called before map cells are filled by several threads).
+	 * @param ras1 Raster data object
+	 */
+	public void loadRasterColumns(SDMRasterData ras1){
+		rgiRasterColumn = findPredictorColumns(ras1.getVariables());
+	}
+	
+	/**
+	 * Gets buffer for raster values for the current thread (reused between predictions).
+	 * @param ras1 Raster data object
+	 * @return Buffer with one entry per raster variable
+	 */
+	protected double[] getRasterBuffer(SDMRasterData ras1){
+		return getBuffer(ras1)[0];
+	}
+	
+	/**
+	 * Finds prediction from raster values: raster variables are resolved to predictor columns once per fit and the prediction is a
+	 * dot product with the coefficients, so no strings are built or parsed.
+	 * @param ras1 Raster data object
+	 * @param rgdValues Raster values (in order of raster variable numbers)
+	 * @return Predicted value
+	 */
+	protected double findPrediction(SDMRasterData ras1, double rgdValues[]){
+		
+		//rgi1 = column in predictor matrix for each raster variable
+		
+		int rgi1[];
+		
+		//loading columns (if they were not loaded with loadRasterColumns)
+		rgi1 = rgiRasterColumn;
+		if(rgi1==null){
+			rgi1 = findPredictorColumns(ras1.getVariables());
+			rgiRasterColumn = rgi1;
+		}
+		
+		//returning prediction
+		return findPrediction(rgdValues, rgi1, getBuffer(ras1)[1]);
+	}
+	
+	/**
+	 * Gets buffers for the current thread, initializing them if necessary.
+	 * @param ras1 Raster data object
+	 * @return Buffers for raster values (index 0) and row of predictor matrix (index 1)
+	 */
+	private double[][] getBuffer(SDMRasterData ras1){
+		
+		//rgd1 = output
+		
+		double rgd1[][];
+		
+		rgd1 = thlBuffer.get();
+		if(rgd1==null || rgd1[0].length!=ras1.mapVar.size() || rgd1[1].length!=getPredictorCount()){
+			rgd1 = new double[][]{new double[ras1.mapVar.size()], new double[getPredictorCount()]};
+			thlBuffer.set(rgd1);
+		}
+		return rgd1;
+	}
+	
 	/**
 	 * Fits model with given response variable and predictors. Data are loaded first for given model.   
 	 * @param sResponse Response variable name.
@@ -44,27 +44,20 @@ public class SDMModel_AlphaDiversity extends SDMModel{
 	 */
 	public double findPrediction(RasterLocation rsl1){
 		
-		//s1 = predictor values
+		//rgd1 = predictor values
 		
-		String s1;
+		double rgd1[];
 		
 		//loading predictor values
-		s1 = ras1.getRasterValue(rsl1);
+		rgd1 = getRasterBuffer(ras1);
 		
 		//checking for error
-		if(s1.equals("-9999")){
+		if(!ras1.loadRasterValues(rsl1, rgd1)){
 			return -9999;
 		}
 		
-		//**********************
-		//if(this.findPrediction(s1)==-9999){
-		//	System.out.println("HERE");
-		//}
-		//**********************
-		
-		
-		//returning predicted distance
-		return this.findPrediction(s1);
+		//returning predicted value
+		return this.findPrediction(ras1, rgd1);
 	}
 
 	/**
@@ -74,16 +67,12 @@ public class SDMModel_AlphaDiversity extends SDMModel{
 	 */
 	public void runCrossValidation(String sResponse, String[] rgsPredictors){
 	
-		//lstDataTruncated = data set with all rows containing current samples removed
-		//rgdX = values of environmental variables where prediction is to be made
-		//flm2 = fitLM object being used for cross validation
+		//rgdLOO = leave-one-out predictions from full fit (closed-form mode)
+		//dPrediction = current predicted value
 		//dObservation = current observation
-		//rgd1 = current predicted value
 		
-		ArrayList<double[]> lstDataTruncated;
-		double rgd1[]; double rgdX[][];
-		FitLM_Apache flm2;
-		double dObservation;
+		double rgdLOO[] = null;
+		double dPrediction; double dObservation;
 		
 		//checking if null case
 		if(rgsPredictors==null){
@@ -93,40 +82,84 @@ public class SDMModel_AlphaDiversity extends SDMModel{
 		//loading non-cross validation results
 		this.fitModel(sResponse, rgsPredictors);
 		
-		//saving press statistic
-		dPRESS = this.findPRESS();
+		//loading closed-form leave-one-out predictions and press statistic if appropriate (rows with leverage equal to 1 are refit explicitly)
+		if(arg1.sCrossValidationMode.equals("closed-form")){
+			rgdLOO = this.findLeaveOneOutPredictions();
+			dPRESS = 0;
+			for(int i=1;i<obs1.rgsData.length;i++){
+				if(rgdLOO[i-1]==-9999){
+					rgdLOO[i-1] = this.findLeaveOneOutPrediction(i, sResponse, rgsPredictors);
+				}
+				dPRESS+=Math.pow(this.findObservation(i, sResponse)-rgdLOO[i-1],2);
+			}
+		}else{
+			dPRESS = super.findPRESS();
+		}
 		
 		//initializing predictions
 		lstPredictions = new ArrayList<String>();
 		lstPredictions.add("PREDICTED,OBSERVED");
 		for(int i=1;i<obs1.rgsData.length;i++){
 			
-			//loading truncated data set and prediction row
-			lstDataTruncated = new ArrayList<double[]>();
-			for(int k=1;k<obs1.rgsData.length;k++){
-				if(k!=i){
-					lstDataTruncated.add(obs1.rgdData[k-1]);
-				}
+			//loading prediction for left out observation
+			if(rgdLOO!=null){
+				dPrediction = rgdLOO[i-1];
+			}else{
+				dPrediction = this.findLeaveOneOutPrediction(i, sResponse, rgsPredictors);
 			}
 			
-			//loading cross validation modeling object
-			flm2 = new FitLM_Apache(lstDataTruncated, this.getColumnMap());
-			flm2.fitModel(sResponse, rgsPredictors);
-
-			//loading environmental values for prediction
-			rgdX = this.findPredictors(i, rgsPredictors, sResponse);
-			
 			//loading observed response for prediction
 			dObservation = this.findObservation(i, sResponse);
 			
-			//loading prediction for left out pair
-			rgd1 = flm2.findPrediction(rgdX);
-			
 			//updating predictions list
-			lstPredictions.add(rgd1[0] + "," + dObservation);
+			lstPredictions.add(dPrediction + "," + dObservation);
 		}
 	}
 	
+	/**
+	 * Returns PRESS statistic saved by last cross validation run (avoids recomputing the hat matrix).
+	 * @return PRESS statistic
+	 */
+	public double findPRESS(){
+		return dPRESS;
+	}
+	
+	/**
+	 * Finds prediction for given row by refitting the model with the row left out.
+	 * @param iRow Row to leave out (rows are numbered from 1, as in data file).
+	 * @param sResponse Response variable name.
+	 * @param rgsPredictors Predictor names.
+	 * @return Predicted value for left out row.
+	 */
+	private double findLeaveOneOutPrediction(int iRow, String sResponse, String[] rgsPredictors){
+		
+		//lstDataTruncated = data set with current row removed
+		//rgdX = values of environmental variables where prediction is to be made
+		//flm2 = fitLM object being used for cross validation
+		
+		ArrayList<double[]> lstDataTruncated;
+		double rgdX[][];
+		FitLM_Apache flm2;
+		
+		//loading truncated data set
+		lstDataTruncated = new ArrayList<double[]>();
+		for(int k=1;k<obs1.rgsData.length;k++){
+			if(k!=iRow){
+				lstDataTruncated.add(obs1.rgdData[k-1]);
+			}
+		}
+		
+		//loading cross validation modeling object
+		flm2 = new FitLM_Apache(lstDataTruncated, this.getColumnMap());
+		flm2.fitModel(sResponse, rgsPredictors);
+
+		//loading environmental values for prediction
+		rgdX = this.findPredictors(iRow, rgsPredictors, sResponse);
+		
+		//returning prediction for left out observation
+		return flm2.findPrediction(rgdX)[0];
+	}
+	
 	public double getPRESS(){
 		return dPRESS;
 	}
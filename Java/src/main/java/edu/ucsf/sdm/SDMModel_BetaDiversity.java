@@ -2,6 +2,7 @@ package edu.ucsf.sdm;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -55,20 +56,20 @@ public class SDMModel_BetaDiversity extends SDMModel{
 	 */
 	public double findPrediction(RasterLocation rslStart, RasterLocation rslEnd){
 		
-		//s1 = predictor values
+		//rgd1 = predictor values
 		
-		String s1;
+		double rgd1[];
 		
 		//loading predictor values
-		s1 = ras1.getRasterValue(rslStart, rslEnd);
+		rgd1 = getRasterBuffer(ras1);
 		
 		//checking for error
-		if(s1.equals("-9999")){
+		if(!ras1.loadRasterValues(rslStart, rslEnd, rgd1)){
 			return -9999;
 		}
 		
 		//returning predicted distance
-		return this.findPrediction(s1);
+		return this.findPrediction(ras1, rgd1);
 	}
 
 	public double findPRESS(){
@@ -82,22 +83,11 @@ public class SDMModel_BetaDiversity extends SDMModel{
 	 */
 	public void runCrossValidation(String sResponse, String[] rgsPredictors){
 		
-		//sSample1 = current first sample
-		//sSample2 = current second sample
-		//lstDataTruncated = data set with all rows containing current samples removed
-		//flm2 = fitLM object being used for cross validation
-		//rgd1 = current predicted value
-		//rgdX = values of environmental variables where prediction is to be made
-		//i1 = row of data for prediction
+		//dPrediction = current predicted value
 		//dSSE = sum of squares due to error
 		//dObservation = current observation
-		//lst1 = current list of rows
 		
-		String sSample1; String sSample2;
-		ArrayList<double[]> lstDataTruncated; ArrayList<Integer> lst1;
-		FitLM_Apache flm2;
-		double rgd1[]; double rgdX[][];
-		int i1;
+		double dPrediction;
 		double dSSE; double dObservation;
 	
 		//initializing predictions
@@ -112,48 +102,276 @@ public class SDMModel_BetaDiversity extends SDMModel{
 		//loading non-cross validation results
 		this.fitModel(sResponse, rgsPredictors);
 		
+		//loading downdated cross validation results if appropriate
+		if(arg1.sCrossValidationMode.equals("closed-form")){
+			runDowndatedCrossValidation(sResponse, rgsPredictors);
+			return;
+		}
+		
 		//loading cross validation results: looping through pairs of samples
 		dSSE=0;
 		for(int i=1;i<obs1.rgsData.length;i++){
 			
-			//loading current pair of samples
-			sSample1 = obs1.rgsData[i][0];
-			sSample2 = obs1.rgsData[i][1];
-				
-			//saving prediction row
-			i1 = i;
+			//loading prediction for left out pair
+			dPrediction = this.findLeavePairOutPrediction(i, sResponse, rgsPredictors);
 			
-			//loading truncated data set and prediction row
-			lstDataTruncated = new ArrayList<double[]>();
-			lst1 = obs1.mapSampleRows.get(sSample1 + "," + sSample2);
-			for(int k=0;k<lst1.size();k++){
-				lstDataTruncated.add(obs1.rgdData[lst1.get(k)]);
-			}
+			//loading observed response for prediction
+			dObservation = this.findObservation(i, sResponse);
 			
-			//loading cross validation modeling object
-			flm2 = new FitLM_Apache(lstDataTruncated, this.getColumnMap());
-			flm2.fitModel(sResponse, rgsPredictors);
-
-			//loading environmental values for prediction
-			rgdX = this.findPredictors(i1, rgsPredictors, sResponse);
+			//updating sse
+			dSSE += (dPrediction-dObservation)*(dPrediction-dObservation);
 			
-			//loading observed response for prediction
-			dObservation = this.findObservation(i1, sResponse);
+			//updating predictions list
+			lstPredictions.add(dPrediction + "," + dObservation);
+		}
+		
+		//saving press statistics
+		dPRESS = dSSE;
+	}
+	
+	/**
+	 * Finds prediction for given row by refitting the model with all rows involving either sample of the row left out.
+	 * @param iRow Row to leave out (rows are numbered from 1, as in data file).
+	 * @param sResponse Response variable name.
+	 * @param rgsPredictors Predictor names.
+	 * @return Predicted value for left out row.
+	 */
+	private double findLeavePairOutPrediction(int iRow, String sResponse, String[] rgsPredictors){
+		
+		//lstDataTruncated = data set with all rows containing current samples removed
+		//bst1 = rows containing current samples
+		//flm2 = fitLM object being used for cross validation
+		//rgdX = values of environmental variables where prediction is to be made
+		
+		ArrayList<double[]> lstDataTruncated;
+		BitSet bst1;
+		FitLM_Apache flm2;
+		double rgdX[][];
+		
+		//loading truncated data set
+		bst1 = obs1.findExcludedRows(iRow-1);
+		lstDataTruncated = new ArrayList<double[]>(obs1.rgdData.length-bst1.cardinality());
+		for(int k=bst1.nextClearBit(0);k<obs1.rgdData.length;k=bst1.nextClearBit(k+1)){
+			lstDataTruncated.add(obs1.rgdData[k]);
+		}
+		
+		//loading cross validation modeling object
+		flm2 = new FitLM_Apache(lstDataTruncated, this.getColumnMap());
+		flm2.fitModel(sResponse, rgsPredictors);
+		
+		//loading environmental values for prediction
+		rgdX = this.findPredictors(iRow, rgsPredictors, sResponse);
+		
+		//returning prediction for left out pair
+		return flm2.findPrediction(rgdX)[0];
+	}
+	
+	/**
+	 * Runs leave-pair-out cross validation by downdating cross products: X'X and X'y are computed once over all rows, along with the
+	 * contributions of the rows involving each sample. The fit for each left out pair is then found by subtracting the contributions
+	 * of the rows involving either sample and solving the resulting (k+1)x(k+1) system. Data are centered on their means before
+	 * cross products are computed, for numerical stability. Pairs whose downdated system is singular are refit from data.
+	 * @param sResponse Response variable name.
+	 * @param rgsPredictors Predictor names.
+	 */
+	private void runDowndatedCrossValidation(String sResponse, String[] rgsPredictors){
+		
+		//iCols = number of columns in design matrix (intercept and predictors)
+		//rgiCol = data columns of design matrix (-1 for intercept)
+		//rgdMean = means of data columns of design matrix (0 for intercept)
+		//dMeanY = mean of response
+		//iResponse = response column
+		//rgdZ = centered design matrix
+		//rgdY = centered response
+		//rgdXX = cross-product matrix for all rows
+		//rgdXY = cross-product vector for all rows
+		//rgdXXSample = cross-product matrices for rows involving each sample
+		//rgdXYSample = cross-product vectors for rows involving each sample
+		//rgdXXPair = cross-product matrices for rows involving each unordered pair of samples
+		//rgdXYPair = cross-product vectors for rows involving each unordered pair of samples
+		//rgdA = current downdated cross-product matrix
+		//rgdB = current downdated cross-product vector
+		//rgdBeta = current coefficients (centered data)
+		//iSample1 = current first sample
+		//iSample2 = current second sample
+		//iPair = current unordered pair
+		//dPrediction = current predicted value
+		//dObservation = current observation
+		//dSSE = sum of squares due to error
+		
+		int iCols; int iResponse; int iSample1; int iSample2; int iPair;
+		int rgiCol[];
+		double rgdMean[]; double rgdZ[][]; double rgdY[]; double rgdXY[]; double rgdB[]; double rgdBeta[];
+		double rgdXX[][]; double rgdA[][];
+		double rgdXXSample[][][]; double rgdXYSample[][]; double rgdXXPair[][][]; double rgdXYPair[][];
+		double dMeanY; double dPrediction; double dObservation; double dSSE;
+		
+		//loading columns and means
+		iCols = rgsPredictors.length+1;
+		rgiCol = new int[iCols];
+		rgdMean = new double[iCols];
+		rgiCol[0]=-1;
+		for(int j=1;j<iCols;j++){
+			rgiCol[j]=getColumnMap().get(rgsPredictors[j-1]);
+		}
+		iResponse = getColumnMap().get(sResponse);
+		dMeanY = 0;
+		for(int i=0;i<obs1.rgdData.length;i++){
+			for(int j=1;j<iCols;j++){
+				rgdMean[j]+=obs1.rgdData[i][rgiCol[j]];
+			}
+			dMeanY+=obs1.rgdData[i][iResponse];
+		}
+		for(int j=1;j<iCols;j++){
+			rgdMean[j]=rgdMean[j]/((double) obs1.rgdData.length);
+		}
+		dMeanY=dMeanY/((double) obs1.rgdData.length);
+		
+		//loading centered data
+		rgdZ = new double[obs1.rgdData.length][iCols];
+		rgdY = new double[obs1.rgdData.length];
+		for(int i=0;i<obs1.rgdData.length;i++){
+			rgdZ[i][0]=1;
+			for(int j=1;j<iCols;j++){
+				rgdZ[i][j]=obs1.rgdData[i][rgiCol[j]]-rgdMean[j];
+			}
+			rgdY[i]=obs1.rgdData[i][iResponse]-dMeanY;
+		}
+		
+		//loading cross products: all rows, rows involving each sample, and rows involving each unordered pair
+		rgdXX = new double[iCols][iCols];
+		rgdXY = new double[iCols];
+		rgdXXSample = new double[obs1.iSamples][iCols][iCols];
+		rgdXYSample = new double[obs1.iSamples][iCols];
+		rgdXXPair = new double[obs1.iPairs][iCols][iCols];
+		rgdXYPair = new double[obs1.iPairs][iCols];
+		for(int i=0;i<rgdZ.length;i++){
+			iSample1 = obs1.rgiRowSamples[i][0];
+			iSample2 = obs1.rgiRowSamples[i][1];
+			addCrossProducts(rgdXX, rgdXY, rgdZ[i], rgdY[i]);
+			addCrossProducts(rgdXXSample[iSample1], rgdXYSample[iSample1], rgdZ[i], rgdY[i]);
+			if(iSample2!=iSample1){
+				addCrossProducts(rgdXXSample[iSample2], rgdXYSample[iSample2], rgdZ[i], rgdY[i]);
+				addCrossProducts(rgdXXPair[obs1.rgiRowPair[i]], rgdXYPair[obs1.rgiRowPair[i]], rgdZ[i], rgdY[i]);
+			}
+		}
+		
+		//looping through pairs of samples
+		rgdA = new double[iCols][iCols];
+		rgdB = new double[iCols];
+		dSSE=0;
+		for(int i=0;i<rgdZ.length;i++){
+			
+			//loading downdated cross products: rows with both samples are subtracted twice, so they are added back once
+			iSample1 = obs1.rgiRowSamples[i][0];
+			iSample2 = obs1.rgiRowSamples[i][1];
+			iPair = obs1.rgiRowPair[i];
+			for(int j=0;j<iCols;j++){
+				for(int l=0;l<=j;l++){
+					rgdA[j][l]=rgdXX[j][l]-rgdXXSample[iSample1][j][l];
+					if(iSample2!=iSample1){
+						rgdA[j][l]+=rgdXXPair[iPair][j][l]-rgdXXSample[iSample2][j][l];
+					}
+				}
+				rgdB[j]=rgdXY[j]-rgdXYSample[iSample1][j];
+				if(iSample2!=iSample1){
+					rgdB[j]+=rgdXYPair[iPair][j]-rgdXYSample[iSample2][j];
+				}
+			}
 			
 			//loading prediction for left out pair
-			rgd1 = flm2.findPrediction(rgdX);
+			rgdBeta = solveCholesky(rgdA, rgdB);
+			if(rgdBeta==null){
+				dPrediction = this.findLeavePairOutPrediction(i+1, sResponse, rgsPredictors);
+			}else{
+				dPrediction = dMeanY;
+				for(int j=0;j<iCols;j++){
+					dPrediction+=rgdZ[i][j]*rgdBeta[j];
+				}
+			}
+			
+			//loading observed response for prediction
+			dObservation = obs1.rgdData[i][iResponse];
 			
 			//updating sse
-			dSSE += (rgd1[0]-dObservation)*(rgd1[0]-dObservation);
+			dSSE += (dPrediction-dObservation)*(dPrediction-dObservation);
 			
 			//updating predictions list
-			lstPredictions.add(rgd1[0] + "," + dObservation);
+			lstPredictions.add(dPrediction + "," + dObservation);
 		}
 		
 		//saving press statistics
 		dPRESS = dSSE;
 	}
 	
+	/**
+	 * Adds cross products for a row of data (lower triangle of matrix only).
+	 * @param rgdXX Cross-product matrix being updated.
+	 * @param rgdXY Cross-product vector being updated.
+	 * @param rgdZ Design row.
+	 * @param dY Response.
+	 */
+	private void addCrossProducts(double rgdXX[][], double rgdXY[], double rgdZ[], double dY){
+		for(int j=0;j<rgdZ.length;j++){
+			for(int l=0;l<=j;l++){
+				rgdXX[j][l]+=rgdZ[j]*rgdZ[l];
+			}
+			rgdXY[j]+=rgdZ[j]*dY;
+		}
+	}
+	
+	/**
+	 * Solves symmetric positive definite system by Cholesky decomposition. Only lower triangle of matrix is used; matrix is overwritten.
+	 * @param rgdA Matrix (lower triangle).
+	 * @param rgdB Vector.
+	 * @return Solution, or null if matrix is singular.
+	 */
+	private double[] solveCholesky(double rgdA[][], double rgdB[]){
+		
+		//rgdOut = output
+		//d1 = current sum
+		
+		double rgdOut[];
+		double d1;
+		
+		//decomposing matrix (L stored in lower triangle)
+		for(int j=0;j<rgdA.length;j++){
+			d1 = rgdA[j][j];
+			for(int l=0;l<j;l++){
+				d1-=rgdA[j][l]*rgdA[j][l];
+			}
+			if(!(d1>0.000000001*Math.max(1.,Math.abs(rgdA[j][j])))){
+				return null;
+			}
+			rgdA[j][j]=Math.sqrt(d1);
+			for(int i=j+1;i<rgdA.length;i++){
+				d1 = rgdA[i][j];
+				for(int l=0;l<j;l++){
+					d1-=rgdA[i][l]*rgdA[j][l];
+				}
+				rgdA[i][j]=d1/rgdA[j][j];
+			}
+		}
+		
+		//solving L z = b and L' x = z
+		rgdOut = new double[rgdB.length];
+		for(int j=0;j<rgdA.length;j++){
+			d1 = rgdB[j];
+			for(int l=0;l<j;l++){
+				d1-=rgdA[j][l]*rgdOut[l];
+			}
+			rgdOut[j]=d1/rgdA[j][j];
+		}
+		for(int j=rgdA.length-1;j>=0;j--){
+			d1 = rgdOut[j];
+			for(int l=j+1;l<rgdA.length;l++){
+				d1-=rgdA[l][j]*rgdOut[l];
+			}
+			rgdOut[j]=d1/rgdA[j][j];
+		}
+		return rgdOut;
+	}
+	
 	/**
 	 * Runs hierarchical clusterer and outputs files with results
 	*/
@@ -194,8 +412,10 @@ public class SDMModel_BetaDiversity extends SDMModel{
 	public void initalizeClusterer(int iTaskID){
 		
 		//clh1 = hierarchical classifier object
+		//rgsLocation = locations of clustered points
 		
 		Clusterer_Hierarchical clh1;
+		String rgsLocation[][];
 
 		//initializing hierarchical classifier
 		clh1 = new Clusterer_Hierarchical(arg1.sPathHCluster,arg1.sHClusterOutputDirectory,"distances.dist");
@@ -205,6 +425,15 @@ public class SDMModel_BetaDiversity extends SDMModel{
 		
 		//initializing k-nearest neighbor classification
 		clk1 = new Clusterer_KNearestNeighbor(10,clh1.mapClass);
+		
+		//loading locations of clustered points (before any locations are clustered, so map threads only read them)
+		mapRasterLocation = new HashMap<String,RasterLocation>();
+		rgsLocation = FileIO.readFile(arg1.sHClusterOutputDirectory + "/distances.locations",";");
+		for(int i=0;i<rgsLocation.length;i++){
+		
+			//loading raster location
+			mapRasterLocation.put(rgsLocation[i][0], new RasterLocation(rgsLocation[i][1]));
+		}
 	}
 
 	/**
@@ -216,31 +445,18 @@ public class SDMModel_BetaDiversity extends SDMModel{
 		
 		//map1 = map of distances from current point to pre-classified point.  keys are names of pre-classified points.
 		//rsl2 = current raster location
-		//rgsLocation = locations of clustered points
 	
 		Map<String,Double> map1;
 		RasterLocation rsl2;
-		String rgsLocation[][];
 		
 		//checking whether a valid point
-		if(ras1.getRasterValue(rsl1).equals("-9999")){
+		if(!ras1.hasRasterValues(rsl1)){
 			return -9999;
 		}
 		
 		//initializing map of distances
 		map1 = new HashMap<String,Double>();
 		
-		//initializing mapRasterLocation if necessary
-		if(mapRasterLocation==null){
-			mapRasterLocation = new HashMap<String,RasterLocation>();
-			rgsLocation = FileIO.readFile(arg1.sHClusterOutputDirectory + "/distances.locations",";");
-			for(int i=0;i<rgsLocation.length;i++){
-			
-				//loading raster location
-				mapRasterLocation.put(rgsLocation[i][0], new RasterLocation(rgsLocation[i][1]));
-			}
-		}
-		
 		//loading distances
 		for(String s:mapRasterLocation.keySet()){
 			
@@ -294,7 +510,7 @@ public class SDMModel_BetaDiversity extends SDMModel{
 					iElevationTime = (int) Math.floor(((double) arg1.lstVert.size())*Math.random());
 					rgd1 = sph1.findRandomPoint();
 					rgr1[j] = new RasterLocation(rgd1[0],rgd1[1],arg1.lstVert.get(iElevationTime), arg1.lstTime.get(iElevationTime),-9999,-9999,"-9999");
-				}while(ras1.getRasterValue(rgr1[j]).equals("-9999"));
+				}while(!ras1.hasRasterValues(rgr1[j]));
 			}
 			
 			//loading distance
@@ -375,7 +591,7 @@ public class SDMModel_BetaDiversity extends SDMModel{
 				rsl1.dTime = arg1.lstTime.get(i1);
 				
 				//checking value
-				if(!ras1.getRasterValue(rsl1).equals("-9999")){
+				if(ras1.hasRasterValues(rsl1)){
 					if(!lst2.contains(rsl1.toString())){
 						
 						//saving result and setting exit flag
@@ -1,6 +1,7 @@
 package edu.ucsf.sdm;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,14 +13,22 @@ import edu.ucsf.base.RasterLocation;
  * @author jladau
  */
 public class SDMObservationalData_BetaDiversity extends SDMObservationalData{
-
+	
 	//rgsDataSingleLocation = single location data
-	//mapSampleRows(sSample1,sSample2) = returns a list of rows of data having neither sample
+	//rgiRowSamples = indices of the two samples in each row of data (rows start at 0)
+	//rgiSampleRows = rows of data involving each sample (in increasing order)
+	//rgiRowPair = index of unordered pair of samples in each row of data
+	//iSamples = number of samples
+	//iPairs = number of unordered pairs of samples
 	//mapSampleLocation(sSample) = returns the location of the specified sample
 	//mapSingleLocationMinimum(sPredictor) = returns the minimum observed value of the predictor across samples
 	//mapSingleLocationMaximum(sPredictor) = returns the maximum observed value of the predictor across samples
 	
-	public Map<String,ArrayList<Integer>> mapSampleRows;
+	public int rgiRowSamples[][];
+	public int rgiSampleRows[][];
+	public int rgiRowPair[];
+	public int iSamples;
+	public int iPairs;
 	public Map<String,RasterLocation> mapSampleLocation;
 	public Map<String,Double> mapSingleLocationMinimum;
 	public Map<String,Double> mapSingleLocationMaximum;
@@ -143,20 +152,15 @@ public class SDMObservationalData_BetaDiversity extends SDMObservationalData{
 			rgsCandidateVars[i]=lst1.get(i);
 		}
 	}
-
+	
 	/**
 	 * Loads data file
 	 */
 	protected void loadData(){
 		
 		//d1 output double
-		//sSample1 = current first sample
-		//sSample2 = current second sample
-		//lst1 = current list being added to mapSampleRows
 		
 		double d1;
-		String sSample1; String sSample2;
-		ArrayList<Integer> lst1;
 		
 		//loading data and updating headers
 		rgsData = FileIO.readFile(arg1.sPathData, ",");
@@ -181,30 +185,86 @@ public class SDMObservationalData_BetaDiversity extends SDMObservationalData{
 			}
 		}
 		
-		//loading sample rows map	
-		mapSampleRows = new HashMap<String,ArrayList<Integer>>();
+		//loading sample index
+		loadSampleIndex();
+	}
+	
+	/**
+	 * Finds rows of data involving either sample of the given row (these rows are left out in cross validation).
+	 * @param iRow Row of data (rows start at 0).
+	 * @return Set of rows involving either sample.
+	 */
+	public BitSet findExcludedRows(int iRow){
+		
+		//bst1 = output
+		
+		BitSet bst1;
 		
-		//loading list of rows of data
+		bst1 = new BitSet(rgdData.length);
+		for(int j=0;j<2;j++){
+			for(int k:rgiSampleRows[rgiRowSamples[iRow][j]]){
+				bst1.set(k);
+			}
+		}
+		return bst1;
+	}
+	
+	/**
+	 * Loads index of samples: samples and unordered pair of samples in each row, and rows involving each sample.
+	 */
+	private void loadSampleIndex(){
+		
+		//mapSample(sSample) = returns index of sample
+		//mapPair(sPair) = returns index of unordered pair of samples
+		//rgiCount = number of rows involving each sample
+		//rgi1 = current pair of sample indices
+		//sPair = current unordered pair
+		
+		Map<String,Integer> mapSample; Map<String,Integer> mapPair;
+		int rgiCount[]; int rgi1[];
+		String sPair;
+		
+		//loading samples and pairs in each row
+		mapSample = new HashMap<String,Integer>();
+		mapPair = new HashMap<String,Integer>();
+		rgiRowSamples = new int[rgsData.length-1][2];
+		rgiRowPair = new int[rgsData.length-1];
 		for(int i=1;i<rgsData.length;i++){
-			
-			//loading current pair of samples
-			sSample1 = rgsData[i][0];
-			sSample2 = rgsData[i][1];
-			
-			//loading rows
-			lst1 = new ArrayList<Integer>(rgsData.length);
-			for(int k=1;k<rgsData.length;k++){
-				
-				//updating truncated data
-				if(!rgsData[k][0].equals(sSample1) && !rgsData[k][0].equals(sSample2)){
-					if(!rgsData[k][1].equals(sSample1) && !rgsData[k][1].equals(sSample2)){
-						lst1.add(k-1);
-					}
+			rgi1 = rgiRowSamples[i-1];
+			for(int j=0;j<2;j++){
+				if(!mapSample.containsKey(rgsData[i][j])){
+					mapSample.put(rgsData[i][j], mapSample.size());
 				}
+				rgi1[j]=mapSample.get(rgsData[i][j]);
+			}
+			sPair = Math.min(rgi1[0],rgi1[1]) + "," + Math.max(rgi1[0],rgi1[1]);
+			if(!mapPair.containsKey(sPair)){
+				mapPair.put(sPair, mapPair.size());
+			}
+			rgiRowPair[i-1]=mapPair.get(sPair);
+		}
+		iSamples = mapSample.size();
+		iPairs = mapPair.size();
+		
+		//loading rows involving each sample (rows with the same sample twice are listed once)
+		rgiCount = new int[iSamples];
+		for(int i=0;i<rgiRowSamples.length;i++){
+			rgiCount[rgiRowSamples[i][0]]++;
+			if(rgiRowSamples[i][1]!=rgiRowSamples[i][0]){
+				rgiCount[rgiRowSamples[i][1]]++;
+			}
+		}
+		rgiSampleRows = new int[iSamples][];
+		for(int k=0;k<iSamples;k++){
+			rgiSampleRows[k] = new int[rgiCount[k]];
+			rgiCount[k]=0;
+		}
+		for(int i=0;i<rgiRowSamples.length;i++){
+			rgi1 = rgiRowSamples[i];
+			rgiSampleRows[rgi1[0]][rgiCount[rgi1[0]]++]=i;
+			if(rgi1[1]!=rgi1[0]){
+				rgiSampleRows[rgi1[1]][rgiCount[rgi1[1]]++]=i;
 			}
-			
-			//saving rows
-			mapSampleRows.put(sSample1 + "," + sSample2, lst1);
 		}
 	}
 }
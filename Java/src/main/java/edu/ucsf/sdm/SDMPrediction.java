@@ -1,9 +1,13 @@
 package edu.ucsf.sdm;
 
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
 
 import edu.ucsf.base.ClusterIterator;
+import edu.ucsf.base.MapTile;
 import edu.ucsf.base.RasterIterator;
+import edu.ucsf.base.RasterReaderPool;
+import edu.ucsf.base.RasterRegion;
 
 /**
  * Beta diversity output map object
@@ -42,23 +46,28 @@ public abstract class SDMPrediction {
 		
 		//looping through points
 		itr1 = new ClusterIterator(iTaskID, iTotalTasks);
-		rit1 = new RasterIterator(arg1.lstVert.get(iVertTimeIndex),arg1.lstTime.get(iVertTimeIndex),"NA");
-		while(rit1.hasNext()){
-			
-			//loading next
-			rit1.next();
-			itr1.next();
-			
-			//updating progress
-			rit1.updateProgress();
-			
-			//checking if task should be performed
-			if(itr1.bInclude==true){
-			//if(iTaskID == -9999 || ( iTotalTasks != -9999 && (rit1.iCounter % iTotalTasks) == (iTaskID-1))){
-			
-				//outputting value
-				loadPartialMapValue(rit1);
+		rit1 = new RasterIterator(arg1.lstVert.get(iVertTimeIndex),arg1.lstTime.get(iVertTimeIndex),"NA",arg1.getGeometry(),arg1.getRegion());
+		RasterReaderPool.getDefault().holdReaders();
+		try{
+			while(rit1.hasNext()){
+				
+				//loading next
+				rit1.next();
+				itr1.next();
+				
+				//updating progress
+				rit1.updateProgress();
+				
+				//checking if task should be performed
+				if(itr1.bInclude==true){
+				//if(iTaskID == -9999 || ( iTotalTasks != -9999 && (rit1.iCounter % iTotalTasks) == (iTaskID-1))){
+				
+					//outputting value
+					loadPartialMapValue(rit1);
+				}
 			}
+		}finally{
+			RasterReaderPool.getDefault().releaseReaders();
 		}
 	}
 	
@@ -69,35 +78,118 @@ public abstract class SDMPrediction {
 	public abstract void loadPartialMapValue(RasterIterator rit1);
 	
 	/**
-	 * Loads map
+	 * Loads map. If more than one thread is used, the rows of the map are divided into bands that are filled in parallel; each
+	 * band writes only its own rows of the map, each band holds its own raster readers from the shared pool until it is finished,
+	 * and model buffers are held per thread, so values are the same as with one thread.
 	 * @param iVertTimeIndex Elevation-time combination index
 	 */
 	public void loadMap(int iVertTimeIndex, int iTaskID){
+	
+		//initializing map
+		initializeMap(iVertTimeIndex,iTaskID);
 		
-		//rit1 = raster iterator
-		
-		RasterIterator rit1;
+		//loading values
+		loadMapRegion(iVertTimeIndex, arg1.getRegion());
+	}
 	
+	/**
+	 * Loads tile of map (for parallel computing): cells outside of tile are left as -9999.
+	 * @param iVertTimeIndex Elevation-time combination index
+	 * @param iTaskID Task ID
+	 * @param til1 Tile
+	 */
+	public void loadMapTile(int iVertTimeIndex, int iTaskID, MapTile til1){
+		
+		//rgn1 = region of interest
+		
+		RasterRegion rgn1;
+		
 		//initializing map
 		initializeMap(iVertTimeIndex,iTaskID);
 		
+		//loading values
+		rgn1 = arg1.getRegion();
+		if(rgn1==null){
+			rgn1 = new RasterRegion(arg1.getGeometry(), null);
+		}
+		loadMapRegion(iVertTimeIndex, rgn1.findSubregion(til1.getRowMin(), til1.getRowMax(), til1.getColMin(), til1.getColMax()));
+	}
+	
+	/**
+	 * Loads values into map for cells in region (map must be initialized)
+	 * @param iVertTimeIndex Elevation-time combination index
+	 * @param rgn1 Region (null for all cells)
+	 */
+	private void loadMapRegion(int iVertTimeIndex, RasterRegion rgn1){
+		
+		//iRowMin = first row to visit
+		//iRowMax = last row to visit
+		//iRange = maximum number of rows filled by a single task
+		//pol1 = thread pool
+		
+		int iRowMin; int iRowMax; int iRange;
+		ForkJoinPool pol1;
+		
+		//loading rows
+		if(rgn1==null){
+			iRowMin = 0;
+			iRowMax = arg1.getGeometry().getRowCount()-1;
+		}else{
+			iRowMin = rgn1.getRowMin();
+			iRowMax = rgn1.getRowMax();
+		}
+		
 		//looping through points
-		rit1 = new RasterIterator(arg1.lstVert.get(iVertTimeIndex),arg1.lstTime.get(iVertTimeIndex),"NA");
-		while(rit1.hasNext()){
+		if(arg1.iThreads>1 && iRowMax>iRowMin){
 			
-			//loading next
-			rit1.next();
-			
-			//updating progress
-			rit1.updateProgress();
-			
-			//loading value
-			loadMapValue(rit1);
+			//running bands: rows are split until small enough that each thread gets several bands
+			iRange = Math.max(1, (iRowMax-iRowMin+1 + 8*arg1.iThreads - 1)/(8*arg1.iThreads));
+			pol1 = new ForkJoinPool(arg1.iThreads);
+			try{
+				pol1.invoke(new SDMPredictionTask(this, iVertTimeIndex, rgn1, iRowMin, iRowMax+1, iRange));
+			}finally{
+				pol1.shutdown();
+			}
+		}else{
+			loadMapRows(iVertTimeIndex, rgn1, iRowMin, iRowMax);
+		}
+	}
+	
+	/**
+	 * Loads values into given rows of map for cells in region (map must be initialized). Raster readers are borrowed once for the
+	 * rows and returned to the pool when the rows are finished.
+	 * @param iVertTimeIndex Elevation-time combination index
+	 * @param rgn1 Region (null for all cells)
+	 * @param iRowFirst First row
+	 * @param iRowLast Last row
+	 */
+	void loadMapRows(int iVertTimeIndex, RasterRegion rgn1, int iRowFirst, int iRowLast){
+		
+		//rit1 = raster iterator
+		
+		RasterIterator rit1;
+		
+		rit1 = new RasterIterator(arg1.lstVert.get(iVertTimeIndex),arg1.lstTime.get(iVertTimeIndex),"NA",arg1.getGeometry(),rgn1,iRowFirst,iRowLast);
+		RasterReaderPool.getDefault().holdReaders();
+		try{
+			while(rit1.hasNext()){
+				
+				//loading next
+				rit1.next();
+				
+				//updating progress
+				rit1.updateProgress();
+				
+				//loading value
+				loadMapValue(rit1);
+			}
+		}finally{
+			RasterReaderPool.getDefault().releaseReaders();
 		}
 	}
 	
 	/**
-	 * Loads value into map
+	 * Loads value into map (may be called from several threads for cells in different rows)
 	 * @param rit1 Raster iterator with location
 	 */
 	public abstract void loadMapValue(RasterIterator rit1);
@@ -0,0 +1,56 @@
+package edu.ucsf.sdm;
+
+import java.util.concurrent.RecursiveAction;
+
+import edu.ucsf.base.RasterRegion;
+
+/**
+ * Task for multithreaded map generation: fills a contiguous band of rows of the map, splitting it among threads if it is large.
+ * @author jladau
+ */
+
+public class SDMPredictionTask extends RecursiveAction{
+	
+	//prd1 = prediction object with map being filled
+	//iVertTimeIndex = elevation-time combination index
+	//rgn1 = region being filled (null for all cells)
+	//iRowStart = first row
+	//iRowEnd = row after last row
+	//iRange = maximum number of rows filled without splitting
+	
+	private static final long serialVersionUID = 1L;
+	private SDMPrediction prd1;
+	private int iVertTimeIndex;
+	private RasterRegion rgn1;
+	private int iRowStart;
+	private int iRowEnd;
+	private int iRange;
+	
+	/**
+	 * Constructor
+	 */
+	public SDMPredictionTask(SDMPrediction prd1, int iVertTimeIndex, RasterRegion rgn1, int iRowStart, int iRowEnd, int iRange){
+		this.prd1 = prd1;
+		this.iVertTimeIndex = iVertTimeIndex;
+		this.rgn1 = rgn1;
+		this.iRowStart = iRowStart;
+		this.iRowEnd = iRowEnd;
+		this.iRange = iRange;
+	}
+	
+	protected void compute(){
+		
+		//iMid = midpoint of band
+		
+		int iMid;
+		
+		if(iRowEnd-iRowStart>iRange){
+			iMid = iRowStart + (iRowEnd-iRowStart)/2;
+			invokeAll(
+					new SDMPredictionTask(prd1, iVertTimeIndex, rgn1, iRowStart, iMid, iRange),
+					new SDMPredictionTask(prd1, iVertTimeIndex, rgn1, iMid, iRowEnd, iRange));
+		}else{
+			prd1.loadMapRows(iVertTimeIndex, rgn1, iRowStart, iRowEnd-1);
+		}
+	}
+}
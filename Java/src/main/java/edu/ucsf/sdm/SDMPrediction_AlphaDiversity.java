@@ -71,8 +71,11 @@ public class SDMPrediction_AlphaDiversity extends SDMPrediction{
 	 */
 	public void initializeMap(int iVertTimeIndex, int iTaskID){
 		
-		//initializing output
-		rgdMap = new double[360][720];
+		//initializing output (cells outside of study region are left as -9999)
+		rgdMap = arg1.getGeometry().initializeGrid();
+		
+		//loading predictor columns for raster variables
+		mdl1.loadRasterColumns(ras1);
 	}
 	
 	
@@ -227,12 +230,7 @@ public class SDMPrediction_AlphaDiversity extends SDMPrediction{
 	 */
 	private double findAlphaDiversity(RasterLocation rsl2){
 		
-		//checking for error
-		if(ras1.getRasterValue(rsl2).equals("-9999")){	
-			return -9999;
-		}
-			
-		//returning value
+		//returning value (-9999 if any raster value is missing)
 		return mdl1.findPrediction(rsl2);
 	}
 	
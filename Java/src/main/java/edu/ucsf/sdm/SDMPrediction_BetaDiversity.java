@@ -114,6 +114,9 @@ public class SDMPrediction_BetaDiversity extends SDMPrediction{
 		if(arg1.sMapType.equals("local turnover") || arg1.sMapType.equals("vector")){
 			sph1 = new SphericalGeometry();
 		}
+		
+		//loading predictor columns for raster variables
+		mdl1.loadRasterColumns(ras1);
 	}
 	
 	/**
@@ -123,12 +126,12 @@ public class SDMPrediction_BetaDiversity extends SDMPrediction{
 	 */
 	public void initializeMap(int iVertTimeIndex, int iTaskID){
 		
-		//initializing output
+		//initializing output (cells outside of study region are left as -9999)
 		if(arg1.sMapType.equals("vector")){
-			rgdMapX = new double[360][720];
-			rgdMapY = new double[360][720];
+			rgdMapX = arg1.getGeometry().initializeGrid();
+			rgdMapY = arg1.getGeometry().initializeGrid();
 		}else{
-			rgdMap = new double[360][720];
+			rgdMap = arg1.getGeometry().initializeGrid();
 		}
 		
 		//initializing clusterer if necessary
@@ -168,7 +171,7 @@ public class SDMPrediction_BetaDiversity extends SDMPrediction{
 		rgdOut[1] = -9999;
 		
 		//checking for error
-		if(ras1.getRasterValue(rsl2).equals("-9999")){	
+		if(!ras1.hasRasterValues(rsl2)){	
 			return rgdOut;
 		}
 		
@@ -229,7 +232,7 @@ public class SDMPrediction_BetaDiversity extends SDMPrediction{
 		dMin = 99999999999999999999999999.;
 		
 		//checking for error
-		if(ras1.getRasterValue(rsl2).equals("-9999")){
+		if(!ras1.hasRasterValues(rsl2)){
 			
 			return -9999;
 			
@@ -282,7 +285,7 @@ public class SDMPrediction_BetaDiversity extends SDMPrediction{
 		double rgd1[];
 		
 		//checking for error
-		if(ras1.getRasterValue(rsl2).equals("-9999")){	
+		if(!ras1.hasRasterValues(rsl2)){	
 			return -9999;
 		}
 		
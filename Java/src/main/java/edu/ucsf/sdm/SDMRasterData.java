@@ -3,10 +3,11 @@ package edu.ucsf.sdm;
 import java.util.HashMap;
 import java.util.Map;
 
-import edu.ucsf.base.NetCDF_IO;
 import edu.ucsf.base.PointOnLand;
+import edu.ucsf.base.RasterCube;
 import edu.ucsf.base.RasterIterator;
 import edu.ucsf.base.RasterLocation;
+import edu.ucsf.base.RasterReaderPool;
 
 /**
  * Raster data for beta diversity analysis
@@ -14,17 +15,19 @@ import edu.ucsf.base.RasterLocation;
  */
 public class SDMRasterData {
 
-	//mapCDF(sVariable) = returns cdf object for given variable
 	//mapPath(sVariable) = returns the path to the cdf file for the given variable
 	//mapVar = map linking predictor numbers to variable names
 	//mapMin(sVariable,sElevationTime) = returns the minimum value for the given variable
 	//mapMax(sVariable,sElevationTime) = returns the maximum value for the given variable
+	//rcb1 = in-memory cache of raster slabs (null if values are read from file for each lookup)
+	//rrp1 = pool of open raster readers
 	
-	public Map<String,NetCDF_IO> mapCDF;
 	public Map<String,String> mapPath;
 	public Map<Integer,String> mapVar;
 	public Map<String,Double> mapMin;
 	public Map<String,Double> mapMax;
+	protected RasterCube rcb1 = null;
+	protected RasterReaderPool rrp1;
 	
 	/**
 	 * Constructor
@@ -36,8 +39,8 @@ public class SDMRasterData {
 		mapMin = new HashMap<String,Double>();
 		mapMax = new HashMap<String,Double>();
 		
-		//initializing CDF map
-		mapCDF = new HashMap<String,NetCDF_IO>();
+		//loading reader pool
+		rrp1 = RasterReaderPool.getDefault();
 		
 		//loading path map and variable map
 		mapPath = new HashMap<String,String>();
@@ -49,9 +52,11 @@ public class SDMRasterData {
 	 * @param sVariable
 	 */
 	public void closeCDF(String sVariable){
-		if(mapCDF.containsKey(sVariable)){
-			mapCDF.get(sVariable).closeReader();
-			mapCDF.remove(sVariable);
+		if(mapPath.containsKey(sVariable)){
+			rrp1.closeReaders(mapPath.get(sVariable));
+		}
+		if(rcb1!=null){
+			rcb1.remove(sVariable);
 		}
 	}
 	
@@ -59,10 +64,9 @@ public class SDMRasterData {
 	 * Closes all NetCDF files
 	 */
 	public void closeCDFAll(){
-		for(String s:mapCDF.keySet()){
-			mapCDF.get(s).closeReader();
+		for(String s:mapPath.keySet()){
+			closeCDF(s);
 		}
-		mapCDF = new HashMap<String,NetCDF_IO>();
 	}
 	
 	/**
@@ -122,40 +126,40 @@ public class SDMRasterData {
 			return mapMin.get(sKey);
 		}
 		
-		//loading variable if necessary
-		if(!mapCDF.containsKey(sVar)){
-			mapCDF.put(sVar, new NetCDF_IO(mapPath.get(sVar),"reading"));
-		}
-		
 		//initializing minimum and maximum
 		dMin = 9999999999999999.;
 		dMax = -9999999999999999.;
 		
 		//initializing point on land
-		ptl1 = new PointOnLand(arg1.sPathGlobalTopography);
+		ptl1 = new PointOnLand(arg1.sPathGlobalTopography, arg1.getGeometry());
 		
-		//looping through values
-		rti1 = new RasterIterator(dVert,dTime,sVar);
-		while(rti1.hasNext()){
-			
-			//loading next value
-			rti1.next();
-			
-			//checking if on land
-			if((ptl1.isOnLand(rti1.dLat, rti1.dLon)==true && arg1.sLocation.equals("marine")) || (ptl1.isOnLand(rti1.dLat, rti1.dLon)==false && arg1.sLocation.equals("terrestrial"))){
-				continue;
-			}
-			
-			//loading value
-			dValue = this.getRasterValue(rti1.getRasterLocation(), sVar);
-			
-			//checking if minimum and maximum
-			if(dValue<dMin){
-				dMin = dValue;
-			}
-			if(dValue>dMax){
-				dMax = dValue;
+		//looping through values (holding readers for the pass)
+		rrp1.holdReaders();
+		try{
+			rti1 = new RasterIterator(dVert,dTime,sVar,arg1.getGeometry(),arg1.getRegion());
+			while(rti1.hasNext()){
+				
+				//loading next value
+				rti1.next();
+				
+				//checking if on land
+				if((ptl1.isOnLand(rti1.dLat, rti1.dLon)==true && arg1.sLocation.equals("marine")) || (ptl1.isOnLand(rti1.dLat, rti1.dLon)==false && arg1.sLocation.equals("terrestrial"))){
+					continue;
+				}
+				
+				//loading value
+				dValue = this.getRasterValue(rti1.getRasterLocation(), sVar);
+				
+				//checking if minimum and maximum
+				if(dValue<dMin){
+					dMin = dValue;
+				}
+				if(dValue>dMax){
+					dMax = dValue;
+				}
 			}
+		}finally{
+			rrp1.releaseReaders();
 		}
 		
 		//saving results
@@ -209,6 +213,55 @@ public class SDMRasterData {
 		return sbl1.toString();
 	}
 	
+	/**
+	 * Loads raster values at the specified location into an array (in order of variable numbers), without building strings.
+	 * @param rsl1 Raster location
+	 * @param rgdValues Output array (length equal to number of variables); overwritten.
+	 * @return True if all values were found, false if any value is missing (-9999).
+	 */
+	public boolean loadRasterValues(RasterLocation rsl1, double rgdValues[]){
+		
+		//looping through variables
+		for(int i=0;i<rgdValues.length;i++){
+			rgdValues[i] = getRasterValue(rsl1, mapVar.get(i));
+			if(rgdValues[i]==-9999){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks whether all raster values are available at the specified location.
+	 * @param rsl1 Raster location
+	 * @return True if no value is missing (-9999).
+	 */
+	public boolean hasRasterValues(RasterLocation rsl1){
+		for(int i=0;i<mapVar.size();i++){
+			if(getRasterValue(rsl1, mapVar.get(i))==-9999){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets variable names in order of variable numbers.
+	 * @return Variable names.
+	 */
+	public String[] getVariables(){
+		
+		//rgs1 = output
+		
+		String rgs1[];
+		
+		rgs1 = new String[mapVar.size()];
+		for(int i=0;i<rgs1.length;i++){
+			rgs1[i] = mapVar.get(i);
+		}
+		return rgs1;
+	}
+	
 	/**
 	 * Gets the raster value at the specified location
 	 * @param rsl1 Raster location
@@ -216,14 +269,50 @@ public class SDMRasterData {
 	 * @return Raster value
 	 */
 	public double getRasterValue(RasterLocation rsl1, String sVar){
+		return readValue(sVar, rsl1.dLat,rsl1.dLon,rsl1.dVert,rsl1.dTime);
+	}
+	
+	/**
+	 * Initializes in-memory cache of raster slabs: each predictor slab is then read from file once and values are looked up from memory.
+	 * @param dMemoryMB Memory budget in megabytes.
+	 */
+	public void loadRasterCube(double dMemoryMB){
+		rcb1 = new RasterCube(dMemoryMB);
+	}
+	
+	/**
+	 * Sets maximum number of raster readers held open (shared by all raster data objects).
+	 * @param iMaxOpen Maximum number of open readers
+	 */
+	public void loadMaxOpenRasters(int iMaxOpen){
+		rrp1.setMaxOpen(iMaxOpen);
+	}
+	
+	/**
+	 * Reads value of variable at given location, from in-memory cache if it is initialized and from file otherwise (with the reader
+	 * held by the current thread if it is holding readers, and with a reader borrowed from the pool otherwise).
+	 * @param sVar Variable name
+	 * @param dLat Latitude
+	 * @param dLon Longitude
+	 * @param dVert Elevation
+	 * @param dTime Time
+	 * @return Raster value
+	 */
+	protected double readValue(String sVar, double dLat, double dLon, double dVert, double dTime){
 		
-		//loading variable if necessary
-		if(!mapCDF.containsKey(sVar)){
-			mapCDF.put(sVar, new NetCDF_IO(mapPath.get(sVar),"reading"));
-		}
+		//sPath = path to raster for variable
+		
+		String sPath;
+		
+		//loading path
+		sPath = mapPath.get(sVar);
 		
 		//getting value
-		return mapCDF.get(sVar).readValue(rsl1.dLat,rsl1.dLon,rsl1.dVert,rsl1.dTime);
+		if(rcb1!=null){
+			return rcb1.readValue(sVar, sPath, rrp1, dLat, dLon, dVert, dTime);
+		}else{
+			return rrp1.readValue(sPath, dLat, dLon, dVert, dTime);
+		}
 	}
 	
 	/**
@@ -42,5 +42,15 @@ public class SDMRasterData_AlphaDiversity extends SDMRasterData{
 		
 		//saving results to variable map
 		mapVar = map1;
+		
+		//initializing raster cache if appropriate
+		if(arg1.dRasterCacheMB>0){
+			loadRasterCube(arg1.dRasterCacheMB);
+		}
+		
+		//loading maximum number of open rasters if appropriate
+		if(arg1.iMaxOpenRasters>0){
+			loadMaxOpenRasters(arg1.iMaxOpenRasters);
+		}
 	}
 }
\ No newline at end of file
@@ -4,7 +4,6 @@ import java.util.HashMap;
 import java.util.Map;
 
 import edu.ucsf.base.Function;
-import edu.ucsf.base.NetCDF_IO;
 import edu.ucsf.base.RasterLocation;
 
 /**
@@ -54,6 +53,16 @@ public class SDMRasterData_BetaDiversity extends SDMRasterData{
 		
 		//saving results to variable map
 		mapVar= map1;
+		
+		//initializing raster cache if appropriate
+		if(arg1.dRasterCacheMB>0){
+			loadRasterCube(arg1.dRasterCacheMB);
+		}
+		
+		//loading maximum number of open rasters if appropriate
+		if(arg1.iMaxOpenRasters>0){
+			loadMaxOpenRasters(arg1.iMaxOpenRasters);
+		}
 	}
 	
 	/**
@@ -100,6 +109,25 @@ public class SDMRasterData_BetaDiversity extends SDMRasterData{
 		return sbl1.toString();
 	}
 	
+	/**
+	 * Loads raster values for the specified pair of locations into an array (in order of variable numbers), without building strings.
+	 * @param rslStart Starting raster location
+	 * @param rslEnd Ending raster location
+	 * @param rgdValues Output array (length equal to number of variables); overwritten.
+	 * @return True if all values were found, false if any value is missing (-9999).
+	 */
+	public boolean loadRasterValues(RasterLocation rslStart, RasterLocation rslEnd, double rgdValues[]){
+		
+		//looping through variables
+		for(int i=0;i<rgdValues.length;i++){
+			rgdValues[i] = getRasterValue(rslStart, rslEnd, mapVar.get(i));
+			if(rgdValues[i]==-9999){
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	/**
 	 * Gets the raster value at the specified location
 	 * @param rslStart Start location
@@ -114,16 +142,11 @@ public class SDMRasterData_BetaDiversity extends SDMRasterData{
 		
 		double dStart; double dEnd;
 		
-		//loading variable if necessary
-		if(!mapCDF.containsKey(sVar)){
-			mapCDF.put(sVar, new NetCDF_IO(mapPath.get(sVar),"reading"));
-		}
-		
 		//getting starting value
-		dStart = mapCDF.get(sVar).readValue(rslStart.dLat,rslStart.dLon,rslStart.dVert,rslStart.dTime);
+		dStart = readValue(sVar,rslStart.dLat,rslStart.dLon,rslStart.dVert,rslStart.dTime);
 		
 		//getting ending value
-		dEnd = mapCDF.get(sVar).readValue(rslEnd.dLat,rslEnd.dLon,rslEnd.dVert,rslEnd.dTime);
+		dEnd = readValue(sVar,rslEnd.dLat,rslEnd.dLon,rslEnd.dVert,rslEnd.dTime);
 		
 		//outputting results
 		return mapFcn.get(sVar).applyFcn(dStart,dEnd);
@@ -142,13 +165,8 @@ public class SDMRasterData_BetaDiversity extends SDMRasterData{
 		
 		double dStart;
 		
-		//loading variable if necessary
-		if(!mapCDF.containsKey(sVar)){
-			mapCDF.put(sVar, new NetCDF_IO(mapPath.get(sVar),"reading"));
-		}
-		
 		//getting starting value
-		dStart = mapCDF.get(sVar).readValue(rslStart.dLat,rslStart.dLon,rslStart.dVert,rslStart.dTime);
+		dStart = readValue(sVar,rslStart.dLat,rslStart.dLon,rslStart.dVert,rslStart.dTime);
 		
 		//outputting results
 		return mapFcn.get(sVar).applyFcn(dStart,dEndValue);
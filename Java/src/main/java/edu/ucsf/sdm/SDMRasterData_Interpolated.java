@@ -252,13 +252,17 @@ public class SDMRasterData_Interpolated extends SDMRasterData {
 	
 	private ArrayList<String> getDims(String sDimension){
 		
-		//loading variable if necessary
-		if(!mapCDF.containsKey(sVar)){
-			mapCDF.put(sVar, new NetCDF_IO(mapPath.get(sVar),"reading"));
-		}
+		//cdf1 = reader for variable
+		
+		NetCDF_IO cdf1;
 		
 		//returning result
-		return mapCDF.get(sVar).getDimensionValues(sDimension);
+		cdf1 = rrp1.borrowReader(mapPath.get(sVar));
+		try{
+			return cdf1.getDimensionValues(sDimension);
+		}finally{
+			rrp1.returnReader(mapPath.get(sVar), cdf1);
+		}
 	}
 	
 	public void closeCDF(){
@@ -27,7 +27,11 @@ public class SDM_AlphaDiversity extends SDM{
 	}
 	
 	public void loadModel(){
-		mdl1 = new SDMModel_AlphaDiversity((SDMObservationalData_AlphaDiversity) obs1, (SDMRasterData_AlphaDiversity) ras1, (SDMArguments_AlphaDiversity) arg1);
+		mdl1 = createModel();
+	}
+	
+	public SDMModel createModel(){
+		return new SDMModel_AlphaDiversity((SDMObservationalData_AlphaDiversity) obs1, (SDMRasterData_AlphaDiversity) ras1, (SDMArguments_AlphaDiversity) arg1);
 	}
 	
 	public void loadMESS(){
@@ -27,7 +27,11 @@ public class SDM_BetaDiversity extends SDM{
 	}
 	
 	public void loadModel(){
-		mdl1 = new SDMModel_BetaDiversity((SDMObservationalData_BetaDiversity) obs1, (SDMRasterData_BetaDiversity) ras1, (SDMArguments_BetaDiversity) arg1);
+		mdl1 = createModel();
+	}
+	
+	public SDMModel createModel(){
+		return new SDMModel_BetaDiversity((SDMObservationalData_BetaDiversity) obs1, (SDMRasterData_BetaDiversity) ras1, (SDMArguments_BetaDiversity) arg1);
 	}
 	
 	public void loadMESS(){
@@ -1,7 +1,12 @@
 package edu.ucsf.sdm;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import edu.ucsf.base.*;
 
 /**
@@ -16,42 +21,68 @@ public class SelectModel {
 	//mapBestModelR2(iVars) = returns the best model (model with greatest R^2) with given number of variables
 	//mapR2(sModel) = returns the r^2 value of given model
 	//dObservations = total number of observations (for adjusted R^2 calculation)
+	//dPRESSMin = minimum PRESS value for current number of variables
+	//dR2Max = maximum r^2 for current number of variables
+	//mdl1 = model object for fitting candidate models (each worker has its own)
+	//flg1 = cross-product engine (null if models are fit from data; each worker has its own)
+	//dCompletedIterations = number of subsets checked for current number of variables
+	//sdm1 = sdm object
+	//lstWorkers = worker objects for multithreaded search (one per thread)
+	//thlWorker = worker object for current thread
+	//sCheckpointPath = path for checkpoint file (null if checkpoints are not being written)
+	//lstCheckpointHeader = lines at start of checkpoint file identifying run (checked when resuming)
+	//lCheckpointInterval = time between checkpoints in milliseconds
+	//lCheckpointTime = time of last checkpoint
+	//bTerminated = true if search was terminated early because improvement threshold was not met (saved in checkpoints)
 	
+	private double dPRESSMin;
+	private double dR2Max;
 	private Map<Integer,String> mapBestModelPRESS;
 	private Map<String,Double> mapPRESS;
 	private Map<Integer,String> mapBestModelR2;
 	private Map<String,Double> mapR2;
 	private double dObservations;
+	private SDMModel mdl1;
+	private FitLM_Gram flg1 = null;
+	private double dCompletedIterations;
+	private SDM sdm1;
+	private ArrayList<SelectModel> lstWorkers;
+	private ThreadLocal<SelectModel> thlWorker;
+	private String sCheckpointPath = null;
+	private ArrayList<String> lstCheckpointHeader;
+	private long lCheckpointInterval;
+	private long lCheckpointTime;
+	private boolean bTerminated = false;
 	
 	/**
 	 * Constructor.
 	 */
 	public SelectModel(SDM sdm1, boolean bTerminateEarly, int iTaskID, int iTotalTasks){
 		
-		//sblLM = current LM call
-		//rgi1 = indices of variables currently being considered
-		//cmb1 = current CombinatoricAlgorithms object
-		//dPRESS = current press value
-		//dPRESSMin = minimum PRESS value for current number of variables
-		//dR2 = current r^2 value
-		//dR2Max = maximum r^2 for current number of variables
-		//sBestModel2 = current best model
-		//sBestModel1 = previous best model
-		//sBestModel0 = best model with zero parameters
-		//dCompletedIterations = total number of completed iterations
 		//iVars = number of variables
 		//lTimeStart = starting time
 		//dElapsedTime = elapsed time in minutes
-		//itr1 = ClusterIterator
+		//bBranchAndBound = flag for whether branch-and-bound search is being used
+		//lSubsets = number of subsets with current number of variables
+		//itr1 = ClusterIterator (finds range of subsets for task)
+		//pol1 = thread pool for multithreaded search (null if single-threaded)
+		//rglCheckpoint = number of variables and subset rank at which search resumes (null if not resuming from checkpoint)
+		//iStartVars = number of variables at which search starts
+		//lStart = rank of first subset checked
 		
-		ClusterIterator itr1;
-		StringBuilder sblLM;
-		int rgi1[];
-		CombinatoricAlgorithms cmb1;
-		double dPRESS; double dPRESSMin; double dR2; double dR2Max; double dElapsedTime = 0; double dCompletedIterations = 0;
-		String sBestModel2; String sBestModel1; String sBestModel0;
+		long rglCheckpoint[] = null;
+		int iStartVars = 1;
+		long lStart;
+		boolean bBranchAndBound;
+		double dElapsedTime = 0;
 		int iVars = 0;
-		long lTimeStart;
+		long lTimeStart; long lSubsets;
+		ClusterIterator itr1;
+		ForkJoinPool pol1 = null;
+		
+		//saving sdm object and model
+		this.sdm1 = sdm1;
+		mdl1 = sdm1.mdl1;
 		
 		//loading number of observations
 		dObservations = (double) (sdm1.obs1.rgsData.length-1);
@@ -62,9 +93,6 @@ public class SelectModel {
 		mapBestModelR2 = new HashMap<Integer,String>();
 		mapR2 = new HashMap<String,Double>();
 		
-		//initializing stringbuilder object
-		sblLM = new StringBuilder();
-		
 		//loading intercept only model
 		
 		//*****************
@@ -77,12 +105,60 @@ public class SelectModel {
 		mapBestModelR2.put(0, "(Intercept Only)");
 		mapR2.put("(Intercept Only)",0.);
 		
+		//checking search mode: branch-and-bound bounds are on RSS, which bound PRESS only for alpha-diversity models
+		bBranchAndBound = false;
+		if(sdm1.arg1.sSearchMode.equals("branch-and-bound")){
+			if(sdm1 instanceof SDM_BetaDiversity){
+				System.out.println("ERROR: branch-and-bound search not available for beta-diversity models. Running exhaustive search.");
+			}else{
+				bBranchAndBound = true;
+			}
+		}
+		
+		//initializing cross-product engine if appropriate
+		if(sdm1.arg1.sSelectModelEngine.equals("gram") || bBranchAndBound==true){
+			flg1 = loadGramEngine(sdm1);
+		}
+		
+		//initializing thread pool if appropriate (branch-and-bound search is single-threaded)
+		if(sdm1.arg1.iThreads>1 && bBranchAndBound==true){
+			System.out.println("ERROR: multithreaded search not available for branch-and-bound search. Running single-threaded search.");
+		}
+		if(sdm1.arg1.iThreads>1 && bBranchAndBound==false){
+			pol1 = new ForkJoinPool(sdm1.arg1.iThreads);
+			lstWorkers = new ArrayList<SelectModel>();
+			thlWorker = new ThreadLocal<SelectModel>();
+		}
+		
+		//loading checkpoint if appropriate
+		if(sdm1.arg1.dCheckpointMinutes>0){
+			if(iTaskID==-9999){
+				sCheckpointPath = sdm1.arg1.sModelPath + ".ckpt";
+			}else{
+				sCheckpointPath = sdm1.arg1.sModelPath + "_" + iTaskID + ".ckpt";
+			}
+			lCheckpointInterval = (long) (sdm1.arg1.dCheckpointMinutes*60000.);
+			lCheckpointTime = System.currentTimeMillis();
+			loadCheckpointHeader(sdm1, iTaskID, iTotalTasks);
+			rglCheckpoint = loadCheckpoint();
+			if(rglCheckpoint!=null){
+				iStartVars = (int) rglCheckpoint[0];
+				if(bTerminated==true){
+					iStartVars = sdm1.arg1.iMaxVars+1;
+					System.out.println("Resuming from checkpoint: search was terminated early (improvement threshold not met).");
+				}else{
+					System.out.println("Resuming from checkpoint: " + iStartVars + " parameters, subset " + rglCheckpoint[1] + ".");
+				}
+				System.out.println("");
+			}
+		}
+		
 		//*********************
 		//System.out.println(rgsVars.length + " variables");
 		//*********************
 		
 		//looping through numbers of variables
-		for(int k=1;k<=sdm1.arg1.iMaxVars;k++){
+		for(int k=iStartVars;k<=sdm1.arg1.iMaxVars;k++){
 			
 			//loading number of variables
 			iVars = k;
@@ -90,16 +166,15 @@ public class SelectModel {
 			//updating progress
 			System.out.println("Analyzing models with " + k + " parameters...");
 			
-			//initializing minimum press value and maximum R^2 value
+			//initializing minimum press value and maximum R^2 value (from checkpoint if resuming)
 			dPRESSMin = 99999999999999999999999.;
 			dR2Max = -9999;
-			
-			//initializing combinatoric algorithms object
-			cmb1 = new CombinatoricAlgorithms();
-			rgi1 = cmb1.NEXKSB(sdm1.obs1.rgsCandidateVars.length, k);
-		
-			//initializing counter
-			//iCounter = -1;
+			if(mapBestModelPRESS.containsKey(k)){
+				dPRESSMin = mapPRESS.get(mapBestModelPRESS.get(k));
+			}
+			if(mapBestModelR2.containsKey(k)){
+				dR2Max = mapR2.get(mapBestModelR2.get(k));
+			}
 			
 			//initializing completed iterations counter
 			dCompletedIterations = 0;
@@ -107,39 +182,155 @@ public class SelectModel {
 			//loading start time
 			lTimeStart = System.currentTimeMillis();
 			
-			//initializing iterator
-			itr1 = new ClusterIterator(iTaskID,iTotalTasks);
+			//looping through subsets (in contiguous partition mode, only subsets in range of task)
+			itr1 = new ClusterIterator(iTaskID, iTotalTasks, sdm1.arg1.sPartitionMode);
+			if(bBranchAndBound==true){
+				dCompletedIterations = searchBranchAndBound(sdm1, flg1, k, itr1);
+			}else{
+				lSubsets = CombinatoricAlgorithms.findBinomial(sdm1.obs1.rgsCandidateVars.length, k);
+				itr1.loadTotalIterations(lSubsets);
+				lStart = itr1.getRangeStart();
+				if(rglCheckpoint!=null && k==rglCheckpoint[0]){
+					lStart = Math.max(lStart, rglCheckpoint[1]);
+				}
+				if(pol1==null){
+					searchSubsets(sdm1, k, lStart, itr1.getRangeEnd(), iTaskID, iTotalTasks);
+				}else{
+					searchSubsets(pol1, sdm1, k, lStart, itr1.getRangeEnd(), iTaskID, iTotalTasks);
+				}
+			}
 			
-			//looping through subsets
-			do{
-				//updating counter and checking iteration, if appropriate
-				itr1.next();
-				if(itr1.bInclude==true){
-				//if(iTotalTasks == -9999 || ( iTotalTasks != -9999 && (iCounter % iTotalTasks) == (iTaskID-1))){
-					
-					//updating completed iterations counter
-					dCompletedIterations++;
-					
-					//loading lm call
-					sblLM = new StringBuilder();
-					for(int i=0;i<rgi1.length;i++){
-						sblLM.append(sdm1.obs1.rgsCandidateVars[rgi1[i]-1]);
-						if(i<rgi1.length-1){
-							sblLM.append(",");
-						}
-					}
-					
-					//*************************
-					//System.out.println(sblLM.toString());
-					//*************************
-					
-					try{	
+			//saving checkpoint
+			if(sCheckpointPath!=null){
+				writeCheckpoint(k+1, 0);
+			}
+			
+			//loading elapsed time
+			dElapsedTime = ((double) System.currentTimeMillis() - (double) lTimeStart)/60000.;
+			
+			//updating progress
+			//System.out.println(Math.round(dCompletedIterations) + " iterations in " + (System.currentTimeMillis() - lTimeStart)/60000. + " min");
+			
+			//printing output
+			System.out.println(mapBestModelPRESS.get(k));
+			System.out.println("");
+			
+			//checking if improvement threshold met (terminated state is saved, so that a resumed run also stops)
+			if(bTerminateEarly==true && checkImprovement(k)==false){
+				bTerminated = true;
+				if(sCheckpointPath!=null){
+					writeCheckpoint(k+1, 0);
+				}
+				break;
+			}
+		}
+		
+		//closing thread pool
+		if(pol1!=null){
+			pol1.shutdown();
+		}
+		
+		//outputting forecast times (skipped if no subsets were checked, e.g., when resuming from a checkpoint after the last number of variables)
+		if(dCompletedIterations==0){
+			return;
+		}
+		System.out.println("PROJECTED RUN TIMES");
+		System.out.println("-------------------");
+		for(int i=1;i<=10;i++){
+			if(iTotalTasks!=-9999){
+				System.out.println((iVars + i) + " variables = " + findCombin((double) sdm1.obs1.rgsCandidateVars.length,(double) (iVars + i)) * dElapsedTime/(dCompletedIterations*(double) iTotalTasks) + " min");
+			}else{
+				System.out.println((iVars + i) + " variables = " + findCombin((double) sdm1.obs1.rgsCandidateVars.length,(double) (iVars + i)) * dElapsedTime/(dCompletedIterations) + " min");
+			}
+		}
+		System.out.println("");
+	}
+	
+	/**
+	 * Constructor for worker object used by one thread of multithreaded search.
+	 * @param mdl1 Model object for worker.
+	 * @param flg1 Cross-product engine for worker (null if models are fit from data).
+	 */
+	private SelectModel(SDMModel mdl1, FitLM_Gram flg1){
+		this.mdl1 = mdl1;
+		this.flg1 = flg1;
+		mapBestModelPRESS = new HashMap<Integer,String>();
+		mapPRESS = new HashMap<String,Double>();
+		mapBestModelR2 = new HashMap<Integer,String>();
+		mapR2 = new HashMap<String,Double>();
+		dPRESSMin = 99999999999999999999999.;
+		dR2Max = -9999;
+		dCompletedIterations = 0;
+	}
+	
+	/**
+	 * Checks subsets with given ranks (in order given by sSubsetOrder) and saves best models.
+	 * @param sdm1 SDM object.
+	 * @param k Number of variables.
+	 * @param lStart Rank of first subset.
+	 * @param lEnd Rank after last subset.
+	 * @param iTaskID Task ID.
+	 * @param iTotalTasks Total number of tasks.
+	 */
+	void searchSubsets(SDM sdm1, int k, long lStart, long lEnd, int iTaskID, int iTotalTasks){
+		
+		//sModel = current LM call (predictors separated by commas)
+		//rgi1 = indices of variables currently being considered
+		//cmb1 = current CombinatoricAlgorithms object
+		//dPRESS = current press value
+		//dR2 = current r^2 value
+		//itr1 = ClusterIterator
+		
+		ClusterIterator itr1;
+		String sModel;
+		int rgi1[];
+		CombinatoricAlgorithms cmb1;
+		double dPRESS; double dR2;
+		
+		//initializing combinatoric algorithms object
+		cmb1 = new CombinatoricAlgorithms();
+		if(sdm1.arg1.sSubsetOrder.equals("revolving-door")){
+			rgi1 = cmb1.unrankREVDOOR(sdm1.obs1.rgsCandidateVars.length, k, lStart);
+		}else{
+			rgi1 = cmb1.unrankNEXKSB(sdm1.obs1.rgsCandidateVars.length, k, lStart);
+		}
+		
+		//initializing iterator
+		itr1 = new ClusterIterator(iTaskID, iTotalTasks, sdm1.arg1.sPartitionMode);
+		itr1.loadTotalIterations(CombinatoricAlgorithms.findBinomial(sdm1.obs1.rgsCandidateVars.length, k));
+		itr1.iIteration = lStart;
+		
+		//looping through subsets
+		for(long l=lStart;l<lEnd;l++){
+			
+			//updating counter and checking iteration, if appropriate
+			itr1.next();
+			if(itr1.bInclude==true){
+			//if(iTotalTasks == -9999 || ( iTotalTasks != -9999 && (iCounter % iTotalTasks) == (iTaskID-1))){
+				
+				//updating completed iterations counter
+				dCompletedIterations++;
+				
+				//loading lm call (cross-product engine loads it only when needed)
+				if(flg1==null || sdm1 instanceof SDM_BetaDiversity){
+					sModel = findModel(sdm1.obs1.rgsCandidateVars, rgi1);
+				}else{
+					sModel = null;
+				}
+				
+				//*************************
+				//System.out.println(sModel);
+				//*************************
+				
+				try{
 					
+					if(flg1==null){
+						
 						//fitting model
-						sdm1.mdl1.runCrossValidation(sdm1.arg1.sResponse,sblLM.toString().split(","));
-					
+						mdl1.runCrossValidation(sdm1.arg1.sResponse,sModel.split(","));
+						
 						//saving PRESS value if appropriate
-						dPRESS = sdm1.mdl1.findPRESS();
+						dPRESS = mdl1.findPRESS();
 						
 						//**************************
 						//System.out.println(dPRESS);
@@ -148,66 +339,674 @@ public class SelectModel {
 						if(dPRESS<dPRESSMin){
 							
 							//checking vif
-							if(sdm1.mdl1.checkVIF(5)){
-								mapBestModelPRESS.put(k, sblLM.toString());
-								mapPRESS.put(sblLM.toString(), dPRESS);
+							if(mdl1.checkVIF(5)){
+								mapBestModelPRESS.put(k, sModel);
+								mapPRESS.put(sModel, dPRESS);
 								dPRESSMin = dPRESS;
 							}
 						}
 						
 						//saving R^2 value if appropriate
-						dR2 = sdm1.mdl1.findRSquared();
+						dR2 = mdl1.findRSquared();
 						if(dR2>dR2Max){
 							
 							//checking vif
-							if(sdm1.mdl1.checkVIF(5)){
-								mapBestModelR2.put(k, sblLM.toString());
-								mapR2.put(sblLM.toString(), dR2);
+							if(mdl1.checkVIF(5)){
+								mapBestModelR2.put(k, sModel);
+								mapR2.put(sModel, dR2);
 								dR2Max = dR2;
 							}
 						}
-					}catch(Exception e){
-						e.printStackTrace();
+					}else{
+						
+						//fitting model from cross products (updating previous model if subsets differ by one variable)
+						checkModel(sdm1, flg1, k, rgi1, sModel);
 					}
+				}catch(Exception e){
+					e.printStackTrace();
 				}
-					
-				//loading next subset
-				rgi1 = cmb1.NEXKSB(sdm1.obs1.rgsCandidateVars.length, k);
-				
-			}while(rgi1[0]!=-9999);
+			}
 			
-			//loading elapsed time
-			dElapsedTime = ((double) System.currentTimeMillis() - (double) lTimeStart)/60000.;
+			//saving checkpoint if appropriate (checked every 256 subsets)
+			if(sCheckpointPath!=null && (l & 255)==255 && System.currentTimeMillis()-lCheckpointTime>lCheckpointInterval){
+				writeCheckpoint(k, l+1);
+			}
 			
-			//updating progress
-			//System.out.println(Math.round(dCompletedIterations) + " iterations in " + (System.currentTimeMillis() - lTimeStart)/60000. + " min");
+			//loading next subset
+			rgi1 = findNextSubset(cmb1, sdm1.obs1.rgsCandidateVars.length, k, sdm1.arg1.sSubsetOrder);
+		}
+	}
+	
+	/**
+	 * Checks subsets with given ranks using thread pool: contiguous ranges of subset ranks are checked by worker
+	 * objects (one per thread, each with its own model object and cross-product engine), and best models of workers are then merged.
+	 * If checkpoints are being written, subsets are checked in chunks (sized to take a fraction of the checkpoint interval), with
+	 * results merged and a checkpoint saved if appropriate after each chunk.
+	 * @param pol1 Thread pool.
+	 * @param sdm1 SDM object.
+	 * @param k Number of variables.
+	 * @param lStart Rank of first subset.
+	 * @param lEnd Rank after last subset.
+	 * @param iTaskID Task ID.
+	 * @param iTotalTasks Total number of tasks.
+	 */
+	private void searchSubsets(ForkJoinPool pol1, SDM sdm1, int k, long lStart, long lEnd, int iTaskID, int iTotalTasks){
+		
+		//lRange = maximum number of subsets in range checked by a single task
+		//lChunk = number of subsets in current chunk
+		//lChunkStart = rank of first subset in current chunk
+		//lChunkEnd = rank after last subset in current chunk
+		//lChunkTime = starting time of current chunk
+		
+		long lRange; long lChunk; long lChunkStart; long lChunkEnd; long lChunkTime;
+		
+		//initializing workers
+		for(SelectModel slm1:lstWorkers){
+			slm1.dPRESSMin = 99999999999999999999999.;
+			slm1.dR2Max = -9999;
+			slm1.dCompletedIterations = 0;
+		}
+		
+		//initializing chunk size
+		if(sCheckpointPath==null){
+			lChunk = lEnd - lStart;
+		}else{
+			lChunk = 64*sdm1.arg1.iThreads;
+		}
+		
+		//looping through chunks
+		for(lChunkStart=lStart;lChunkStart<lEnd;lChunkStart=lChunkEnd){
+			lChunkEnd = Math.min(lEnd, lChunkStart + lChunk);
+			lChunkTime = System.currentTimeMillis();
 			
-			//printing output
-			System.out.println(mapBestModelPRESS.get(k));
-			System.out.println("");
+			//running search: ranges are split until small enough that each thread gets several
+			lRange = Math.max(1, (lChunkEnd - lChunkStart + 8*sdm1.arg1.iThreads - 1)/(8*sdm1.arg1.iThreads));
+			pol1.invoke(new SelectModelTask(this, sdm1, k, lChunkStart, lChunkEnd, lRange, iTaskID, iTotalTasks));
+			mergeWorkers(k);
 			
-			//checking if improvement threshold met
-			if(bTerminateEarly==true && k>0){
-				sBestModel2 = mapBestModelPRESS.get(k);
-				sBestModel1 = mapBestModelPRESS.get(k-1);
-				sBestModel0 = mapBestModelPRESS.get(0);
-				if((mapPRESS.get(sBestModel1)-mapPRESS.get(sBestModel2))/mapPRESS.get(sBestModel0)<0.025){
-					break;
+			//saving checkpoint and updating chunk size if appropriate
+			if(sCheckpointPath!=null){
+				if(System.currentTimeMillis()-lCheckpointTime>lCheckpointInterval){
+					writeCheckpoint(k, lChunkEnd);
+				}
+				if(System.currentTimeMillis()-lChunkTime<lCheckpointInterval/10){
+					lChunk*=2;
 				}
 			}
 		}
+	}
+	
+	/**
+	 * Merges best models of workers with given number of variables into best models.
+	 * @param k Number of variables.
+	 */
+	private void mergeWorkers(int k){
 		
-		//outputting forecast times
-		System.out.println("PROJECTED RUN TIMES");
-		System.out.println("-------------------");
-		for(int i=1;i<=10;i++){
-			if(iTotalTasks!=-9999){	
-				System.out.println((iVars + i) + " variables = " + findCombin((double) sdm1.obs1.rgsCandidateVars.length,(double) (iVars + i)) * dElapsedTime/(dCompletedIterations*(double) iTotalTasks) + " min");
+		//sModel = current best model of worker
+		
+		String sModel;
+		
+		dCompletedIterations = 0;
+		for(SelectModel slm1:lstWorkers){
+			dCompletedIterations+=slm1.dCompletedIterations;
+			if(slm1.mapBestModelPRESS.containsKey(k)){
+				sModel = slm1.mapBestModelPRESS.get(k);
+				if(slm1.mapPRESS.get(sModel)<dPRESSMin){
+					mapBestModelPRESS.put(k, sModel);
+					mapPRESS.put(sModel, slm1.mapPRESS.get(sModel));
+					dPRESSMin = slm1.mapPRESS.get(sModel);
+				}
+			}
+			if(slm1.mapBestModelR2.containsKey(k)){
+				sModel = slm1.mapBestModelR2.get(k);
+				if(slm1.mapR2.get(sModel)>dR2Max){
+					mapBestModelR2.put(k, sModel);
+					mapR2.put(sModel, slm1.mapR2.get(sModel));
+					dR2Max = slm1.mapR2.get(sModel);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Loads lines identifying run for checkpoint file: response, candidate covariates, settings that determine subset ranks, and
+	 * settings that determine how PRESS values are computed.
+	 * @param sdm1 SDM object.
+	 * @param iTaskID Task ID.
+	 * @param iTotalTasks Total number of tasks.
+	 */
+	private void loadCheckpointHeader(SDM sdm1, int iTaskID, int iTotalTasks){
+		
+		//sbl1 = candidate covariates
+		
+		StringBuilder sbl1;
+		
+		sbl1 = new StringBuilder();
+		for(int i=0;i<sdm1.obs1.rgsCandidateVars.length;i++){
+			if(i>0){
+				sbl1.append(";");
+			}
+			sbl1.append(sdm1.obs1.rgsCandidateVars[i]);
+		}
+		lstCheckpointHeader = new ArrayList<String>();
+		lstCheckpointHeader.add("RESPONSE," + sdm1.arg1.sResponse);
+		lstCheckpointHeader.add("CANDIDATES," + sbl1.toString());
+		lstCheckpointHeader.add("SEARCH," + sdm1.arg1.sSearchMode + "," + sdm1.arg1.sSubsetOrder + "," + sdm1.arg1.sPartitionMode);
+		lstCheckpointHeader.add("ENGINE," + sdm1.arg1.sSelectModelEngine + "," + sdm1.arg1.sCrossValidationMode);
+		lstCheckpointHeader.add("TASK," + iTaskID + "," + iTotalTasks);
+	}
+	
+	/**
+	 * Writes checkpoint file: run header, number of variables and subset rank at which to resume, whether search was terminated
+	 * early, and best models so far. File is written to a temporary path first and then moved, so that an interrupted write does not
+	 * replace the previous checkpoint.
+	 * @param k Number of variables at which to resume.
+	 * @param lRank Rank of subset at which to resume.
+	 */
+	private void writeCheckpoint(int k, long lRank){
+		
+		//lst1 = output
+		//sModel = current model
+		
+		ArrayList<String> lst1;
+		String sModel;
+		
+		lst1 = new ArrayList<String>(lstCheckpointHeader);
+		lst1.add("NEXT," + k + "," + lRank);
+		if(bTerminated==true){
+			lst1.add("TERMINATED");
+		}
+		for(Integer i:mapBestModelPRESS.keySet()){
+			if(i>0){
+				sModel = mapBestModelPRESS.get(i);
+				lst1.add("PRESS," + i + "," + sModel.replace(",", ";") + "," + mapPRESS.get(sModel));
+			}
+		}
+		for(Integer i:mapBestModelR2.keySet()){
+			if(i>0){
+				sModel = mapBestModelR2.get(i);
+				lst1.add("R^2," + i + "," + sModel.replace(",", ";") + "," + mapR2.get(sModel));
+			}
+		}
+		FileIO.writeFile(lst1, sCheckpointPath + ".tmp", 0, false);
+		FileIO.moveFile(sCheckpointPath + ".tmp", sCheckpointPath);
+		lCheckpointTime = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Loads best models (and whether search was terminated early) from checkpoint file, if one exists for the current run.
+	 * @return Number of variables and subset rank at which to resume; null if there is no checkpoint for the current run.
+	 */
+	private long[] loadCheckpoint(){
+		
+		//rgs1 = checkpoint file
+		//rgl1 = output
+		//sModel = current model
+		//sPath = path to checkpoint file
+		
+		String rgs1[][];
+		long rgl1[] = null;
+		String sModel; String sPath;
+		
+		//loading file (temporary file if checkpoint was interrupted while being moved)
+		sPath = sCheckpointPath;
+		if(!FileIO.checkFileExistence(sPath)){
+			sPath = sCheckpointPath + ".tmp";
+			if(!FileIO.checkFileExistence(sPath)){
+				return null;
+			}
+		}
+		rgs1 = FileIO.readFile(sPath, ",", 4);
+		
+		//checking header
+		if(rgs1.length<lstCheckpointHeader.size()){
+			System.out.println("ERROR: Checkpoint file " + sPath + " is incomplete. Starting from beginning.");
+			return null;
+		}
+		for(int i=0;i<lstCheckpointHeader.size();i++){
+			if(!lstCheckpointHeader.get(i).equals(findLine(rgs1[i]))){
+				System.out.println("ERROR: Checkpoint file " + sPath + " is from a different run. Starting from beginning.");
+				return null;
+			}
+		}
+		
+		//loading next subset and best models
+		for(int i=lstCheckpointHeader.size();i<rgs1.length;i++){
+			if(rgs1[i][0].equals("NEXT")){
+				rgl1 = new long[]{Long.parseLong(rgs1[i][1]), Long.parseLong(rgs1[i][2])};
+			}else if(rgs1[i][0].equals("TERMINATED")){
+				bTerminated = true;
+			}else if(rgs1[i][0].equals("PRESS")){
+				sModel = rgs1[i][2].replace(";", ",");
+				mapBestModelPRESS.put(Integer.parseInt(rgs1[i][1]), sModel);
+				mapPRESS.put(sModel, Double.parseDouble(rgs1[i][3]));
+			}else if(rgs1[i][0].equals("R^2")){
+				sModel = rgs1[i][2].replace(";", ",");
+				mapBestModelR2.put(Integer.parseInt(rgs1[i][1]), sModel);
+				mapR2.put(sModel, Double.parseDouble(rgs1[i][3]));
+			}
+		}
+		return rgl1;
+	}
+	
+	/**
+	 * Finds line of comma-delimited file from its columns.
+	 * @param rgs1 Columns (null for missing columns).
+	 * @return Line.
+	 */
+	private String findLine(String rgs1[]){
+		
+		//sbl1 = output
+		
+		StringBuilder sbl1;
+		
+		sbl1 = new StringBuilder();
+		for(int j=0;j<rgs1.length;j++){
+			if(rgs1[j]!=null){
+				if(j>0){
+					sbl1.append(",");
+				}
+				sbl1.append(rgs1[j]);
+			}
+		}
+		return sbl1.toString();
+	}
+	
+	/**
+	 * Deletes checkpoint file (once results have been written).
+	 */
+	public void deleteCheckpoint(){
+		if(sCheckpointPath!=null){
+			FileIO.deleteFile(sCheckpointPath);
+		}
+	}
+	
+	/**
+	 * Loads worker object for current thread (created when thread first requests it).
+	 * @return Worker object.
+	 */
+	SelectModel loadWorker(){
+		
+		//slm1 = output
+		
+		SelectModel slm1;
+		
+		slm1 = thlWorker.get();
+		if(slm1==null){
+			if(flg1==null){
+				slm1 = new SelectModel(sdm1.createModel(), null);
 			}else{
-				System.out.println((iVars + i) + " variables = " + findCombin((double) sdm1.obs1.rgsCandidateVars.length,(double) (iVars + i)) * dElapsedTime/(dCompletedIterations) + " min");
+				slm1 = new SelectModel(sdm1.createModel(), new FitLM_Gram(flg1));
+			}
+			synchronized(lstWorkers){
+				lstWorkers.add(slm1);
 			}
+			thlWorker.set(slm1);
 		}
-		System.out.println("");
+		return slm1;
+	}
+	
+	/**
+	 * Checks whether the best model with given number of variables improves PRESS sufficiently over the best model with one fewer variable.
+	 * @param k Number of variables.
+	 * @return True if improvement threshold met.
+	 */
+	private boolean checkImprovement(int k){
+		
+		//sBestModel2 = current best model
+		//sBestModel1 = previous best model
+		//sBestModel0 = best model with zero parameters
+		
+		String sBestModel2; String sBestModel1; String sBestModel0;
+		
+		sBestModel2 = mapBestModelPRESS.get(k);
+		sBestModel1 = mapBestModelPRESS.get(k-1);
+		sBestModel0 = mapBestModelPRESS.get(0);
+		if((mapPRESS.get(sBestModel1)-mapPRESS.get(sBestModel2))/mapPRESS.get(sBestModel0)<0.025){
+			return false;
+		}else{
+			return true;
+		}
+	}
+	
+	/**
+	 * Checks subset of candidate covariates using cross-product engine and saves model if it is the best so far (PRESS or R^2, with acceptable VIF).
+	 * @param sdm1 SDM object.
+	 * @param flg1 Cross-product engine.
+	 * @param k Number of variables.
+	 * @param rgi1 Subset (indices start at 1, in increasing order).
+	 * @param sModel LM call for subset (null if it has not been loaded yet).
+	 */
+	private void checkModel(SDM sdm1, FitLM_Gram flg1, int k, int rgi1[], String sModel) throws Exception{
+		
+		//rgi2 = indices of variables currently being considered (zero-based, for cross-product engine)
+		//bFitted = flag for whether current model has been fit by model object
+		//dPRESS = current press value
+		//dR2 = current r^2 value
+		
+		int rgi2[];
+		boolean bFitted;
+		double dPRESS; double dR2;
+		
+		//fitting model from cross products (updating previous model if subsets differ by one variable)
+		rgi2 = new int[rgi1.length];
+		for(int i=0;i<rgi1.length;i++){
+			rgi2[i]=rgi1[i]-1;
+		}
+		if(!flg1.updateModel(rgi2)){
+			return;
+		}
+		bFitted = false;
+		
+		//loading PRESS value: for alpha-diversity PRESS is at least RSS, so PRESS is only found for models with RSS below current minimum
+		if(sdm1 instanceof SDM_BetaDiversity){
+			if(sModel==null){
+				sModel = findModel(sdm1.obs1.rgsCandidateVars, rgi1);
+			}
+			mdl1.runCrossValidation(sdm1.arg1.sResponse,sModel.split(","));
+			dPRESS = mdl1.findPRESS();
+			bFitted = true;
+		}else if(flg1.findRSS()<dPRESSMin){
+			dPRESS = flg1.findPRESS(dPRESSMin);
+		}else{
+			dPRESS = dPRESSMin;
+		}
+		
+		//saving PRESS value if appropriate
+		if(dPRESS<dPRESSMin){
+			
+			//checking vif
+			if(bFitted==false){
+				if(sModel==null){
+					sModel = findModel(sdm1.obs1.rgsCandidateVars, rgi1);
+				}
+				mdl1.fitModel(sdm1.arg1.sResponse,sModel.split(","));
+				bFitted = true;
+			}
+			if(mdl1.checkVIF(5)){
+				mapBestModelPRESS.put(k, sModel);
+				mapPRESS.put(sModel, dPRESS);
+				dPRESSMin = dPRESS;
+			}
+		}
+		
+		//saving R^2 value if appropriate
+		dR2 = flg1.findRSquared();
+		if(dR2>dR2Max){
+			
+			//checking vif
+			if(bFitted==false){
+				if(sModel==null){
+					sModel = findModel(sdm1.obs1.rgsCandidateVars, rgi1);
+				}
+				mdl1.fitModel(sdm1.arg1.sResponse,sModel.split(","));
+				bFitted = true;
+			}
+			if(mdl1.checkVIF(5)){
+				mapBestModelR2.put(k, sModel);
+				mapR2.put(sModel, dR2);
+				dR2Max = dR2;
+			}
+		}
+	}
+	
+	/**
+	 * Runs branch-and-bound (leaps-and-bounds) search over subsets with given number of variables. Subsets are enumerated depth-first
+	 * with candidates ordered by decreasing single-variable R^2. Every subset below a node contains the node's chosen covariates plus
+	 * covariates from its remaining candidates, so the RSS of the model with all of these is a lower bound on the RSS (and, for
+	 * alpha-diversity models, on the PRESS) of every subset below the node. A node is pruned when its bound is no better than both the
+	 * current best RSS and the current best PRESS; later siblings have bounds at least as large and are pruned with it. PRESS and VIF
+	 * are checked only for surviving subsets. Root branches (first covariate) are divided among tasks. The search is single-threaded,
+	 * and checkpoints are only written after each number of variables, so an interrupted search restarts the current number of variables.
+	 * @param sdm1 SDM object.
+	 * @param flg1 Cross-product engine.
+	 * @param k Number of variables.
+	 * @param itr1 Cluster iterator for dividing root branches among tasks.
+	 * @return Number of subsets checked.
+	 */
+	private double searchBranchAndBound(SDM sdm1, FitLM_Gram flg1, int k, ClusterIterator itr1){
+		
+		//rgiOrder = candidate covariates in search order
+		//rgfLevel = cross-product engines for bounds at each depth other than the last (subsets at last depth are checked directly)
+		//rgiChosen = covariates chosen at current node (positions in search order)
+		//iCandidates = number of candidate covariates
+		
+		int rgiOrder[];
+		FitLM_Gram rgfLevel[];
+		int rgiChosen[];
+		int iCandidates;
+		
+		//loading search order
+		iCandidates = sdm1.obs1.rgsCandidateVars.length;
+		if(k>iCandidates){
+			return 0;
+		}
+		rgiOrder = findSearchOrder(flg1, iCandidates);
+		itr1.loadTotalIterations(iCandidates-k+1);
+		
+		//initializing engines: engine at depth 0 holds all candidates
+		rgfLevel = new FitLM_Gram[k-1];
+		for(int i=0;i<k-1;i++){
+			rgfLevel[i] = new FitLM_Gram(flg1);
+		}
+		rgiChosen = new int[k];
+		if(k>1){
+			loadBoundModel(rgfLevel[0], rgiOrder, rgiChosen, 0, 0);
+		}
+		
+		//running search
+		return searchNode(sdm1, flg1, rgfLevel, rgiOrder, rgiChosen, 0, 0, k, itr1);
+	}
+	
+	/**
+	 * Searches node of branch-and-bound tree.
+	 * @param sdm1 SDM object.
+	 * @param flg1 Cross-product engine for checking subsets.
+	 * @param rgfLevel Cross-product engines for bounds at each depth; engine at current depth holds chosen and remaining covariates.
+	 * @param rgiOrder Candidate covariates in search order.
+	 * @param rgiChosen Covariates chosen at current node (positions in search order).
+	 * @param iDepth Number of chosen covariates.
+	 * @param iStart First remaining covariate (position in search order).
+	 * @param k Number of variables.
+	 * @param itr1 Cluster iterator for dividing root branches among tasks.
+	 * @return Number of subsets checked.
+	 */
+	private double searchNode(SDM sdm1, FitLM_Gram flg1, FitLM_Gram rgfLevel[], int rgiOrder[], int rgiChosen[], int iDepth, int iStart, int k, ClusterIterator itr1){
+		
+		//dOut = number of subsets checked
+		//flg2 = engine at current depth
+		//dBound = lower bound on RSS for subsets below child node
+		//rgi1 = current subset (indices start at 1)
+		
+		double dOut = 0;
+		FitLM_Gram flg2;
+		double dBound;
+		int rgi1[];
+		
+		//checking subsets if at last level
+		if(iDepth==k-1){
+			for(int j=iStart;j<rgiOrder.length;j++){
+				if(iDepth==0){
+					itr1.next();
+					if(itr1.bInclude==false){
+						continue;
+					}
+				}
+				rgiChosen[iDepth]=j;
+				rgi1 = new int[k];
+				for(int i=0;i<k;i++){
+					rgi1[i]=rgiOrder[rgiChosen[i]]+1;
+				}
+				Arrays.sort(rgi1);
+				try{
+					checkModel(sdm1, flg1, k, rgi1, null);
+				}catch(Exception e){
+					e.printStackTrace();
+				}
+				dOut++;
+			}
+			return dOut;
+		}
+		
+		//looping through child nodes: engine holds chosen covariates and remaining covariates j,...,n-1 (remaining covariates in reverse order, so that covariate j is last)
+		flg2 = rgfLevel[iDepth];
+		for(int j=iStart;j<=rgiOrder.length-(k-iDepth);j++){
+			
+			//checking bound (singular models give no bound)
+			if(flg2.isValid()){
+				dBound = flg2.findRSS();
+			}else{
+				dBound = 0;
+			}
+			if(dBound>=Math.max(dPRESSMin, flg1.findTSS()*(1.-dR2Max))){
+				break;
+			}
+			
+			//searching child node
+			rgiChosen[iDepth]=j;
+			if(iDepth==0){
+				itr1.next();
+			}
+			if(iDepth>0 || itr1.bInclude==true){
+				if(iDepth+1<k-1){
+					rgfLevel[iDepth+1].loadModel(flg2);
+				}
+				dOut+=searchNode(sdm1, flg1, rgfLevel, rgiOrder, rgiChosen, iDepth+1, j+1, k, itr1);
+			}
+			
+			//dropping covariate j from engine
+			if(!flg2.dropCandidate(rgiOrder[j])){
+				loadBoundModel(flg2, rgiOrder, rgiChosen, iDepth, j+1);
+			}
+		}
+		return dOut;
+	}
+	
+	/**
+	 * Fits bound model (chosen covariates and all remaining covariates) from scratch.
+	 * @param flg1 Cross-product engine.
+	 * @param rgiOrder Candidate covariates in search order.
+	 * @param rgiChosen Chosen covariates (positions in search order).
+	 * @param iDepth Number of chosen covariates.
+	 * @param iStart First remaining covariate (position in search order).
+	 */
+	private void loadBoundModel(FitLM_Gram flg1, int rgiOrder[], int rgiChosen[], int iDepth, int iStart){
+		
+		//rgi1 = subset: chosen covariates followed by remaining covariates in reverse search order
+		
+		int rgi1[];
+		
+		rgi1 = new int[iDepth + rgiOrder.length - iStart];
+		for(int i=0;i<iDepth;i++){
+			rgi1[i]=rgiOrder[rgiChosen[i]];
+		}
+		for(int i=rgiOrder.length-1;i>=iStart;i--){
+			rgi1[iDepth + rgiOrder.length-1-i]=rgiOrder[i];
+		}
+		flg1.fitModel(rgi1);
+	}
+	
+	/**
+	 * Finds search order for branch-and-bound search: candidate covariates in order of decreasing single-variable R^2.
+	 * @param flg1 Cross-product engine.
+	 * @param iCandidates Number of candidate covariates.
+	 * @return Candidate covariates (zero-based) in search order.
+	 */
+	private int[] findSearchOrder(FitLM_Gram flg1, int iCandidates){
+		
+		//rgdRSS = single-variable RSS values
+		//rgi1 = output
+		//lst1 = candidates being sorted
+		
+		final double rgdRSS[];
+		int rgi1[];
+		ArrayList<Integer> lst1;
+		
+		rgdRSS = new double[iCandidates];
+		lst1 = new ArrayList<Integer>(iCandidates);
+		for(int j=0;j<iCandidates;j++){
+			if(flg1.fitModel(new int[]{j})){
+				rgdRSS[j]=flg1.findRSS();
+			}else{
+				rgdRSS[j]=flg1.findTSS();
+			}
+			lst1.add(j);
+		}
+		Collections.sort(lst1, new Comparator<Integer>(){
+			public int compare(Integer i1, Integer i2){
+				return Double.compare(rgdRSS[i1], rgdRSS[i2]);
+			}
+		});
+		rgi1 = new int[iCandidates];
+		for(int j=0;j<iCandidates;j++){
+			rgi1[j]=lst1.get(j);
+		}
+		return rgi1;
+	}
+	
+	/**
+	 * Finds lm call for given subset of candidate covariates.
+	 * @param rgsCandidateVars Candidate covariates.
+	 * @param rgi1 Subset (indices start at 1).
+	 * @return Covariates separated by commas.
+	 */
+	private String findModel(String rgsCandidateVars[], int rgi1[]){
+		
+		//sbl1 = output
+		
+		StringBuilder sbl1;
+		
+		sbl1 = new StringBuilder();
+		for(int i=0;i<rgi1.length;i++){
+			sbl1.append(rgsCandidateVars[rgi1[i]-1]);
+			if(i<rgi1.length-1){
+				sbl1.append(",");
+			}
+		}
+		return sbl1.toString();
+	}
+	
+	/**
+	 * Finds next subset of candidate covariates in the given order.
+	 * @param cmb1 Combinatoric algorithms object for current number of variables.
+	 * @param n Number of candidate covariates.
+	 * @param k Number of variables.
+	 * @param sOrder Subset order: "lexicographic" or "revolving-door".
+	 * @return Next subset (first element is -9999 once all subsets have been returned).
+	 */
+	private int[] findNextSubset(CombinatoricAlgorithms cmb1, int n, int k, String sOrder){
+		if(sOrder.equals("revolving-door")){
+			return cmb1.REVDOOR(n, k);
+		}else{
+			return cmb1.NEXKSB(n, k);
+		}
+	}
+	
+	/**
+	 * Loads cross-product engine for candidate covariates and response variable.
+	 * @param sdm1 SDM object
+	 * @return Cross-product engine
+	 */
+	private FitLM_Gram loadGramEngine(SDM sdm1){
+		
+		//mapColumn(sVariable) = returns the column in the data matrix with the given variable
+		//rgiColumns = columns of candidate covariates
+		
+		Map<String,Integer> mapColumn;
+		int rgiColumns[];
+		
+		//loading columns
+		mapColumn = new HashMap<String,Integer>();
+		for(int j=0;j<sdm1.obs1.rgsData[0].length;j++){
+			mapColumn.put(sdm1.obs1.rgsData[0][j], j);
+		}
+		rgiColumns = new int[sdm1.obs1.rgsCandidateVars.length];
+		for(int j=0;j<rgiColumns.length;j++){
+			rgiColumns[j]=mapColumn.get(sdm1.obs1.rgsCandidateVars[j]);
+		}
+		
+		//returning result
+		return new FitLM_Gram(sdm1.obs1.rgdData, rgiColumns, mapColumn.get(sdm1.arg1.sResponse));
 	}
 	
 	/**
@@ -107,6 +107,9 @@ public class SelectModelMain {
 			FileIO.writeCompletionFile(sdm1.arg1.sModelPath + "_" + arg1.getValueInt("iTaskID"));
 		}
 		
+		//deleting checkpoint
+		slm1.deleteCheckpoint();
+		
 		//terminating
 		if(arg1.getValueInt("iTaskID")==-9999 || arg1.getValueInt("iTotalTasks")==-9999 || (arg1.getValueInt("iTaskID")==1 && arg1.getValueInt("iTotalTasks")!=-9999)){
 			arg1.printArguments(sdm1.arg1.sPathLog, true, "SelectModel");
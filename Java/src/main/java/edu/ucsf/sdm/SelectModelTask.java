@@ -0,0 +1,60 @@
+package edu.ucsf.sdm;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Task for multithreaded model selection: checks a contiguous range of subset ranks, splitting it among threads if it is large.
+ * @author jladau
+ */
+
+public class SelectModelTask extends RecursiveAction{
+	
+	//slm1 = SelectModel object running search (loads worker object for each thread)
+	//sdm1 = sdm object
+	//k = number of variables
+	//lStart = rank of first subset
+	//lEnd = rank after last subset
+	//lRange = maximum number of subsets checked without splitting
+	//iTaskID = task ID
+	//iTotalTasks = total number of tasks
+	
+	private static final long serialVersionUID = 1L;
+	private SelectModel slm1;
+	private SDM sdm1;
+	private int k;
+	private long lStart;
+	private long lEnd;
+	private long lRange;
+	private int iTaskID;
+	private int iTotalTasks;
+	
+	/**
+	 * Constructor
+	 */
+	public SelectModelTask(SelectModel slm1, SDM sdm1, int k, long lStart, long lEnd, long lRange, int iTaskID, int iTotalTasks){
+		this.slm1 = slm1;
+		this.sdm1 = sdm1;
+		this.k = k;
+		this.lStart = lStart;
+		this.lEnd = lEnd;
+		this.lRange = lRange;
+		this.iTaskID = iTaskID;
+		this.iTotalTasks = iTotalTasks;
+	}
+	
+	protected void compute(){
+		
+		//lMid = midpoint of range
+		
+		long lMid;
+		
+		if(lEnd-lStart>lRange){
+			lMid = lStart + (lEnd-lStart)/2;
+			invokeAll(
+					new SelectModelTask(slm1, sdm1, k, lStart, lMid, lRange, iTaskID, iTotalTasks),
+					new SelectModelTask(slm1, sdm1, k, lMid, lEnd, lRange, iTaskID, iTotalTasks));
+		}else{
+			slm1.loadWorker().searchSubsets(sdm1, k, lStart, lEnd, iTaskID, iTotalTasks);
+		}
+	}
+}